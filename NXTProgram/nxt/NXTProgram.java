@@ -29,6 +29,11 @@ public class NXTProgram {
 	private static final double WHEEL_DIAM = 54.0, TRACK_WIDTH = 113.0;
 	private static final int 	TRAVEL_SPEED = 150, ROTATE_SPEED = 100,
 								SENSOR_ROTATE_SPEED = 20, SENSOR_RESET_SPEED = 90;
+	//Most bytes of readings in a scan frame, so a frame goes in one Bluetooth packet.
+	private static final int	FRAME_BYTES = 240;
+	//Function identifiers of a pose query, a move followed by a scan, and of a
+	//request message wrapping another function with a request ID.
+	private static final int	POSE = 5, MOVE_SCAN = 6, REQUEST = 16;
 	
 	private static NXTRegulatedMotor sensorMotor;
 	private static OpticalDistanceSensor sensor;
@@ -76,6 +81,8 @@ public class NXTProgram {
 				//Execute function based on identifier.
 				switch (functionSelect) {
 					case 0 : 	terminate = true;
+								//Return sensor to 0 to leave the cable untwisted.
+								startSweep(1);
 								break;
 					case 1 :	outStream.writeBoolean(move());
 								outStream.flush();
@@ -83,6 +90,20 @@ public class NXTProgram {
 					case 2 :	outStream.writeBoolean(scan());
 								outStream.flush();
 								break;
+					case 3 :	outStream.writeBoolean(framedScan());
+								outStream.flush();
+								break;
+					case 4 :	outStream.writeBoolean(continuousScan());
+								outStream.flush();
+								break;
+					case POSE :	outStream.writeBoolean(sendPose());
+								outStream.flush();
+								break;
+					case MOVE_SCAN :	outStream.writeBoolean(moveScan());
+								outStream.flush();
+								break;
+					case REQUEST :	handleRequest();
+								break;
 					default:	terminate = true;
 								break;
 				}
@@ -164,6 +185,67 @@ public class NXTProgram {
 		return true;
 	}
 	
+	/*
+	 * Method to send the current odometry pose to the PC app.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public static boolean sendPose() {
+		try {
+			poseTracker.getPose().dumpObject(outStream);
+			outStream.flush();
+			return true;
+		} catch (IOException e) {
+			System.out.println("Error in pose method...");
+			commError(e);
+			return false;
+		}
+	}
+	
+	/*
+	 * Method to execute one request message and send back its reply.
+	 * Request layout: request ID, function identifier, parameter length in
+	 * bytes, parameters. The reply starts with the request ID and function
+	 * identifier, then holds whatever the function sends and its success
+	 * boolean. Requests queue up on the input stream while the last one runs,
+	 * so the PC can send several without waiting.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * None
+	 */
+	public static void handleRequest() throws IOException {
+		int id = inStream.readInt();
+		int type = inStream.readInt();
+		int length = inStream.readInt();
+		//Reply header goes out with the first flush of the function.
+		outStream.writeInt(id);
+		outStream.writeInt(type);
+		boolean success;
+		switch (type) {
+			case 1 :	success = move();
+						break;
+			case 3 :	success = framedScan();
+						break;
+			case 4 :	success = continuousScan();
+						break;
+			case POSE :	success = sendPose();
+						break;
+			case MOVE_SCAN :	success = moveScan();
+						break;
+			default :	//Skip parameters of unknown function.
+						for (int i = 0; i < length; i++) {
+							inStream.readByte();
+						}
+						success = false;
+						break;
+		}
+		outStream.writeBoolean(success);
+		outStream.flush();
+	}
+	
 	/*
 	 * Method to recieve and execute a move command and send back
 	 * odometry data using pose tracker.
@@ -179,20 +261,8 @@ public class NXTProgram {
 			firstPose.dumpObject(outStream);
 			outStream.flush();
 			
-			//Get parameter values.
-			int rotate = inStream.readInt();
-			int travel = inStream.readInt();
-			
-			//Execute commands.
-			if (rotate > 0) {
-				pilot.rotate(-rotate);
-				pilot.stop();
-			}
-			if (travel > 0) {
-				pilot.travel(travel);
-				pilot.stop();
-			}
-			pilot.stop();
+			//Get parameter values and execute commands.
+			drive(inStream.readInt(), inStream.readInt());
 			
 			//Send new pose to PC app.
 			Pose newPose = poseTracker.getPose();
@@ -208,6 +278,56 @@ public class NXTProgram {
 		}
 	}
 	
+	/*
+	 * Method to execute the rotation and travel of a move command.
+	 * Parameters:
+	 * rotate_p - Degrees to rotate.
+	 * travel_p - Distance to travel.
+	 * Returns:
+	 * None
+	 */
+	public static void drive(int rotate_p, int travel_p) {
+		if (rotate_p > 0) {
+			pilot.rotate(-rotate_p);
+			pilot.stop();
+		}
+		if (travel_p > 0) {
+			pilot.travel(travel_p);
+			pilot.stop();
+		}
+		pilot.stop();
+	}
+	
+	/*
+	 * Method to execute a move command and then a scan, sending back the
+	 * pose before the move, the pose the scan is taken from, and the scan,
+	 * all in one reply. Nothing is flushed until the first scan frame.
+	 * Reads rotate, travel and the scan function identifier (3 or 4), then
+	 * the scan function reads its own parameters.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public static boolean moveScan() {
+		try {
+			int rotate = inStream.readInt();
+			int travel = inStream.readInt();
+			int scanType = inStream.readInt();
+			
+			poseTracker.getPose().dumpObject(outStream);
+			drive(rotate, travel);
+			poseTracker.getPose().dumpObject(outStream);
+			
+			return((scanType == 4) ? continuousScan() : framedScan());
+		} catch (IOException e) {
+			System.out.println("Error in move scan method...");
+			commError(e);
+			pilot.stop();
+			return false;
+		}
+	}
+	
 	/*
 	 * Method to collect a scan using the sensor and send it
 	 * back to the PC app.
@@ -266,4 +386,211 @@ public class NXTProgram {
 			return false;
 		}
 	}
+	
+	/*
+	 * Method to collect a scan using the sensor and send it back to the PC
+	 * app in frames. Readings are buffered and a frame is sent each time the
+	 * buffer fills, so a 1 degree scan is a few flushes rather than 360.
+	 * Frame layout: reading count (int), readings (shorts or ints),
+	 * Adler-32 checksum of the reading bytes (int).
+	 * The sweep runs in the direction the PC asks for and ends a full turn
+	 * from where it started, so alternating directions leaves the sensor at
+	 * the start of the next sweep with no rewind.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public static boolean framedScan() {
+		//Turn on infra-red sensor.
+		sensor.powerOn();
+		
+		try {
+			//Receive parameters from PC application.
+			int sampleRate = inStream.readInt();
+			//Bytes per reading, 2 or 4.
+			int valueBytes = inStream.readInt();
+			//Sweep direction, 1 for increasing angle or -1 for decreasing.
+			int direction = inStream.readInt();
+			
+			//Calculate array size from sample rate.
+			int arraySize = 360 / sampleRate;
+			
+			//Frame buffer and its fill position.
+			byte[] frame = new byte[FRAME_BYTES];
+			int pos = 0;
+			
+			//Move motor to start of sweep.
+			startSweep(direction);
+			sensorMotor.setSpeed(SENSOR_ROTATE_SPEED);
+			
+			//Get and discard erroneous first value.
+			int dump = sensor.getDistance();
+			
+			for (int j = 0; j < arraySize; j++) {
+				//Get sensor value from infra-red sensor.
+				int sensorValue = sensor.getDistance();
+				//Add value to frame, big endian as DataOutputStream writes it.
+				if (valueBytes == 2) {
+					sensorValue = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sensorValue));
+				} else {
+					frame[pos++] = (byte)(sensorValue >> 24);
+					frame[pos++] = (byte)(sensorValue >> 16);
+				}
+				frame[pos++] = (byte)(sensorValue >> 8);
+				frame[pos++] = (byte)sensorValue;
+				//Send frame when full or at the last reading.
+				if ((pos + valueBytes > FRAME_BYTES) || (j == arraySize - 1)) {
+					sendFrame(frame, pos, valueBytes);
+					pos = 0;
+				}
+				//Rotate motor by sample rate degrees in sweep direction.
+				sensorMotor.rotate(sampleRate * direction);
+				//Stop motor and resist external movement.
+				sensorMotor.stop();
+			}
+			
+			//Turn off infra-red sensor.
+			sensor.powerOff();
+			return true;
+		} catch (IOException e) {
+			System.out.println("Error transmitting scan...");
+			commError(e);
+			//Turn off infra-red sensor.
+			sensor.powerOff();
+			return false;
+		}
+	}
+	
+	/*
+	 * Method to collect a scan while the sensor motor turns at a constant
+	 * speed, instead of stopping for each reading. Readings are taken as
+	 * fast as the sensor gives them, each tagged with the tacho count and
+	 * the time since the sweep started, and sent in frames of 8 byte
+	 * samples: reading (short), tacho count (short), time in ms (int).
+	 * A frame with no samples ends the scan. As with framedScan, the sweep
+	 * runs in the direction the PC asks for and is not rewound.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public static boolean continuousScan() {
+		//Turn on infra-red sensor.
+		sensor.powerOn();
+		
+		try {
+			//Receive sweep speed in degrees per second from PC application.
+			int sweepSpeed = inStream.readInt();
+			//Sweep direction, 1 for increasing angle or -1 for decreasing.
+			int direction = inStream.readInt();
+			
+			//Frame buffer and its fill position.
+			byte[] frame = new byte[FRAME_BYTES];
+			int pos = 0;
+			
+			//Move motor to start of sweep.
+			startSweep(direction);
+			
+			//Get and discard erroneous first value.
+			int dump = sensor.getDistance();
+			
+			//Start sweep and return at once.
+			int startTacho = sensorMotor.getTachoCount();
+			long startTime = System.currentTimeMillis();
+			sensorMotor.setSpeed(sweepSpeed);
+			sensorMotor.rotate(360 * direction, true);
+			
+			do {
+				//Get sensor value, then angle and time it was taken at.
+				int sensorValue = sensor.getDistance();
+				int tacho = sensorMotor.getTachoCount() - startTacho;
+				int time = (int)(System.currentTimeMillis() - startTime);
+				sensorValue = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sensorValue));
+				//Add sample to frame, big endian as DataOutputStream writes it.
+				frame[pos++] = (byte)(sensorValue >> 8);
+				frame[pos++] = (byte)sensorValue;
+				frame[pos++] = (byte)(tacho >> 8);
+				frame[pos++] = (byte)tacho;
+				frame[pos++] = (byte)(time >> 24);
+				frame[pos++] = (byte)(time >> 16);
+				frame[pos++] = (byte)(time >> 8);
+				frame[pos++] = (byte)time;
+				//Send frame when full.
+				if (pos + 8 > FRAME_BYTES) {
+					sendFrame(frame, pos, 8);
+					pos = 0;
+				}
+			} while (sensorMotor.isMoving());
+			sensorMotor.stop();
+			
+			//Send last samples, then an empty frame to end the scan.
+			if (pos > 0) {
+				sendFrame(frame, pos, 8);
+			}
+			sendFrame(frame, 0, 8);
+			
+			//Turn off infra-red sensor.
+			sensor.powerOff();
+			return true;
+		} catch (IOException e) {
+			System.out.println("Error transmitting scan...");
+			commError(e);
+			sensorMotor.stop();
+			//Turn off infra-red sensor.
+			sensor.powerOff();
+			return false;
+		}
+	}
+	
+	/*
+	 * Method to move the sensor motor to the start of a sweep, tacho count
+	 * 0 for an increasing sweep or 360 for a decreasing one. After a sweep
+	 * the other way the motor is already there, otherwise this rewinds it.
+	 * Parameters:
+	 * direction_p - Sweep direction, 1 or -1.
+	 * Returns:
+	 * None
+	 */
+	public static void startSweep(int direction_p) {
+		sensorMotor.setSpeed(SENSOR_RESET_SPEED);
+		sensorMotor.rotateTo((direction_p > 0) ? 0 : 360);
+		//Stop motor and resist external movement.
+		sensorMotor.stop();
+	}
+	
+	/*
+	 * Method to send one scan frame and flush it.
+	 * Parameters:
+	 * frame_p - Buffer holding reading bytes.
+	 * length_p - Number of bytes used in the buffer.
+	 * valueBytes_p - Bytes per reading.
+	 * Returns:
+	 * None
+	 */
+	public static void sendFrame(byte[] frame_p, int length_p, int valueBytes_p) throws IOException {
+		outStream.writeInt(length_p / valueBytes_p);
+		outStream.write(frame_p, 0, length_p);
+		outStream.writeInt(adler32(frame_p, length_p));
+		//Flush output stream. Necessary to ensure transmit.
+		outStream.flush();
+	}
+	
+	/*
+	 * Method to calculate the Adler-32 checksum of a byte array, the same
+	 * value as java.util.zip.Adler32 on the PC.
+	 * Parameters:
+	 * data_p - Bytes to check.
+	 * length_p - Number of bytes from the start to check.
+	 * Returns:
+	 * Integer representing checksum.
+	 */
+	public static int adler32(byte[] data_p, int length_p) {
+		int a = 1, b = 0;
+		for (int i = 0; i < length_p; i++) {
+			a = (a + (data_p[i] & 0xFF)) % 65521;
+			b = (b + a) % 65521;
+		}
+		return((b << 16) | a);
+	}
 }
@@ -0,0 +1,632 @@
+/*
+ * BatchReplay.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Headless runner rebuilding maps from archives of saved sessions.
+ *
+ * Each session file given on the command line, in any session format, is
+ * replayed into its own map, and the map is written to the output directory
+ * as a checkpoint file and a PNG image named after the session file, so
+ * big.ses gives big.ses.ckpt and big.ses.png. A directory stands for the
+ * session files in it.
+ *
+ * Sessions are spread over a work stealing pool. Each session is one job
+ * with its own map, touched only by the worker running the job, so scans are
+ * integrated and moves applied without the event thread. Each scan's tiles
+ * are forked on the same pool, so when fewer sessions than workers are left
+ * the idle workers steal tiles from the long sessions still running.
+ *
+ * A job keeps no scan, command or path history, so its memory is the map
+ * cells and the snapshot published from them, and a job whose cells and
+ * snapshot outgrow the per job bound fails rather than starving the other
+ * jobs. The run as a whole holds at most one map per worker.
+ *
+ * Statistics for each session are appended to replay-stats.csv as it
+ * finishes, and the session is recorded in replay-manifest.txt once its
+ * files are written. A later run with the same output directory skips
+ * sessions in the manifest whose file has not changed since, so an
+ * interrupted run resumes where it stopped. -restart replays every session.
+ *
+ * No window, NXT connection or event thread is used. Run with
+ * -Djava.awt.headless=true.
+ *
+ * Usage:
+ * java -Djava.awt.headless=true mattadshead.swansea3.dissertation.pcapp.BatchReplay
+ *     [-out dir] [-threads n] [-maxmem mb] [-restart]
+ *     [-ratio mm] [-width cells] [-height cells] [-precision double|float|short]
+ *     [-metrics file] session...
+ * Each session starts at the centre of the map, so the map shape only sets
+ * the initial area, and a map of the same shape as the one a session was
+ * mapped with gives the same cells. -precision
+ * sets the precision of map cells, float by default as in the application.
+ * -metrics records integration metrics over the whole run and writes them
+ * to file.
+ */
+
+package mattadshead.swansea3.dissertation.pcapp;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import lejos.robotics.navigation.Pose;
+import mattadshead.swansea3.dissertation.structures.ChunkedGridStore;
+import mattadshead.swansea3.dissertation.structures.GridRaster;
+import mattadshead.swansea3.dissertation.structures.GridSnapshot;
+import mattadshead.swansea3.dissertation.structures.Metrics;
+import mattadshead.swansea3.dissertation.structures.MoveCommand;
+import mattadshead.swansea3.dissertation.structures.OGM;
+
+public class BatchReplay {
+
+	//Symbolic constants for default map shape and drawn cell size.
+	private static final double	DEFAULT_RATIO = 10;
+	private static final int	DEFAULT_WIDTH = 100,
+								DEFAULT_HEIGHT = 100,
+								CELL_SIZE = 3;
+	//Symbolic constant for default memory bound per job in MB.
+	private static final int	DEFAULT_MAX_MEMORY = 256;
+
+	//Names of statistics and manifest files written to the output directory.
+	public static final String	STATS_FILE = "replay-stats.csv",
+								MANIFEST_FILE = "replay-manifest.txt";
+	//Extensions of session files found in a directory.
+	private static final String[]	SESSION_EXTENSIONS = {".ses", ".snj", ".txt"};
+
+	//Map shape for replayed sessions.
+	private double ratio = DEFAULT_RATIO;
+	private int width = DEFAULT_WIDTH, height = DEFAULT_HEIGHT;
+	//Precision of map cells.
+	private int precision = ChunkedGridStore.FLOAT_CELLS;
+	//Directory maps and statistics are written to.
+	private File outDir = new File(".");
+	//Number of workers.
+	private int threads = Runtime.getRuntime().availableProcessors();
+	//Bound on map cell and snapshot memory per job in bytes.
+	private long maxMemory = (long)DEFAULT_MAX_MEMORY << 20;
+	//Whether sessions in the manifest are skipped.
+	private boolean resume = true;
+
+	//Statistics for one replayed session.
+	public static class Result {
+		public String session;
+		public int scans, commands;
+		//Nanoseconds spent reading the file, integrating scans, writing output and in total.
+		public long readTime, integrateTime, writeTime, totalTime;
+		//Cells with log odds other than the prior, and bytes of cell and snapshot memory.
+		public long observedCells, memory;
+		//Failure, null if the session was replayed.
+		public Exception error;
+	}
+
+	//Totals for one run.
+	public static class Summary {
+		public int replayed, failed, skipped, scans;
+		//Nanoseconds from first job started to last finished.
+		public long wallTime;
+		//Session latencies in ns, replayed sessions only.
+		public long latencyMedian, latency95, latencyMax;
+		public List<Result> results;
+	}
+
+	public static void main(String[] args) {
+		BatchReplay replay = new BatchReplay();
+		ArrayList<String> sessions = new ArrayList<String>();
+		String metricsPath = null;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-out")) {
+					replay.setOutputDirectory(new File(args[++i]));
+				} else if (args[i].equals("-threads")) {
+					replay.setThreads(Integer.parseInt(args[++i]));
+				} else if (args[i].equals("-maxmem")) {
+					replay.setMaxMemory(Long.parseLong(args[++i]) << 20);
+				} else if (args[i].equals("-restart")) {
+					replay.setResume(false);
+				} else if (args[i].equals("-ratio")) {
+					replay.ratio = Double.parseDouble(args[++i]);
+				} else if (args[i].equals("-width")) {
+					replay.width = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-height")) {
+					replay.height = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-precision")) {
+					replay.precision = ChunkedGridStore.parsePrecision(args[++i]);
+				} else if (args[i].equals("-metrics")) {
+					metricsPath = args[++i];
+				} else if (args[i].startsWith("-")) {
+					throw new IllegalArgumentException("Unknown option " + args[i] + ".");
+				} else {
+					addSessions(new File(args[i]), sessions);
+				}
+			}
+			if (sessions.isEmpty()) {
+				throw new IllegalArgumentException("No session files given.");
+			}
+		} catch (RuntimeException e) {
+			//Bad numbers and missing option values.
+			System.out.println("BatchReplay > main - Error: " + e.getMessage());
+			System.out.println("Usage: BatchReplay [-out dir] [-threads n] [-maxmem mb] [-restart] "
+					+ "[-ratio mm] [-width cells] [-height cells] [-precision double|float|short] "
+					+ "[-metrics file] session...");
+			System.exit(2);
+		}
+
+		Metrics.setEnabled(metricsPath != null);
+		Summary summary = replay.replayAll(sessions);
+		System.out.println(formatSummary(summary));
+		if (metricsPath != null) {
+			try {
+				Metrics.write(metricsPath);
+			} catch (IOException e) {
+				System.out.println("BatchReplay > main - Error: Writing metrics failed.");
+			}
+		}
+		System.exit((summary.failed == 0) ? 0 : 1);
+	}
+
+	/*
+	 * Method to add a session file, or the session files in a directory in
+	 * name order, to a list.
+	 * Parameters:
+	 * file_p - Session file or directory.
+	 * sessions_p - List to add paths to.
+	 * Returns:
+	 * None
+	 */
+	private static void addSessions(File file_p, List<String> sessions_p) {
+		if (!file_p.isDirectory()) {
+			sessions_p.add(file_p.getPath());
+			return;
+		}
+		String[] names = file_p.list();
+		if (names == null) {
+			return;
+		}
+		Arrays.sort(names);
+		for (String name : names) {
+			for (String ext : SESSION_EXTENSIONS) {
+				if (name.endsWith(ext)) {
+					sessions_p.add(new File(file_p, name).getPath());
+					break;
+				}
+			}
+		}
+	}
+
+	/*
+	 * Mutator method for output directory, created if needed.
+	 * Parameters:
+	 * outDir_p - Directory maps and statistics are written to.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setOutputDirectory(File outDir_p) {
+		outDir = outDir_p;
+		return true;
+	}
+
+	/*
+	 * Mutator method for number of workers.
+	 * Parameters:
+	 * threads_p - Number of worker threads, at least 1.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setThreads(int threads_p) {
+		threads = Math.max(1, threads_p);
+		return true;
+	}
+
+	/*
+	 * Mutator method for memory bound per job.
+	 * Parameters:
+	 * maxMemory_p - Most bytes of map cells and snapshot a job may hold.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setMaxMemory(long maxMemory_p) {
+		maxMemory = maxMemory_p;
+		return true;
+	}
+
+	/*
+	 * Mutator method for resuming from the manifest.
+	 * Parameters:
+	 * resume_p - Whether sessions already in the manifest are skipped.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setResume(boolean resume_p) {
+		resume = resume_p;
+		return true;
+	}
+
+	/*
+	 * Mutator method for shape of replayed maps.
+	 * Parameters:
+	 * ratio_p - Real world size of a cell in mm.
+	 * width_p - Width of the initial map area in cells.
+	 * height_p - Height of the initial map area in cells.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setMapShape(double ratio_p, int width_p, int height_p) {
+		ratio = ratio_p;
+		width = width_p;
+		height = height_p;
+		return true;
+	}
+
+	/*
+	 * Mutator method for precision of replayed map cells.
+	 * Parameters:
+	 * precision_p - ChunkedGridStore.DOUBLE_CELLS, FLOAT_CELLS or SHORT_CELLS.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setCellPrecision(int precision_p) {
+		precision = precision_p;
+		return true;
+	}
+
+	/*
+	 * Method to replay sessions in parallel, skipping those already done,
+	 * writing maps, statistics and manifest as each session finishes.
+	 * Parameters:
+	 * sessions_p - Paths of session files.
+	 * Returns:
+	 * Summary of the run, with Results in the order of the replayed sessions.
+	 */
+	public Summary replayAll(List<String> sessions_p) {
+		outDir.mkdirs();
+		File manifest = new File(outDir, MANIFEST_FILE);
+		File stats = new File(outDir, STATS_FILE);
+		if (!resume) {
+			manifest.delete();
+			stats.delete();
+		}
+		HashMap<String, String> done = readManifest(manifest);
+
+		Summary summary = new Summary();
+		final ForkJoinPool pool = new ForkJoinPool(threads);
+		ArrayList<Future<Result>> futures = new ArrayList<Future<Result>>();
+		ArrayList<String> submitted = new ArrayList<String>();
+		HashSet<String> names = new HashSet<String>();
+		long start = System.nanoTime();
+		for (final String session : sessions_p) {
+			//Sessions with the same file name in different directories get numbered,
+			//in list order so a resumed run picks the same names.
+			String name = new File(session).getName();
+			for (int n = 2; !names.add(name); n++) {
+				name = new File(session).getName() + "-" + n;
+			}
+			final String outName = name;
+			final String entry = getManifestEntry(session, outName);
+			if ((entry != null) && entry.equals(done.get(session))
+					&& new File(outDir, outName + ".ckpt").exists()) {
+				summary.skipped++;
+				continue;
+			}
+			submitted.add(session);
+			futures.add(pool.submit(new Callable<Result>() {
+				public Result call() {
+					Result r = replaySession(session, outName, pool);
+					recordResult(r, (r.error == null) ? entry : null);
+					return(r);
+				}
+			}));
+		}
+		ArrayList<Result> results = new ArrayList<Result>();
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				results.add(futures.get(i).get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} catch (ExecutionException e) {
+				//replaySession catches its own failures, so this is a bug.
+				Result r = new Result();
+				r.session = submitted.get(i);
+				r.error = (e.getCause() instanceof Exception) ? (Exception)e.getCause() : e;
+				recordResult(r, null);
+				results.add(r);
+			}
+		}
+		summary.wallTime = System.nanoTime() - start;
+		pool.shutdownNow();
+
+		ArrayList<Long> latencies = new ArrayList<Long>();
+		for (Result r : results) {
+			if (r.error != null) {
+				summary.failed++;
+			} else {
+				summary.replayed++;
+				summary.scans += r.scans;
+				latencies.add(r.totalTime);
+			}
+		}
+		if (!latencies.isEmpty()) {
+			Collections.sort(latencies);
+			summary.latencyMedian = latencies.get((latencies.size() - 1) / 2);
+			summary.latency95 = latencies.get((int)Math.ceil(latencies.size() * 0.95) - 1);
+			summary.latencyMax = latencies.get(latencies.size() - 1);
+		}
+		summary.results = results;
+		return(summary);
+	}
+
+	/*
+	 * Method to replay one session into a new map and write the map.
+	 * Parameters:
+	 * filepath_p - Path of session file.
+	 * outName_p - Name of map files in the output directory, without extension.
+	 * pool_p - Pool to integrate each scan's tiles on, null for the calling thread only.
+	 * Returns:
+	 * Result holding statistics, or the failure.
+	 */
+	public Result replaySession(String filepath_p, String outName_p, ForkJoinPool pool_p) {
+		Result result = new Result();
+		result.session = filepath_p;
+		long start = System.nanoTime();
+		try {
+			OGM map = createMap(pool_p);
+			ChunkedGridStore cells = (ChunkedGridStore)map.getGridStore();
+			SessionReader reader = new PlacedSessionReader(Controller.openSessionReader(filepath_p), map);
+			try {
+				long t = System.nanoTime();
+				int type = reader.next();
+				result.readTime += System.nanoTime() - t;
+				while (type != -1) {
+					if (type == SessionJournal.SCAN_RECORD) {
+						t = System.nanoTime();
+						map.updateMap(reader.getScan());
+						result.integrateTime += System.nanoTime() - t;
+						result.scans++;
+						if (cells.getMemoryBytes() + map.getSnapshot().getMemoryBytes() > maxMemory) {
+							throw new IOException("Map exceeds " + (maxMemory >> 20) + "MB after "
+									+ result.scans + " scans.");
+						}
+					} else {
+						MoveCommand mc = reader.getCommand();
+						map.updateBotState(new Pose((float)mc.getNewX(), (float)mc.getNewY(), (float)mc.getNewHeading()));
+						map.addCommand(mc);
+						result.commands++;
+					}
+					t = System.nanoTime();
+					type = reader.next();
+					result.readTime += System.nanoTime() - t;
+				}
+			} finally {
+				reader.close();
+			}
+			long t = System.nanoTime();
+			writeMap(map, outName_p);
+			result.writeTime = System.nanoTime() - t;
+			result.observedCells = countObserved(map.getSnapshot());
+			result.memory = cells.getMemoryBytes() + map.getSnapshot().getMemoryBytes();
+		} catch (Exception e) {
+			result.error = e;
+		}
+		result.totalTime = System.nanoTime() - start;
+		return(result);
+	}
+
+	/*
+	 * Method to create a map set up as Controller.drawMapGrid does, but
+	 * integrating on the given pool and keeping no history.
+	 * Parameters:
+	 * pool_p - Pool to integrate on, may be null.
+	 * Returns:
+	 * OGM for one session.
+	 */
+	private OGM createMap(ForkJoinPool pool_p) {
+		OGM map = new OGM(CELL_SIZE, ratio, height, width, new ChunkedGridStore(precision));
+		map.setIntegrationMode(map.INTEGRATE_RAY);
+		map.setKernelLookup(true);
+		map.setIntegrationPool(pool_p);
+		map.setScanHistory(false);
+		return(map);
+	}
+
+	/*
+	 * Method to write a map as a checkpoint file and a PNG image. Each file
+	 * is moved into place once written, so an interrupted run leaves no
+	 * partial files.
+	 * Parameters:
+	 * map_p - Replayed map.
+	 * name_p - Output file name without extension.
+	 * Returns:
+	 * None
+	 */
+	private void writeMap(OGM map_p, String name_p) throws IOException {
+		map_p.createCheckpoint().write(new File(outDir, name_p + ".ckpt").getPath());
+		//Image has the map's bottom row at the bottom, as drawn on screen.
+		GridSnapshot cells = map_p.getSnapshot();
+		GridRaster raster = new GridRaster(cells);
+		int minX = cells.getMinX(), minY = cells.getMinY();
+		int w = Math.max(1, cells.getWidth()), h = Math.max(1, cells.getHeight());
+		BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+		for (int y = 0; y < cells.getHeight(); y++) {
+			for (int x = 0; x < cells.getWidth(); x++) {
+				int grey = raster.getGrey(cells.get(minX + x, minY + y));
+				image.getRaster().setSample(x, h - 1 - y, 0, grey);
+			}
+		}
+		File png = new File(outDir, name_p + ".png");
+		File temp = new File(outDir, name_p + ".png.tmp");
+		ImageIO.write(image, "png", temp);
+		Files.move(temp.toPath(), png.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/*
+	 * Method to count cells with log odds other than the prior.
+	 * Parameters:
+	 * cells_p - Snapshot of map.
+	 * Returns:
+	 * Long representing observed cell count.
+	 */
+	private long countObserved(GridSnapshot cells_p) {
+		long count = 0;
+		int minX = cells_p.getMinX(), minY = cells_p.getMinY();
+		for (int y = minY; y < minY + cells_p.getHeight(); y++) {
+			for (int x = minX; x < minX + cells_p.getWidth(); x++) {
+				if (cells_p.get(x, y) != 0) {
+					count++;
+				}
+			}
+		}
+		return(count);
+	}
+
+	/*
+	 * Method to get the manifest entry for a session, identifying the file
+	 * contents it was replayed from by size and modification time.
+	 * Parameters:
+	 * filepath_p - Path of session file.
+	 * outName_p - Name of map files in the output directory.
+	 * Returns:
+	 * String representing manifest entry, null if the file does not exist.
+	 */
+	private String getManifestEntry(String filepath_p, String outName_p) {
+		File file = new File(filepath_p);
+		if (!file.isFile()) {
+			return(null);
+		}
+		return(file.length() + "\t" + file.lastModified() + "\t" + outName_p + "\t" + filepath_p);
+	}
+
+	/*
+	 * Method to read the manifest of a previous run.
+	 * Parameters:
+	 * manifest_p - Manifest file, may not exist.
+	 * Returns:
+	 * HashMap of session paths to their manifest entries.
+	 */
+	private HashMap<String, String> readManifest(File manifest_p) {
+		HashMap<String, String> done = new HashMap<String, String>();
+		if (!manifest_p.exists()) {
+			return(done);
+		}
+		try {
+			BufferedReader in = new BufferedReader(new FileReader(manifest_p));
+			try {
+				String line;
+				while ((line = in.readLine()) != null) {
+					//Path is the last field, and may hold tabs.
+					String[] fields = line.split("\t", 4);
+					if (fields.length == 4) {
+						done.put(fields[3], line);
+					}
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			System.out.println("BatchReplay > readManifest - Error: Reading from file failed, replaying all sessions.");
+		}
+		return(done);
+	}
+
+	/*
+	 * Method to report a finished session: print it, append its statistics
+	 * and, once its files are written, add it to the manifest.
+	 * Parameters:
+	 * result_p - Result of session.
+	 * entry_p - Manifest entry, null if the session failed.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	private synchronized boolean recordResult(Result result_p, String entry_p) {
+		System.out.println(formatResult(result_p));
+		try {
+			File stats = new File(outDir, STATS_FILE);
+			boolean header = !stats.exists();
+			PrintWriter out = new PrintWriter(new FileWriter(stats, true));
+			try {
+				if (header) {
+					out.println("session,scans,commands,read_ms,integrate_ms,write_ms,total_ms,scans_per_s,observed_cells,memory_kb,error");
+				}
+				out.println(result_p.session + "," + result_p.scans + "," + result_p.commands + ","
+						+ toMillis(result_p.readTime) + "," + toMillis(result_p.integrateTime) + ","
+						+ toMillis(result_p.writeTime) + "," + toMillis(result_p.totalTime) + ","
+						+ String.format("%.1f", getScanRate(result_p)) + "," + result_p.observedCells + ","
+						+ (result_p.memory >> 10) + ","
+						+ ((result_p.error == null) ? "" : result_p.error.toString().replace(',', ';')));
+			} finally {
+				out.close();
+			}
+			if (entry_p != null) {
+				out = new PrintWriter(new FileWriter(new File(outDir, MANIFEST_FILE), true));
+				try {
+					out.println(entry_p);
+				} finally {
+					out.close();
+				}
+			}
+			return true;
+		} catch (IOException e) {
+			System.out.println("BatchReplay > recordResult - Error: Writing to file failed.");
+			return false;
+		}
+	}
+
+	/*
+	 * Method to format a result as one line for the console.
+	 * Parameters:
+	 * result_p - Result to format.
+	 * Returns:
+	 * String describing result.
+	 */
+	private static String formatResult(Result result_p) {
+		if (result_p.error != null) {
+			return(result_p.session + ": failed - " + result_p.error);
+		}
+		return(String.format("%s: %d scans, %d commands, read %dms, integrate %dms, write %dms, total %dms (%.1f scans/s)",
+				result_p.session, result_p.scans, result_p.commands, toMillis(result_p.readTime),
+				toMillis(result_p.integrateTime), toMillis(result_p.writeTime), toMillis(result_p.totalTime),
+				getScanRate(result_p)));
+	}
+
+	/*
+	 * Method to format the totals of a run for the console.
+	 * Parameters:
+	 * summary_p - Summary to format.
+	 * Returns:
+	 * String describing run.
+	 */
+	private static String formatSummary(Summary summary_p) {
+		double seconds = summary_p.wallTime / 1e9;
+		return(String.format("BatchReplay: %d replayed, %d failed, %d skipped as done. %d scans in %.1fs (%.1f scans/s). "
+				+ "Session latency median %dms, 95th percentile %dms, max %dms.",
+				summary_p.replayed, summary_p.failed, summary_p.skipped, summary_p.scans, seconds,
+				(seconds > 0) ? (summary_p.scans / seconds) : 0, toMillis(summary_p.latencyMedian),
+				toMillis(summary_p.latency95), toMillis(summary_p.latencyMax)));
+	}
+
+	private static long toMillis(long nanos_p) {
+		return(nanos_p / 1000000);
+	}
+
+	private static double getScanRate(Result result_p) {
+		return((result_p.integrateTime > 0) ? (result_p.scans * 1e9 / result_p.integrateTime) : 0);
+	}
+}
@@ -0,0 +1,338 @@
+/*
+ * BinarySession.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Binary mapping session file, opened through a memory mapped buffer.
+ *
+ * The text session format stores every value on its own line, so loading a
+ * long session means parsing millions of lines. The binary format stores the
+ * same scans and move commands as raw big-endian values, and loading maps the
+ * file instead of reading it, so a session opens in the time it takes to read
+ * the header and any scan can be read directly through the index.
+ *
+ * File layout:
+ * - Header, HEADER_SIZE bytes:
+ *   magic number (int), format version (short), flags (short, unused),
+ *   scan count (int), command count (int), command table offset (long),
+ *   scan index offset (long).
+ * - Scan records, one after another:
+ *   sample rate (int, negative for a reverse sweep), number of readings
+ *   (int), x, y and heading of the position the scan was taken from
+ *   (doubles), readings (ints).
+ * - Command table, COMMAND_SIZE bytes per command:
+ *   rotation (int), travel (int), odometry x, y and heading (doubles).
+ * - Scan index, the file offset of each scan record (longs).
+ *
+ * Scan N is paired with command N, the move made after the scan, as in the
+ * text format. The buffer is not shared between threads, so a session should
+ * be read by one thread at a time.
+ */
+
+package mattadshead.swansea3.dissertation.pcapp;
+
+import java.awt.geom.Point2D;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import mattadshead.swansea3.dissertation.structures.DataScan;
+import mattadshead.swansea3.dissertation.structures.MoveCommand;
+
+public class BinarySession {
+
+	//Symbolic constants for file format.
+	public static final int		MAGIC = 0x454E5653,	//"ENVS"
+								FORMAT_VERSION = 1,
+								HEADER_SIZE = 32,
+								SCAN_HEADER_SIZE = 32,
+								COMMAND_SIZE = 32;
+
+	//Mapped file contents.
+	private MappedByteBuffer buffer;
+	//Header values.
+	private int version, scanCount, commandCount;
+	private long commandOffset, indexOffset;
+
+	/*
+	 * Class constructor. Maps a session file and checks its header.
+	 * Parameters:
+	 * filepath_p - Path of binary session file.
+	 * Returns:
+	 * None
+	 */
+	public BinarySession(String filepath_p) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(filepath_p, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			if (channel.size() < HEADER_SIZE) {
+				throw new IOException("BinarySession - Error: File too short for header.");
+			}
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("BinarySession - Error: Session files are limited to 2GB.");
+			}
+			//Mapping stays valid after the channel is closed.
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			file.close();
+		}
+
+		//Read and check header.
+		if (buffer.getInt(0) != MAGIC) {
+			throw new IOException("BinarySession - Error: Not a binary session file.");
+		}
+		version = buffer.getShort(4);
+		if (version > FORMAT_VERSION) {
+			throw new IOException("BinarySession - Error: Unsupported format version " + version + ".");
+		}
+		scanCount = buffer.getInt(8);
+		commandCount = buffer.getInt(12);
+		commandOffset = buffer.getLong(16);
+		indexOffset = buffer.getLong(24);
+		if ((scanCount < 0) || (commandCount < 0)
+				|| ((commandOffset + ((long)commandCount * COMMAND_SIZE)) > buffer.capacity())
+				|| ((indexOffset + ((long)scanCount * 8)) > buffer.capacity())) {
+			throw new IOException("BinarySession - Error: Header does not match file size.");
+		}
+	}
+
+	/*
+	 * Method to read a scan.
+	 * Parameters:
+	 * index_p - Scan number, starting from 0.
+	 * Returns:
+	 * DataScan read from file.
+	 */
+	public DataScan getScan(int index_p) throws IOException {
+		if ((index_p < 0) || (index_p >= scanCount)) {
+			throw new IndexOutOfBoundsException("Scan " + index_p + " outside session.");
+		}
+		int offset = (int)buffer.getLong((int)indexOffset + (index_p * 8));
+		int rate = buffer.getInt(offset);
+		int numVals = buffer.getInt(offset + 4);
+		if ((offset < HEADER_SIZE) || (numVals <= 0)
+				|| ((offset + SCAN_HEADER_SIZE + ((long)numVals * 4)) > commandOffset)) {
+			throw new IOException("BinarySession - Error: Scan " + index_p + " record is corrupt.");
+		}
+		Point2D.Double position = new Point2D.Double(buffer.getDouble(offset + 8), buffer.getDouble(offset + 16));
+		double heading = buffer.getDouble(offset + 24);
+		//Bulk read readings through an int view of the record.
+		ByteBuffer values = buffer.duplicate();
+		values.position(offset + SCAN_HEADER_SIZE);
+		int[] vals = new int[numVals];
+		values.asIntBuffer().get(vals);
+		DataScan scan = new DataScan(vals, position, heading);
+		if (rate < 0) {
+			scan.setSweepDirection(DataScan.SWEEP_REVERSE);
+		}
+		return(scan);
+	}
+
+	/*
+	 * Method to read a move command.
+	 * Parameters:
+	 * index_p - Command number, starting from 0.
+	 * Returns:
+	 * MoveCommand read from file, with odometry values set.
+	 */
+	public MoveCommand getCommand(int index_p) {
+		if ((index_p < 0) || (index_p >= commandCount)) {
+			throw new IndexOutOfBoundsException("Command " + index_p + " outside session.");
+		}
+		int offset = (int)commandOffset + (index_p * COMMAND_SIZE);
+		MoveCommand mc = new MoveCommand(buffer.getInt(offset), buffer.getInt(offset + 4));
+		mc.setNewX(buffer.getDouble(offset + 8));
+		mc.setNewY(buffer.getDouble(offset + 16));
+		mc.setNewHeading(buffer.getDouble(offset + 24));
+		return(mc);
+	}
+
+	public int getScanCount() {
+		return(scanCount);
+	}
+
+	public int getCommandCount() {
+		return(commandCount);
+	}
+
+	public int getVersion() {
+		return(version);
+	}
+
+	/*
+	 * Method to write scans and move commands to a binary session file. The
+	 * file is written beside the path and moved into place once it is on
+	 * disk, so a crash part way through leaves the previous file in place.
+	 * Parameters:
+	 * filepath_p - Path of file to write.
+	 * scans_p - Scans from mapping session to store.
+	 * comms_p - Movement commands from mapping session to store.
+	 * Returns:
+	 * None
+	 */
+	public static void write(String filepath_p, List<DataScan> scans_p, List<MoveCommand> comms_p) throws IOException {
+		//Work out record offsets first, so the file is written in one pass.
+		long[] offsets = new long[scans_p.size()];
+		long offset = HEADER_SIZE;
+		for (int i = 0; i < offsets.length; i++) {
+			offsets[i] = offset;
+			offset += SCAN_HEADER_SIZE + ((long)scans_p.get(i).size() * 4);
+		}
+		long commandOffset = offset;
+		long indexOffset = commandOffset + ((long)comms_p.size() * COMMAND_SIZE);
+
+		File target = new File(filepath_p);
+		File temp = new File(filepath_p + ".tmp");
+		FileOutputStream file = new FileOutputStream(temp);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file));
+		try {
+			//Write header.
+			out.writeInt(MAGIC);
+			out.writeShort(FORMAT_VERSION);
+			out.writeShort(0);
+			out.writeInt(scans_p.size());
+			out.writeInt(comms_p.size());
+			out.writeLong(commandOffset);
+			out.writeLong(indexOffset);
+			//Write scan records.
+			for (DataScan scan : scans_p) {
+				Point2D.Double position = scan.getRelativePosition();
+				out.writeInt(scan.getAngleStep());
+				out.writeInt(scan.size());
+				out.writeDouble(position.getX());
+				out.writeDouble(position.getY());
+				out.writeDouble(scan.getHeading());
+				for (int v : scan.getValues()) {
+					out.writeInt(v);
+				}
+			}
+			//Write command table.
+			for (MoveCommand comm : comms_p) {
+				out.writeInt(comm.getRotateCommand());
+				out.writeInt(comm.getTravelCommand());
+				out.writeDouble(comm.getNewX());
+				out.writeDouble(comm.getNewY());
+				out.writeDouble(comm.getNewHeading());
+			}
+			//Write scan index.
+			for (long o : offsets) {
+				out.writeLong(o);
+			}
+			//Make file durable before it replaces the old one.
+			out.flush();
+			file.getFD().sync();
+		} catch (IOException e) {
+			out.close();
+			temp.delete();
+			throw e;
+		}
+		out.close();
+		Files.move(temp.toPath(), target.toPath(),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/*
+	 * Method to convert a text session file to a binary session file.
+	 * Parameters:
+	 * textPath_p - Path of text session file to read.
+	 * binaryPath_p - Path of binary session file to write.
+	 * Returns:
+	 * Integer representing number of scans converted.
+	 */
+	public static int convertText(String textPath_p, String binaryPath_p) throws IOException {
+		ArrayList<DataScan> scans = new ArrayList<DataScan>();
+		ArrayList<MoveCommand> comms = new ArrayList<MoveCommand>();
+		TextSessionReader in = new TextSessionReader(textPath_p);
+		try {
+			int type = in.next();
+			while (type != -1) {
+				if (type == SessionJournal.SCAN_RECORD) {
+					scans.add(in.getScan());
+				} else {
+					comms.add(in.getCommand());
+				}
+				type = in.next();
+			}
+		} finally {
+			in.close();
+		}
+		write(binaryPath_p, scans, comms);
+		return(scans.size());
+	}
+
+	/*
+	 * Method to check whether a file is a binary session file.
+	 * Parameters:
+	 * filepath_p - Path of file to check.
+	 * Returns:
+	 * Boolean representing whether the file starts with the magic number.
+	 */
+	public static boolean isBinary(String filepath_p) throws IOException {
+		DataInputStream in = new DataInputStream(new FileInputStream(filepath_p));
+		try {
+			return(in.readInt() == MAGIC);
+		} catch (IOException e) {
+			//Files shorter than the magic number are not binary sessions.
+			return false;
+		} finally {
+			in.close();
+		}
+	}
+
+	/*
+	 * Method to get a sequential reader of the session.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * SessionReader returning each scan followed by its move command.
+	 */
+	public SessionReader reader() {
+		return(new Reader());
+	}
+
+	//Sequential reader returning scan N, then command N if there is one.
+	private class Reader implements SessionReader {
+		private int next = 0;
+		private boolean commandNext = false;
+		private DataScan scan;
+		private MoveCommand command;
+
+		public int next() throws IOException {
+			if (commandNext) {
+				commandNext = false;
+				command = BinarySession.this.getCommand(next - 1);
+				return(SessionJournal.COMMAND_RECORD);
+			}
+			if (next >= scanCount) {
+				return(-1);
+			}
+			scan = BinarySession.this.getScan(next);
+			commandNext = (next < commandCount);
+			next++;
+			return(SessionJournal.SCAN_RECORD);
+		}
+
+		public DataScan getScan() {
+			return(scan);
+		}
+
+		public MoveCommand getCommand() {
+			return(command);
+		}
+
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * BluetoothTransport.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Transport to a real NXT over Bluetooth, using leJOS NXTComm.
+ */
+
+package mattadshead.swansea3.dissertation.pcapp;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import lejos.pc.comm.NXTComm;
+import lejos.pc.comm.NXTCommException;
+import lejos.pc.comm.NXTCommFactory;
+import lejos.pc.comm.NXTInfo;
+
+public class BluetoothTransport implements Transport {
+
+	//Address of NXT to link to.
+	private String address;
+	//leJOS NXTComm object represents a communication link to an NXT.
+	private NXTComm nxtComm;
+	//leJOS NXTInfo object contains information about linked NXT.
+	private NXTInfo nxtInfo;
+	private DataInputStream inStream;
+	private DataOutputStream outStream;
+
+	/*
+	 * Class constructor.
+	 * Parameters:
+	 * address_p - Bluetooth address of NXT.
+	 * Returns:
+	 * None
+	 */
+	public BluetoothTransport(String address_p) {
+		address = address_p;
+	}
+
+	public boolean open() throws NXTCommException {
+		//Create NXTComm object for communication using Bluetooth protocol.
+		nxtComm = NXTCommFactory.createNXTComm(NXTCommFactory.BLUETOOTH);
+		//Create NXTInfo object which uniquely identifies the NXT.
+		nxtInfo = new NXTInfo(NXTCommFactory.BLUETOOTH, "NXT", address);
+		
+		//Open communication link to the NXT.
+		nxtComm.open(nxtInfo);
+		
+		//Create data input and output streams to the NXT.
+		inStream = new DataInputStream(nxtComm.getInputStream());
+		outStream = new DataOutputStream(nxtComm.getOutputStream());
+		return true;
+	}
+
+	public DataInputStream getInputStream() {
+		return(inStream);
+	}
+
+	public DataOutputStream getOutputStream() {
+		return(outStream);
+	}
+
+	public boolean close() {
+		try {
+			//If not null close all.
+			if (inStream != null) inStream.close();
+			if (outStream != null) outStream.close();
+			if (nxtComm != null) nxtComm.close();
+			return true;
+		} catch (IOException e) {
+			//Print error for IOException on close calls.
+			System.out.println("BluetoothTransport > close - Error: Bluetooth shutdown failed.");
+			return false;
+		}
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * CheckpointWriter.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Background writer for map checkpoints of a journaled session.
+ *
+ * Taking a checkpoint on the event thread only references the published grid
+ * snapshot, so compressing and writing it is left to a writer thread. If
+ * checkpoints are submitted faster than they can be written, only the latest
+ * waiting one is written.
+ *
+ * Before writing a checkpoint the writer waits for the journal to be on disk,
+ * so a checkpoint never covers scans or commands a crash could lose from the
+ * journal.
+ */
+
+package mattadshead.swansea3.dissertation.pcapp;
+
+import java.io.IOException;
+
+import mattadshead.swansea3.dissertation.structures.MapCheckpoint;
+
+public class CheckpointWriter {
+
+	//Path of checkpoint file.
+	private String filepath;
+	//Journal the checkpoints cover, may be null.
+	private SessionJournal journal;
+	private Thread writer;
+
+	//Checkpoint waiting to be written, guarded by the writer.
+	private MapCheckpoint pending = null;
+	private boolean closed = false;
+	//Scan count of the last checkpoint submitted, and number written.
+	private int lastScanCount = -1;
+	private int written = 0;
+
+	/*
+	 * Class constructor. Starts the writer thread.
+	 * Parameters:
+	 * filepath_p - Path of checkpoint file.
+	 * journal_p - Journal the checkpoints cover, may be null.
+	 * Returns:
+	 * None
+	 */
+	public CheckpointWriter(String filepath_p, SessionJournal journal_p) {
+		filepath = filepath_p;
+		journal = journal_p;
+		writer = new Thread(new Runnable() {
+			public void run() {
+				writeCheckpoints();
+			}
+		}, "Checkpoint writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/*
+	 * Method to queue a checkpoint for writing, replacing any checkpoint not
+	 * yet written.
+	 * Parameters:
+	 * checkpoint_p - Checkpoint to write.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public synchronized boolean submit(MapCheckpoint checkpoint_p) {
+		if (closed) {
+			System.out.println("CheckpointWriter > submit - Error: Writer is closed.");
+			return false;
+		}
+		pending = checkpoint_p;
+		lastScanCount = checkpoint_p.getScanCount();
+		notifyAll();
+		return true;
+	}
+
+	/*
+	 * Method to write any waiting checkpoint and stop the writer thread.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * None
+	 */
+	public void close() throws InterruptedException {
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+		writer.join();
+	}
+
+	public String getFilePath() {
+		return(filepath);
+	}
+
+	/*
+	 * Accessor method for scan count of the last checkpoint submitted.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Integer representing scan count, -1 if none submitted.
+	 */
+	public synchronized int getLastScanCount() {
+		return(lastScanCount);
+	}
+
+	/*
+	 * Mutator method for scan count of the last checkpoint, for a checkpoint
+	 * already on disk when the writer starts.
+	 * Parameters:
+	 * scanCount_p - Scan count of checkpoint.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public synchronized boolean setLastScanCount(int scanCount_p) {
+		lastScanCount = scanCount_p;
+		return true;
+	}
+
+	public synchronized int getWrittenCount() {
+		return(written);
+	}
+
+	/*
+	 * Method run by the writer thread. Writes checkpoints until closed.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * None
+	 */
+	private void writeCheckpoints() {
+		while (true) {
+			MapCheckpoint checkpoint;
+			synchronized (this) {
+				while ((pending == null) && !closed) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						System.out.println("CheckpointWriter > writeCheckpoints - Error: Writer interrupted.");
+						return;
+					}
+				}
+				if (pending == null) {
+					return;
+				}
+				checkpoint = pending;
+				pending = null;
+			}
+			try {
+				//Journal must hold everything the checkpoint covers.
+				if ((journal != null) && !journal.flush()) {
+					System.out.println("CheckpointWriter > writeCheckpoints - Error: Journal not on disk, checkpoint skipped.");
+					continue;
+				}
+				checkpoint.write(filepath);
+				synchronized (this) {
+					written++;
+				}
+			} catch (IOException e) {
+				System.out.println("CheckpointWriter > writeCheckpoints - Error: Writing to file failed.");
+			} catch (InterruptedException e) {
+				System.out.println("CheckpointWriter > writeCheckpoints - Error: Writer interrupted.");
+				return;
+			}
+		}
+	}
+}
@@ -13,33 +13,84 @@ package mattadshead.swansea3.dissertation.pcapp;
 
 import java.awt.Point;
 import java.awt.geom.Point2D;
-import java.io.BufferedReader;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 
 import javax.swing.JOptionPane;
 
-import lejos.pc.comm.NXTComm;
 import lejos.pc.comm.NXTCommException;
-import lejos.pc.comm.NXTCommFactory;
-import lejos.pc.comm.NXTInfo;
 import lejos.robotics.navigation.Pose;
+import mattadshead.swansea3.dissertation.structures.ChunkedGridStore;
 import mattadshead.swansea3.dissertation.structures.DataScan;
+import mattadshead.swansea3.dissertation.structures.Histogram;
+import mattadshead.swansea3.dissertation.structures.MapCheckpoint;
+import mattadshead.swansea3.dissertation.structures.Metrics;
 import mattadshead.swansea3.dissertation.structures.MoveCommand;
 import mattadshead.swansea3.dissertation.structures.OGM;
 import mattadshead.swansea3.dissertation.structures.RawDataDisplay;
+import mattadshead.swansea3.dissertation.structures.ScanSamples;
 import mattadshead.swansea3.dissertation.structures.Visualisation;
 
 public class Controller {	
+	//Symbolic constant for number of scans integrated between map checkpoints.
+	private final int CHECKPOINT_INTERVAL = 25;
+	//Symbolic constants for sensor readings per second assumed when setting
+	//the continuous sweep speed, and the fastest sweep in degrees per second.
+	private final int SENSOR_READ_RATE = 50,
+					MAX_SWEEP_SPEED = 180;
+	//Time taken by commands to the NXT and by session file I/O.
+	private static final Histogram	MOVE_TIME = Metrics.histogram("nxt.move", Histogram.NANOSECONDS),
+									SCAN_TIME = Metrics.histogram("nxt.scan", Histogram.NANOSECONDS),
+									MOVE_SCAN_TIME = Metrics.histogram("nxt.moveScan", Histogram.NANOSECONDS),
+									LOAD_TIME = Metrics.histogram("session.load", Histogram.NANOSECONDS),
+									SAVE_TIME = Metrics.histogram("session.save", Histogram.NANOSECONDS);
+	
 	//Pointer to model class for data access.
 	private Model model;
 	
+	//Pool shared by maps for parallel scan integration.
+	private ForkJoinPool integrationPool;
+	//Precision of cells of new maps.
+	private int cellPrecision = ChunkedGridStore.FLOAT_CELLS;
+	
+	//Journal of the current mapping session, opened when the first record is added.
+	private SessionJournal journal;
+	//Path of a loaded journal to continue, null to start a new one.
+	private String journalPath;
+	//Writer for checkpoints of the journaled session.
+	private CheckpointWriter checkpointWriter;
+	//Lock held while saving, so one save runs at a time.
+	private final Object saveLock = new Object();
+	
+	//Whether scans are sent in frames, and as 16 bit rather than 32 bit readings.
+	private boolean framedScan = true;
+	private boolean compactScan = true;
+	//Whether scans sweep continuously, binned into evenly spaced readings.
+	private boolean continuousScan = false;
+	//Whether framed and continuous scans alternate sweep direction, and the next direction.
+	private boolean alternateSweep = true;
+	private int nextSweep = DataScan.SWEEP_FORWARD;
+	
+	//Whether requests to the NXT are pipelined, and the link carrying them once connected.
+	private boolean pipelined = true;
+	private NXTLink link;
+	//Whether each mapping step sends its move and scan as one command.
+	private boolean moveScan = true;
+	
 	
 	/*
 	 * Class constructor.
@@ -114,6 +165,173 @@ public class Controller {
 		}
 	}
 	
+	/*
+	 * Method to send several integers to the NXT with one flush.
+	 * Parameters:
+	 * data - Integers to transmit.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean sendInts(int... data) {
+		DataOutputStream osPtr = model.getOutStream();
+		try {
+			for (int d : data) {
+				osPtr.writeInt(d);
+			}
+			osPtr.flush();
+			return true;
+		} catch (IOException e) {
+			System.out.println("Controller > sendInts -"
+								+ "Error: Data transfer failed.");
+			return false;
+		}
+	}
+	
+	/*
+	 * Method to receive the readings of a framed scan from the NXT.
+	 * Parameters:
+	 * arraySize_p - Number of readings in the scan.
+	 * valueBytes_p - Bytes per reading, 2 or 4.
+	 * Returns:
+	 * Array of readings.
+	 */
+	public int[] recvScanFrames(int arraySize_p, int valueBytes_p) throws NXTCommException {
+		return(NXTLink.readScanFrames(model.getInStream(), arraySize_p, valueBytes_p));
+	}
+	
+	/*
+	 * Method to receive the samples of a continuous scan from the NXT, up to
+	 * the empty frame that ends the scan.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * ScanSamples holding each reading with its angle and time.
+	 */
+	public ScanSamples recvSampleFrames() throws NXTCommException {
+		return(NXTLink.readSampleFrames(model.getInStream()));
+	}
+	
+	/*
+	 * Mutator method for continuous scanning, where the sensor sweeps at a
+	 * constant speed rather than stopping for each reading.
+	 * Parameters:
+	 * continuous_p - Whether scans are continuous.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setContinuousScan(boolean continuous_p) {
+		continuousScan = continuous_p;
+		return true;
+	}
+	
+	/*
+	 * Mutator method for alternating sweep direction. When alternating, each
+	 * framed or continuous scan sweeps the opposite way to the last, so the
+	 * sensor never rewinds between scans.
+	 * Parameters:
+	 * alternate_p - Whether sweeps alternate direction.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setAlternateSweep(boolean alternate_p) {
+		alternateSweep = alternate_p;
+		nextSweep = DataScan.SWEEP_FORWARD;
+		return true;
+	}
+	
+	/*
+	 * Mutator method for pipelined requests, where each request to the NXT
+	 * carries an ID and the next can be sent before the last is answered.
+	 * Takes effect from the next Bluetooth setup. Replies on the pipelined
+	 * link are framed, so it cannot carry legacy scans.
+	 * Parameters:
+	 * pipelined_p - Whether requests are pipelined.
+	 * Returns:
+	 * Boolean representing operation success, false if legacy scans are set.
+	 */
+	public boolean setPipelined(boolean pipelined_p) {
+		if (pipelined_p && !framedScan) {
+			System.out.println("Controller > setPipelined - Error: Legacy scans cannot be pipelined.");
+			return false;
+		}
+		pipelined = pipelined_p;
+		return true;
+	}
+	
+	/*
+	 * Mutator method for combined move and scan, where each mapping step
+	 * sends one command that moves the robot and then scans. The scan is
+	 * always framed, so legacy scans cannot be combined with moves.
+	 * Parameters:
+	 * moveScan_p - Whether mapping steps combine move and scan.
+	 * Returns:
+	 * Boolean representing operation success, false if legacy scans are set.
+	 */
+	public boolean setMoveScan(boolean moveScan_p) {
+		if (moveScan_p && !framedScan) {
+			System.out.println("Controller > setMoveScan - Error: Legacy scans cannot be combined with moves.");
+			return false;
+		}
+		moveScan = moveScan_p;
+		return true;
+	}
+	
+	/*
+	 * Mutator method for precision of cells of new maps. Float cells use
+	 * half the memory of double cells and short cells a quarter.
+	 * Parameters:
+	 * precision_p - ChunkedGridStore.DOUBLE_CELLS, FLOAT_CELLS or SHORT_CELLS.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setCellPrecision(int precision_p) {
+		if ((precision_p != ChunkedGridStore.DOUBLE_CELLS) && (precision_p != ChunkedGridStore.FLOAT_CELLS)
+				&& (precision_p != ChunkedGridStore.SHORT_CELLS)) {
+			System.out.println("Controller > setCellPrecision - Error: Unknown cell precision.");
+			return false;
+		}
+		cellPrecision = precision_p;
+		return true;
+	}
+	
+	/*
+	 * Method to get the direction of the next sweep, and move on to the one
+	 * after.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Integer representing sweep direction.
+	 */
+	private int nextSweepDirection() {
+		int direction = nextSweep;
+		if (alternateSweep) {
+			nextSweep = -nextSweep;
+		}
+		return(direction);
+	}
+	
+	/*
+	 * Mutator method for scan transfer format. Legacy scans, unframed with a
+	 * flush per reading, only work over an unpipelined link without combined
+	 * move and scan, since both of those always take framed scans.
+	 * Parameters:
+	 * framed_p - Whether scans are sent in checked frames rather than a flush per reading.
+	 * compact_p - Whether framed readings are 16 bit rather than 32 bit.
+	 * Returns:
+	 * Boolean representing operation success, false if legacy scans are
+	 * asked for while pipelined or combining move and scan.
+	 */
+	public boolean setScanTransfer(boolean framed_p, boolean compact_p) {
+		if (!framed_p && (pipelined || (link != null) || moveScan)) {
+			System.out.println("Controller > setScanTransfer - Error: Legacy scans need an unpipelined link "
+					+ "without combined move and scan.");
+			return false;
+		}
+		framedScan = framed_p;
+		compactScan = compact_p;
+		return true;
+	}
+	
 	/*
 	 * Method to send a boolean to the NXT.
 	 * Parameters:
@@ -168,7 +386,7 @@ public class Controller {
 			//Get map pointer.
 			map = (OGM)model.getVisualisation();
 			//Collect scan using NXT.
-			DataScan scan = getScan(sampleRate_p, map.getBotPosition(), map.getBotOrientation());
+			DataScan scan = new SimpleSource(map, sampleRate_p).nextScan();
 			try {
 				//Execute map algorithm using scan.
 				map.simpleMap(scan);
@@ -195,62 +413,541 @@ public class Controller {
 			//Get pointer to map.
 			map = (OGM)model.getVisualisation();
 			try {
-				//Initialise exit flag.
-				int exit = 1;
-				do {
-					//Get DataScan from robot.
-					DataScan scan = getScan(sampleRate_p, map.getBotPosition(), map.getBotOrientation());
-					
+				//Get scans from robot, moving between scans, until user stops.
+				BayesianSource source = new BayesianSource(map, sampleRate_p);
+				DataScan scan = source.nextScan();
+				while (scan != null) {
 					//Update map using scan.
 					map.updateMap(scan);
-					
-					//Ask user whether to continue.
-					exit = JOptionPane.showConfirmDialog(
-						    model.getView().getContentPane(),
-						    "Continue mapping?",
-						    "Input",
-						    JOptionPane.YES_NO_OPTION);
-					
-					//If user picks continue...
-					if (exit == 0) {
-						//Request rotation command.
-						String rInput = JOptionPane.showInputDialog(
+					checkpointMap(map, false);
+					scan = source.nextScan();
+				}
+				checkpointMap(map, true);
+			} catch (IndexOutOfBoundsException e) {
+				System.out.println("Controller > bayesianMap - Error: Reading out of bounds.");
+			}
+			return true;
+		} else {
+			System.out.println("Controller > bayesianMap - Error: No map found.");
+			return false;
+		}
+	}
+	
+	/*
+	 * Method to start the simple mapping algorithm off the event thread.
+	 * Parameters:
+	 * sampleRate_p - Integer representing sample rate for data scan.
+	 * listener_p - Listener for progress reports.
+	 * Returns:
+	 * Started MappingPipeline, null if there is no map.
+	 */
+	public MappingPipeline startSimpleMap(int sampleRate_p, MappingPipeline.ProgressListener listener_p) {
+		if (!checkIfMapPresent()) {
+			System.out.println("Controller > startSimpleMap - Error: No map found.");
+			return null;
+		}
+		OGM map = (OGM)model.getVisualisation();
+		MappingPipeline pipeline = new MappingPipeline(map, new SimpleSource(map, sampleRate_p), true,
+				new CheckpointListener(map, listener_p));
+		pipeline.start();
+		return pipeline;
+	}
+	
+	/*
+	 * Method to start the Bayesian mapping algorithm off the event thread.
+	 * The robot moves to and scans the next position while the previous
+	 * scan is integrated.
+	 * Parameters:
+	 * sampleRate_p - Integer representing sample rate for scans.
+	 * listener_p - Listener for progress reports.
+	 * Returns:
+	 * Started MappingPipeline, null if there is no map.
+	 */
+	public MappingPipeline startBayesianMap(int sampleRate_p, MappingPipeline.ProgressListener listener_p) {
+		if (!checkIfMapPresent()) {
+			System.out.println("Controller > startBayesianMap - Error: No map found.");
+			return null;
+		}
+		OGM map = (OGM)model.getVisualisation();
+		MappingPipeline pipeline = new MappingPipeline(map, new BayesianSource(map, sampleRate_p), false,
+				new CheckpointListener(map, listener_p));
+		pipeline.start();
+		return pipeline;
+	}
+	
+	/*
+	 * Method to start loading a session from file off the event thread.
+	 * Parameters:
+	 * map_p - Map object to load session to.
+	 * filepath_p - Path of file to load session from.
+	 * listener_p - Listener for progress reports.
+	 * Returns:
+	 * Started MappingPipeline.
+	 */
+	public MappingPipeline startLoadSession(OGM map_p, String filepath_p,
+			MappingPipeline.ProgressListener listener_p) throws IOException {
+		//Open file here so a missing or unreadable file is reported straight away.
+		MappingPipeline pipeline = new MappingPipeline(map_p, openSession(map_p, filepath_p), false,
+				new CheckpointListener(map_p, listener_p));
+		pipeline.start();
+		return pipeline;
+	}
+	
+	//Scan source taking a single scan from the NXT.
+	private class SimpleSource implements MappingPipeline.ScanSource {
+		private OGM map;
+		private int sampleRate;
+		private boolean done = false;
+		
+		public SimpleSource(OGM map_p, int sampleRate_p) {
+			map = map_p;
+			sampleRate = sampleRate_p;
+		}
+		
+		public DataScan nextScan() throws NXTCommException {
+			if (done) {
+				return null;
+			}
+			done = true;
+			DataScan scan = getScan(sampleRate, map.getBotPosition(), map.getBotOrientation());
+			journalScan(scan);
+			return(scan);
+		}
+		
+		public void close() {
+		}
+	}
+	
+	//Scan source taking scans from the NXT and asking the user for a move between scans.
+	private class BayesianSource implements MappingPipeline.ScanSource {
+		private OGM map;
+		private int sampleRate;
+		private boolean first = true;
+		//Scan queued behind or taken with the last move, not yet returned.
+		private CompletableFuture<DataScan> pendingScan;
+		
+		public BayesianSource(OGM map_p, int sampleRate_p) {
+			map = map_p;
+			sampleRate = sampleRate_p;
+		}
+		
+		public DataScan nextScan() throws NXTCommException {
+			if (!first) {
+				//Ask user whether to continue.
+				final int[] exit = new int[1];
+				MappingPipeline.runOnEventThread(new Runnable() {
+					public void run() {
+						exit[0] = JOptionPane.showConfirmDialog(
+							    model.getView().getContentPane(),
+							    "Continue mapping?",
+							    "Input",
+							    JOptionPane.YES_NO_OPTION);
+					}
+				});
+				if (exit[0] != 0) {
+					return null;
+				}
+				
+				//Request rotation and travel commands.
+				final String[] input = new String[2];
+				MappingPipeline.runOnEventThread(new Runnable() {
+					public void run() {
+						input[0] = JOptionPane.showInputDialog(
 										model.getView().getContentPane(),
 										"Enter rotation degrees: ");
-						int rotate = Integer.parseInt(rInput);
-						
-						//Request travel command.
-						String tInput = JOptionPane.showInputDialog(
+						input[1] = JOptionPane.showInputDialog(
 										model.getView().getContentPane(),
 										"Enter travel distance: ");
-						int travel = Integer.parseInt(tInput);
-						
-						//Create MoveCommand object.
-						MoveCommand mc = new MoveCommand(rotate, travel);
-						
-						//Send move command to robot and get odometry pose.
-						Pose newPose = moveCommand(mc);
-						
+					}
+				});
+				int rotate = Integer.parseInt(input[0]);
+				int travel = Integer.parseInt(input[1]);
+				
+				//Create MoveCommand object.
+				final MoveCommand mc = new MoveCommand(rotate, travel);
+				final Pose newPose;
+				if (moveScan) {
+					//Move and scan in one command.
+					DataScan[] scan = new DataScan[1];
+					newPose = moveScan(mc, sampleRate, scan);
+					pendingScan = CompletableFuture.completedFuture(scan[0]);
+				} else if (link != null) {
+					//Queue the scan behind the move, so the NXT starts it as
+					//soon as the move ends.
+					CompletableFuture<Pose[]> move = link.move(mc.getRotateCommand(), mc.getTravelCommand());
+					pendingScan = requestScan(sampleRate);
+					Pose[] poses = await(move);
+					newPose = finishMove(mc, poses[0], poses[1]);
+				} else {
+					//Send move command to robot and get odometry pose.
+					newPose = moveCommand(mc);
+				}
+				journalCommand(mc);
+				
+				//Move bot on map, which is drawn on the event thread.
+				MappingPipeline.runOnEventThread(new Runnable() {
+					public void run() {
 						//Save start position.
 						Point2D.Double p1 = map.getBotPosition();
 						//Update bot state with odometry.
 						map.updateBotState(newPose);
 						//Add MoveCommand to command history.
 						map.addCommand(mc);
-						//Get new position.
-						Point2D.Double p2 = map.getBotPosition();
 						//Add bot path line to map.
-						map.addLine(p1, p2);
+						map.addLine(p1, map.getBotPosition());
 					}
-					//Loop while user selects continue.
-				} while (exit == 0);
-			} catch (IndexOutOfBoundsException e) {
-				System.out.println("Controller > bayesianMap - Error: Reading out of bounds.");
+				});
+			}
+			first = false;
+			//Get DataScan from robot.
+			DataScan scan;
+			if (pendingScan != null) {
+				scan = await(pendingScan);
+				pendingScan = null;
+				scan.setRelativePosition(map.getBotPosition());
+				scan.setHeading(map.getBotOrientation());
+			} else {
+				scan = getScan(sampleRate, map.getBotPosition(), map.getBotOrientation());
+			}
+			journalScan(scan);
+			return(scan);
+		}
+		
+		public void close() {
+		}
+	}
+	
+	/*
+	 * Method to open a session file of any format as a scan source. A
+	 * journal loaded into a fresh map is continued as the session journal,
+	 * starting from its checkpoint. Anything else adds to the map, so it is
+	 * replayed in full into the current session journal.
+	 * Parameters:
+	 * map_p - Map object the session is loaded to.
+	 * filepath_p - Path of session file.
+	 * Returns:
+	 * ScanSource reading the session.
+	 */
+	private MappingPipeline.ScanSource openSession(OGM map_p, String filepath_p) throws IOException {
+		if (SessionJournal.isJournal(filepath_p) && map_p.isFresh()) {
+			//Continue loaded journal, which drops any record torn by a crash.
+			closeJournal();
+			SessionJournal j;
+			synchronized (this) {
+				journalPath = filepath_p;
+				j = getJournal();
+			}
+			if (j == null) {
+				throw new IOException("Controller - Error: Opening journal failed.");
+			}
+			//Skip scans and commands already in the checkpoint.
+			MapCheckpoint checkpoint = restoreCheckpoint(map_p, j);
+			int skipScans = 0, skipCommands = 0;
+			if (checkpoint != null) {
+				skipScans = checkpoint.getScanCount();
+				skipCommands = checkpoint.getCommandCount();
+				synchronized (this) {
+					checkpointWriter.setLastScanCount(skipScans);
+				}
 			}
+			return(new ReaderSource(map_p, new PlacedSessionReader(new SessionJournal.Reader(filepath_p), map_p),
+					skipScans, skipCommands, false));
+		}
+		//Other files add to the map, so their records go into the session journal,
+		//which is started if none is open.
+		return(new ReaderSource(map_p, new PlacedSessionReader(openSessionReader(filepath_p), map_p), 0, 0, true));
+	}
+	
+	/*
+	 * Method to open a sequential reader for a session file, working out its
+	 * format from the start of the file.
+	 * Parameters:
+	 * filepath_p - Path of journal, binary or text session file.
+	 * Returns:
+	 * SessionReader for the file.
+	 */
+	public static SessionReader openSessionReader(String filepath_p) throws IOException {
+		if (SessionJournal.isJournal(filepath_p)) {
+			return(new SessionJournal.Reader(filepath_p));
+		}
+		if (BinarySession.isBinary(filepath_p)) {
+			return(new BinarySession(filepath_p).reader());
+		}
+		return(new TextSessionReader(filepath_p));
+	}
+	
+	/*
+	 * Method to convert a text session file to the binary session format.
+	 * Parameters:
+	 * textPath_p - Path of text session file.
+	 * binaryPath_p - Path of binary session file to write.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean convertSession(String textPath_p, String binaryPath_p) {
+		try {
+			BinarySession.convertText(textPath_p, binaryPath_p);
 			return true;
-		} else {
-			System.out.println("Controller > bayesianMap - Error: No map found.");
+		} catch (IOException e) {
+			System.out.println("Controller > convertSession - Error: Converting file failed.");
 			return false;
+		} catch (NumberFormatException e) {
+			System.out.println("Controller > convertSession - Error: Text session file is corrupt.");
+			return false;
+		}
+	}
+	
+	/*
+	 * Method to get the journal for the current mapping session, opening it
+	 * if needed. A new journal replaces the one at the default path, which
+	 * is kept as a backup.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * SessionJournal for the session, null if it could not be opened.
+	 */
+	private synchronized SessionJournal getJournal() {
+		if (journal == null) {
+			try {
+				if (journalPath != null) {
+					journal = SessionJournal.open(journalPath);
+				} else {
+					//Keep previous journal and its checkpoint as a backup.
+					String backupPath = model.DEFAULT_JOURNAL_PATH + ".prev";
+					moveFile(model.DEFAULT_JOURNAL_PATH, backupPath);
+					moveFile(getCheckpointPath(model.DEFAULT_JOURNAL_PATH), getCheckpointPath(backupPath));
+					journal = SessionJournal.create(model.DEFAULT_JOURNAL_PATH);
+				}
+				checkpointWriter = new CheckpointWriter(getCheckpointPath(journal.getFilePath()), journal);
+			} catch (IOException e) {
+				System.out.println("Controller > getJournal - Error: Opening journal failed.");
+			}
+		}
+		return(journal);
+	}
+	
+	/*
+	 * Method to add a scan to the session journal.
+	 * Parameters:
+	 * scan_p - Scan taken by the robot.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	private boolean journalScan(DataScan scan_p) {
+		SessionJournal j = getJournal();
+		return((scan_p != null) && (j != null) && j.append(scan_p));
+	}
+	
+	/*
+	 * Method to add a move command to the session journal.
+	 * Parameters:
+	 * command_p - Move command made by the robot.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	private boolean journalCommand(MoveCommand command_p) {
+		SessionJournal j = getJournal();
+		return((j != null) && j.append(command_p));
+	}
+	
+	/*
+	 * Method to commit and close the session journal. The next record
+	 * starts a new journal.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public synchronized boolean closeJournal() {
+		boolean returnBool = true;
+		if (journal != null) {
+			try {
+				//Writer waits for the journal, so close it first.
+				checkpointWriter.close();
+				returnBool = journal.close();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				returnBool = false;
+			}
+			checkpointWriter = null;
+			journal = null;
+		}
+		return returnBool;
+	}
+	
+	/*
+	 * Method to get the path of the checkpoint file kept beside a journal.
+	 * Parameters:
+	 * journalPath_p - Path of journal file.
+	 * Returns:
+	 * String representing checkpoint file path.
+	 */
+	private String getCheckpointPath(String journalPath_p) {
+		return(journalPath_p + ".ckpt");
+	}
+	
+	/*
+	 * Method to move a file, replacing any file at the new path.
+	 * Parameters:
+	 * from_p - Path of file to move, which may not exist.
+	 * to_p - New path.
+	 * Returns:
+	 * Boolean representing whether a file was moved.
+	 */
+	private boolean moveFile(String from_p, String to_p) {
+		File from = new File(from_p);
+		if (!from.exists()) {
+			return false;
+		}
+		File to = new File(to_p);
+		to.delete();
+		return(from.renameTo(to));
+	}
+	
+	/*
+	 * Method to queue a checkpoint of the map for the journaled session, if
+	 * enough scans have been integrated since the last one. Must be called on
+	 * the event thread.
+	 * Parameters:
+	 * map_p - Map being built.
+	 * force_p - Whether to checkpoint after any new scan, not just every
+	 * CHECKPOINT_INTERVAL scans.
+	 * Returns:
+	 * Boolean representing whether a checkpoint was queued.
+	 */
+	private boolean checkpointMap(OGM map_p, boolean force_p) {
+		CheckpointWriter w;
+		synchronized (this) {
+			w = checkpointWriter;
+		}
+		if (w == null) {
+			return false;
+		}
+		MapCheckpoint checkpoint = map_p.createCheckpoint();
+		int since = checkpoint.getScanCount() - w.getLastScanCount();
+		if ((since >= CHECKPOINT_INTERVAL) || (force_p && (since > 0))) {
+			return(w.submit(checkpoint));
+		}
+		return false;
+	}
+	
+	/*
+	 * Method to read the checkpoint of a journal and restore it into a map,
+	 * if it is usable.
+	 * Parameters:
+	 * map_p - Map to restore into.
+	 * journal_p - Journal of the session being loaded.
+	 * Returns:
+	 * MapCheckpoint restored, null if the whole journal must be replayed.
+	 */
+	private MapCheckpoint restoreCheckpoint(OGM map_p, SessionJournal journal_p) {
+		File file = new File(getCheckpointPath(journal_p.getFilePath()));
+		if (!file.exists()) {
+			return null;
+		}
+		try {
+			MapCheckpoint checkpoint = MapCheckpoint.read(file.getPath());
+			//A checkpoint ahead of the journal belongs to another session.
+			if ((checkpoint.getScanCount() > journal_p.getScanCount())
+					|| (checkpoint.getCommandCount() > journal_p.getCommandCount())) {
+				System.out.println("Controller > restoreCheckpoint - Error: Checkpoint does not match journal.");
+				return null;
+			}
+			if (!map_p.restoreCheckpoint(checkpoint)) {
+				return null;
+			}
+			return(checkpoint);
+		} catch (IOException e) {
+			System.out.println("Controller > restoreCheckpoint - Error: Reading checkpoint failed.");
+			return null;
+		}
+	}
+	
+	//Progress listener checkpointing the map as scans are integrated.
+	private class CheckpointListener implements MappingPipeline.ProgressListener {
+		private OGM map;
+		private MappingPipeline.ProgressListener listener;
+		
+		public CheckpointListener(OGM map_p, MappingPipeline.ProgressListener listener_p) {
+			map = map_p;
+			listener = listener_p;
+		}
+		
+		public void progress(int read_p, int integrated_p) {
+			if (listener != null) {
+				listener.progress(read_p, integrated_p);
+			}
+			checkpointMap(map, false);
+		}
+		
+		public void finished(boolean cancelled_p, Exception error_p) {
+			checkpointMap(map, true);
+			if (listener != null) {
+				listener.finished(cancelled_p, error_p);
+			}
+		}
+	}
+	
+	//Scan source reading scans and move commands from a session file of any format.
+	//Records already in a restored checkpoint only go back into map history.
+	//Records of a file other than the session journal are added to the journal,
+	//so it keeps matching the map.
+	private class ReaderSource implements MappingPipeline.ScanSource {
+		private OGM map;
+		private SessionReader reader;
+		private int skipScans, skipCommands;
+		private boolean journalRecords;
+		
+		public ReaderSource(OGM map_p, SessionReader reader_p, int skipScans_p, int skipCommands_p,
+				boolean journalRecords_p) {
+			map = map_p;
+			reader = reader_p;
+			skipScans = skipScans_p;
+			skipCommands = skipCommands_p;
+			journalRecords = journalRecords_p;
+		}
+		
+		public DataScan nextScan() throws IOException {
+			int type = reader.next();
+			while (type != -1) {
+				if (type == SessionJournal.SCAN_RECORD) {
+					if (skipScans == 0) {
+						DataScan scan = reader.getScan();
+						if (journalRecords) {
+							journalScan(scan);
+						}
+						return(scan);
+					}
+					//Scan already integrated in checkpoint.
+					map.addScan(reader.getScan());
+					skipScans--;
+				} else {
+					//Apply moves made since the last scan, checkpoint already holds the bot state of skipped moves.
+					final MoveCommand mc = reader.getCommand();
+					final boolean move = (skipCommands == 0);
+					if (journalRecords) {
+						journalCommand(mc);
+					}
+					final Pose newPose = new Pose((float)mc.getNewX(), (float)mc.getNewY(), (float)mc.getNewHeading());
+					MappingPipeline.runOnEventThread(new Runnable() {
+						public void run() {
+							if (move) {
+								map.updateBotState(newPose);
+							}
+							map.addCommand(mc);
+						}
+					});
+					if (!move) {
+						skipCommands--;
+					}
+				}
+				type = reader.next();
+			}
+			return null;
+		}
+		
+		public void close() {
+			reader.close();
 		}
 	}
 	
@@ -276,9 +973,9 @@ public class Controller {
 			if (scanCount < maxScans) {
 				//Get scan object.
 				DataScan scan = scans_p.get(scanCount);
-				//Get scan size and sample rate from scan object.
+				//Get scan size and sample rate, negative for a reverse sweep, from scan object.
 				int numVals = scan.size();
-				int rate = scan.getSRate();
+				int rate = scan.getAngleStep();
 				//Add rate and num to array.
 				session.add(Integer.toString(rate));
 				session.add(Integer.toString(numVals));
@@ -343,101 +1040,185 @@ public class Controller {
 	 * Returns:
 	 * Boolean representing operation success.
 	 */
-	public boolean loadSession(OGM map_p, String filepath_p) throws IOException {
-		//Create buffered reader for file reading using file path.
-		BufferedReader in = new BufferedReader(new FileReader(filepath_p));
-		//Get first line.
-		String line = in.readLine();
-		//Loop until line is null, signalling end of file.
-		while (line != null) {
-			//Get sample rate value and number of readings in scan from file.
-			int rate = Integer.parseInt(line);
-			int numVals = Integer.parseInt(in.readLine());
-			//Initialise values array.
-			int[] vals = new int[numVals];
-			//Get each value from file and add to values array.
-			for (int i = 0; i < numVals; i++) {
-				vals[i] = Integer.parseInt(in.readLine());
-			}
-			//Get coordinates from file and use to create point object.
-			Point2D.Double position = new Point2D.Double(
-					Double.parseDouble(in.readLine()),
-					Double.parseDouble(in.readLine()));
-			//Get heading value from file.
-			double heading = Double.parseDouble(in.readLine());
-			//Create data scan object using values, position and heading.
-			DataScan scan = new DataScan(vals, position, heading);
-			//Use scan to update map.
-			map_p.updateMap(scan);
-			//Add scan to map history.
-			map_p.addScan(scan);
-			//Get move command variables from file.
-			int rotate = Integer.parseInt(in.readLine());
-			int travel = Integer.parseInt(in.readLine());
-			double newX = Double.parseDouble(in.readLine());
-			double newY = Double.parseDouble(in.readLine());
-			double newHeading = Double.parseDouble(in.readLine());
-			//Use move command variables to create move command object.
-			MoveCommand mc = new MoveCommand(rotate, travel);
-			mc.setNewX(newX);
-			mc.setNewY(newY);
-			mc.setNewHeading(newHeading);
-			//Use move command odometry values to create odometry pose object.
-			Pose newPose = new Pose((float)newX, (float)newY, (float)newHeading);
-			//Update bot state in map using odometry pose.
-			map_p.updateBotState(newPose);
-			//Add move command to map history.
-			map_p.addCommand(mc);
-			//Read next line for loop check.
-			line = in.readLine();
-		}
-		//Close file reader.
-		in.close();
+	public boolean loadSession(OGM map_p, String filepath_p) throws IOException, NXTCommException {
+		long start = Metrics.start();
+		SessionEvent event = new SessionEvent();
+		event.begin();
+		int scans = 0;
+		boolean loaded = false;
+		MappingPipeline.ScanSource source = openSession(map_p, filepath_p);
+		try {
+			//Use each scan to update map, which also adds it to map history.
+			DataScan scan = source.nextScan();
+			while (scan != null) {
+				map_p.updateMap(scan);
+				scans++;
+				checkpointMap(map_p, false);
+				scan = source.nextScan();
+			}
+			checkpointMap(map_p, true);
+			loaded = true;
+		} finally {
+			//Close file reader.
+			source.close();
+			commitEvent(event, "load", filepath_p, scans, map_p.getCommandList().size(), loaded);
+		}
 		
+		LOAD_TIME.stop(start);
 		return true;
 	}
 	
 	/*
-	 * Method to write current mapping session to text file on hard drive.
+	 * Method to start saving the current mapping session on a background
+	 * thread, so the event thread does not wait for the disk.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Thread saving the session.
+	 */
+	public Thread startSaveSession() {
+		Thread saver = new Thread(new Runnable() {
+			public void run() {
+				saveSession();
+			}
+		}, "session-save");
+		saver.start();
+		return saver;
+	}
+	
+	/*
+	 * Method to save current mapping session on hard drive. A journaled
+	 * session only waits for records not yet on disk, then keeps the journal
+	 * and its checkpoint under the saved journal path as hard links, so
+	 * moving the journal aside when later maps start does not delete it.
+	 * The link shares the journal's file, so it also holds records made
+	 * after the save until the next map starts a new journal. Maps without
+	 * a journal are written to a binary session file from map history.
 	 * Parameters:
 	 * None
 	 * Returns:
 	 * Boolean representing operation success.
 	 */
 	public boolean saveSession() {
-		OGM map;
-		boolean returnBool = false;
-		//Ensure map exists.
-		if (checkIfMapPresent()) {
-			//Get map pointer.
-			map = (OGM)model.getVisualisation();
-			//Get map history arrays.
-			ArrayList<DataScan> scans = map.getScanList();
-			ArrayList<MoveCommand> comms = map.getCommandList();
-			//Create session strings to write to file.
-			String[] session = createSession(scans, comms);
-			//Initialise print writer for file I/O.
-			PrintWriter pw = null;
-	        try {
-	        	//Create print writer for file I/O using default file path constant.
-	            pw = new PrintWriter(new FileWriter(model.DEFAULT_SESSION_PATH));
-	            //Write strings from array to file.
-	            for (String s : session) {
-	            	pw.println(s);
-	            }
-	            
-	             returnBool = true;
-	        } catch (IOException e) {
-	        	System.out.println("Controller > saveSession - Error: Writing to file failed.");
-	        	
-	        	returnBool = false;
-	        } finally {
-	            //Close print writer.
-	        	if (pw != null) {
-	                pw.close();
-	            }
-	        }
+		//One save at a time, so saves do not replace each other's links.
+		synchronized (saveLock) {
+			long start = Metrics.start();
+			boolean returnBool = false;
+			SessionJournal j;
+			synchronized (this) {
+				j = journal;
+			}
+			if (j != null) {
+				returnBool = saveJournal(j);
+			} else if (checkIfMapPresent()) {
+				returnBool = saveBinarySession((OGM)model.getVisualisation());
+			}
+			SAVE_TIME.stop(start);
+			return returnBool;
+		}
+	}
+	
+	/*
+	 * Method to save a journaled session, by waiting for its records to
+	 * reach disk and linking the journal and its checkpoint to the saved
+	 * journal path.
+	 * Parameters:
+	 * journal_p - Journal of the current session.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	private boolean saveJournal(SessionJournal journal_p) {
+		SessionEvent event = new SessionEvent();
+		event.begin();
+		boolean returnBool;
+		try {
+			returnBool = journal_p.flush();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			returnBool = false;
+		}
+		commitEvent(event, "flush", journal_p.getFilePath(), journal_p.getScanCount(),
+				journal_p.getCommandCount(), returnBool);
+		String filePath = journal_p.getFilePath();
+		String savedPath = model.DEFAULT_SAVED_JOURNAL_PATH;
+		//A loaded saved journal is already in place.
+		if (!returnBool || new File(filePath).getAbsoluteFile().equals(new File(savedPath).getAbsoluteFile())) {
+			return returnBool;
+		}
+		
+		event = new SessionEvent();
+		event.begin();
+		try {
+			//Drop the old checkpoint first, so it is never beside another session's journal.
+			String savedCheckpoint = getCheckpointPath(savedPath);
+			Files.deleteIfExists(Paths.get(savedCheckpoint));
+			linkFile(filePath, savedPath);
+			//Checkpoints are written once their records are on disk, so any one
+			//linked here is behind the journal.
+			if (new File(getCheckpointPath(filePath)).exists()) {
+				linkFile(getCheckpointPath(filePath), savedCheckpoint);
+			}
+			returnBool = true;
+		} catch (IOException e) {
+			System.out.println("Controller > saveJournal - Error: Linking saved journal failed.");
+			returnBool = false;
+		}
+		commitEvent(event, "save", savedPath, journal_p.getScanCount(), journal_p.getCommandCount(), returnBool);
+		return returnBool;
+	}
+	
+	/*
+	 * Method to link a file under a second path, replacing any file there.
+	 * The link is made beside the path and moved into place, so a crash part
+	 * way through leaves the previous file in place. File systems without
+	 * hard links get a copy instead.
+	 * Parameters:
+	 * from_p - Path of file to link.
+	 * to_p - Path of link.
+	 * Returns:
+	 * None
+	 */
+	private void linkFile(String from_p, String to_p) throws IOException {
+		Path from = Paths.get(from_p);
+		Path to = Paths.get(to_p);
+		//Renaming a link onto another link of the same file leaves both, so skip it.
+		if (Files.exists(to) && Files.isSameFile(from, to)) {
+			return;
+		}
+		Path temp = Paths.get(to_p + ".tmp");
+		Files.deleteIfExists(temp);
+		try {
+			Files.createLink(temp, from);
+		} catch (UnsupportedOperationException | FileSystemException e) {
+			Files.copy(from, temp);
+		}
+		Files.move(temp, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/*
+	 * Method to save a map without a journal to a binary session file
+	 * written from map history.
+	 * Parameters:
+	 * map_p - Map to save.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	private boolean saveBinarySession(OGM map_p) {
+		SessionEvent event = new SessionEvent();
+		event.begin();
+		boolean returnBool;
+		//Get map history arrays.
+		ArrayList<DataScan> scans = map_p.getScanList();
+		ArrayList<MoveCommand> comms = map_p.getCommandList();
+		try {
+			//Write binary session file using default file path constant.
+			BinarySession.write(model.DEFAULT_SESSION_PATH, scans, comms);
+			returnBool = true;
+		} catch (IOException e) {
+			System.out.println("Controller > saveBinarySession - Error: Writing to file failed.");
+			returnBool = false;
 		}
+		commitEvent(event, "save", model.DEFAULT_SESSION_PATH, scans.size(), comms.size(), returnBool);
 		return returnBool;
 	}
 	
@@ -449,27 +1230,53 @@ public class Controller {
 	 * heading_p - Current robot heading.
 	 * Returns:
 	 * DataScan representing scan returned by robot over bluetooth connection.
+	 * Throws NXTCommException if no scan could be made, so callers never get null.
 	 */
 	public DataScan getScan(int sampleRate_p, Point2D.Double botPosition_p, double heading_p) throws NXTCommException {
+		long start = Metrics.start();
+		ScanEvent event = new ScanEvent();
+		event.begin();
 		//Ensure sample rate is valid.
-		if (360 % sampleRate_p == 0) {
+		if ((sampleRate_p > 0) && (360 % sampleRate_p == 0)) {
 			//Calculate array size from sample rate.
 			int arraySize = 360 / sampleRate_p;
 			
-			//Send function identifier.
-			sendInt(2);
-			//Send value for sample rate to NXT.
-			sendInt(sampleRate_p);
+			if (link != null) {
+				DataScan scan = await(requestScan(sampleRate_p));
+				scan.setRelativePosition(botPosition_p);
+				scan.setHeading(heading_p);
+				return(finishScan(start, event, sampleRate_p, scan));
+			}
+			if (continuousScan) {
+				ScanSamples samples = getScanSamples(sampleRate_p);
+				return(finishScan(start, event, sampleRate_p, samples.toDataScan(sampleRate_p, botPosition_p, heading_p)));
+			}
 			
-			//Initialise data array.
-			int[] data = new int[arraySize];
-			//For each sample...
-			for (int j = 0; j < arraySize; j++) {
-				//Enter received value from NXT into array.
-				data[j] = recvInt();
+			int[] data;
+			int direction = DataScan.SWEEP_FORWARD;
+			if (framedScan) {
+				//Send function identifier, sample rate and bytes per reading.
+				int valueBytes = compactScan ? 2 : 4;
+				direction = nextSweepDirection();
+				sendInts(3, sampleRate_p, valueBytes, direction);
+				data = recvScanFrames(arraySize, valueBytes);
+			} else {
+				//Send function identifier.
+				sendInt(2);
+				//Send value for sample rate to NXT.
+				sendInt(sampleRate_p);
+				
+				//Initialise data array.
+				data = new int[arraySize];
+				//For each sample...
+				for (int j = 0; j < arraySize; j++) {
+					//Enter received value from NXT into array.
+					data[j] = recvInt();
+				}
 			}
 			//Create data scan object using collected data and bot state variables.
 			DataScan scan = new DataScan(data, botPosition_p, heading_p);
+			scan.setSweepDirection(direction);
 			
 			//Get robot success boolean.
 			Boolean success = recvBool();
@@ -477,12 +1284,150 @@ public class Controller {
 				System.out.println("Controller > rawDataTransfer - Error: NXT reports failure following execution.");
 			}
 		
-			return scan;
+			return(finishScan(start, event, sampleRate_p, scan));
 		} else {
-			//Print error message for invalid sample rate.
-			System.out.println("Controller > rawDataTransfer - Error: Invalid sample rate.");
-			return null;
+			throw new NXTCommException("Controller > getScan - Error: Invalid sample rate.");
+		}
+	}
+	
+	/*
+	 * Method to get a continuous scan from the NXT robot as irregular
+	 * samples. The sweep is fast enough to take about one reading per
+	 * sample rate degrees.
+	 * Parameters:
+	 * sampleRate_p - Degrees between readings wanted.
+	 * Returns:
+	 * ScanSamples holding each reading with its angle and time.
+	 */
+	public ScanSamples getScanSamples(int sampleRate_p) throws NXTCommException {
+		int sweepSpeed = getSweepSpeed(sampleRate_p);
+		//Send function identifier, sweep speed and direction. Samples carry
+		//their own angles, so the direction only matters to the NXT.
+		sendInts(4, sweepSpeed, nextSweepDirection());
+		ScanSamples samples = recvSampleFrames();
+		
+		//Get robot success boolean.
+		Boolean success = recvBool();
+		if (!success) {
+			System.out.println("Controller > getScanSamples - Error: NXT reports failure following execution.");
+		}
+		return(samples);
+	}
+	
+	/*
+	 * Method to queue a scan on the pipelined link. The scan is placed at
+	 * the origin, so the caller sets its position and heading once the
+	 * robot's pose is known.
+	 * Parameters:
+	 * sampleRate_p - Sample rate for scan, a factor of 360.
+	 * Returns:
+	 * Future of the DataScan.
+	 */
+	private CompletableFuture<DataScan> requestScan(final int sampleRate_p) {
+		if (continuousScan) {
+			return(link.continuousScan(getSweepSpeed(sampleRate_p), nextSweepDirection()).thenApply(
+					new Function<ScanSamples, DataScan>() {
+						public DataScan apply(ScanSamples samples_p) {
+							try {
+								return(toDataScan(sampleRate_p, null, samples_p, DataScan.SWEEP_FORWARD));
+							} catch (NXTCommException e) {
+								//Fails the future, and await throws the cause.
+								throw new CompletionException(e);
+							}
+						}
+					}));
+		}
+		//The pipelined link only takes framed scans, see setScanTransfer.
+		final int direction = nextSweepDirection();
+		return(link.scan(sampleRate_p, compactScan ? 2 : 4, direction).thenApply(
+				new Function<int[], DataScan>() {
+					public DataScan apply(int[] data_p) {
+						try {
+							return(toDataScan(sampleRate_p, data_p, null, direction));
+						} catch (NXTCommException e) {
+							throw new CompletionException(e);
+						}
+					}
+				}));
+	}
+	
+	/*
+	 * Method to make a scan at the origin from the readings of a framed scan
+	 * or the samples of a continuous scan.
+	 * Parameters:
+	 * sampleRate_p - Sample rate for scan.
+	 * data_p - Readings of a framed scan, null for a continuous scan.
+	 * samples_p - Samples of a continuous scan, null for a framed scan.
+	 * direction_p - Sweep direction of a framed scan.
+	 * Returns:
+	 * DataScan at the origin.
+	 * Throws NXTCommException if the readings do not make a scan.
+	 */
+	private DataScan toDataScan(int sampleRate_p, int[] data_p, ScanSamples samples_p, int direction_p)
+			throws NXTCommException {
+		Point2D.Double origin = new Point2D.Double(0.0, 0.0);
+		if (samples_p != null) {
+			//Samples carry their own angles, so binned scans are always forward.
+			return(samples_p.toDataScan(sampleRate_p, origin, 0));
+		}
+		if ((data_p.length == 0) || (360 % data_p.length != 0)) {
+			throw new NXTCommException("Controller > toDataScan - Error: Scan has " + data_p.length + " readings.");
 		}
+		DataScan scan = new DataScan(data_p, origin, 0);
+		scan.setSweepDirection(direction_p);
+		return(scan);
+	}
+	
+	/*
+	 * Method to get the continuous sweep speed for a sample rate, fast
+	 * enough to take about one reading per sample rate degrees.
+	 * Parameters:
+	 * sampleRate_p - Degrees between readings wanted.
+	 * Returns:
+	 * Integer representing sweep speed in degrees per second.
+	 */
+	private int getSweepSpeed(int sampleRate_p) {
+		return(Math.min(MAX_SWEEP_SPEED, sampleRate_p * SENSOR_READ_RATE));
+	}
+	
+	/*
+	 * Method to wait for the reply to a pipelined request.
+	 * Parameters:
+	 * future_p - Future of the reply.
+	 * Returns:
+	 * Reply body.
+	 */
+	private <T> T await(CompletableFuture<T> future_p) throws NXTCommException {
+		try {
+			return(future_p.get());
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof NXTCommException) {
+				throw (NXTCommException)e.getCause();
+			}
+			throw new NXTCommException("Controller > await - Error: " + e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new NXTCommException("Controller > await - Error: Interrupted waiting for NXT.");
+		}
+	}
+	
+	/*
+	 * Method to get the robot's odometry pose from the NXT without moving.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Pose object in the NXT's own axes.
+	 */
+	public Pose queryPose() throws NXTCommException {
+		if (link != null) {
+			return(await(link.queryPose()));
+		}
+		sendInt(NXTLink.POSE);
+		Pose pose = recvPose();
+		if (!recvBool()) {
+			System.out.println("Controller > queryPose - Error: NXT reports failure following execution.");
+		}
+		return(pose);
 	}
 	
 	/* 
@@ -512,10 +1457,12 @@ public class Controller {
 			//Set model visualisation.
 			model.setVisualisation(vis);
 			
-			//Receive NXT error boolean.
-			Boolean success = recvBool();
-			if (!success) {
-				System.out.println("Controller > rawDataTransfer - Error: NXT reports failure following execution.");
+			//Receive NXT error boolean, which the pipelined link has already taken.
+			if (link == null) {
+				Boolean success = recvBool();
+				if (!success) {
+					System.out.println("Controller > rawDataTransfer - Error: NXT reports failure following execution.");
+				}
 			}
 			
 			return scans;
@@ -534,6 +1481,195 @@ public class Controller {
 	 * Pose object representing odometry pose returned by the robot.
 	 */
 	public Pose moveCommand(MoveCommand command_p) throws NXTCommException {
+		long start = Metrics.start();
+		MoveEvent event = new MoveEvent();
+		event.begin();
+		if (link != null) {
+			Pose[] poses = await(link.move(command_p.getRotateCommand(), command_p.getTravelCommand()));
+			MOVE_TIME.stop(start);
+			event.end();
+			Pose pose = finishMove(command_p, poses[0], poses[1]);
+			commitEvent(event, command_p, 0);
+			return(pose);
+		}
+		
+		//Send function identifier.
+		sendInt(1);
+		
+		Pose firstPose = recvPose();
+		//Send variables.
+		sendInt(command_p.getRotateCommand());
+		sendInt(command_p.getTravelCommand());
+		Pose newPose = recvPose();
+		
+		Boolean success = recvBool();
+		if (!success) {
+			System.out.println("Controller > moveCommand - Error: NXT reports failure following execution.");
+		}
+		MOVE_TIME.stop(start);
+		event.end();
+		Pose pose = finishMove(command_p, firstPose, newPose);
+		commitEvent(event, command_p, 0);
+		return(pose);
+	}
+	
+	/*
+	 * Method to execute a movement command and then a scan as one command
+	 * on the robot. The scan is taken from the pose the move ends at, and
+	 * the poses and readings come back in one reply. The scan is framed, or
+	 * continuous if continuous scanning is set.
+	 * Parameters:
+	 * command_p - Movement command for robot to execute.
+	 * sampleRate_p - Sample rate for scan.
+	 * scan_p - Array whose first element is set to the scan, at the origin.
+	 * Returns:
+	 * Pose object representing odometry pose returned by the robot.
+	 * Throws NXTCommException, before anything is sent, if the sample rate
+	 * is invalid, so callers never get a null scan.
+	 */
+	public Pose moveScan(MoveCommand command_p, int sampleRate_p, DataScan[] scan_p) throws NXTCommException {
+		//Ensure sample rate is valid.
+		if ((sampleRate_p <= 0) || (360 % sampleRate_p != 0)) {
+			throw new NXTCommException("Controller > moveScan - Error: Invalid sample rate.");
+		}
+		int rotate = command_p.getRotateCommand();
+		int travel = command_p.getTravelCommand();
+		int valueBytes = compactScan ? 2 : 4;
+		int direction = nextSweepDirection();
+		long start = Metrics.start();
+		MoveEvent event = new MoveEvent();
+		event.begin();
+		
+		Pose firstPose, newPose;
+		int[] data = null;
+		ScanSamples samples = null;
+		if (link != null) {
+			NXTLink.MoveScan reply = await(continuousScan
+					? link.moveContinuousScan(rotate, travel, getSweepSpeed(sampleRate_p), direction)
+					: link.moveScan(rotate, travel, sampleRate_p, valueBytes, direction));
+			firstPose = reply.getFirstPose();
+			newPose = reply.getNewPose();
+			data = reply.getReadings();
+			samples = reply.getSamples();
+		} else {
+			//Send function identifier, move, scan function identifier and scan parameters.
+			if (continuousScan) {
+				sendInts(NXTLink.MOVE_SCAN, rotate, travel, NXTLink.CONTINUOUS_SCAN,
+						getSweepSpeed(sampleRate_p), direction);
+			} else {
+				sendInts(NXTLink.MOVE_SCAN, rotate, travel, NXTLink.SCAN,
+						sampleRate_p, valueBytes, direction);
+			}
+			firstPose = recvPose();
+			newPose = recvPose();
+			if (continuousScan) {
+				samples = recvSampleFrames();
+			} else {
+				data = recvScanFrames(360 / sampleRate_p, valueBytes);
+			}
+			
+			Boolean success = recvBool();
+			if (!success) {
+				System.out.println("Controller > moveScan - Error: NXT reports failure following execution.");
+			}
+		}
+		MOVE_SCAN_TIME.stop(start);
+		event.end();
+		scan_p[0] = toDataScan(sampleRate_p, data, samples, direction);
+		Pose pose = finishMove(command_p, firstPose, newPose);
+		commitEvent(event, command_p, scan_p[0].size());
+		return(pose);
+	}
+	
+	/*
+	 * Method to commit the flight recorder event of a move, if it is being
+	 * recorded, once the command's odometry has been set.
+	 * Parameters:
+	 * event_p - Event ended when the robot's reply was received.
+	 * command_p - Movement command the robot executed.
+	 * readings_p - Readings of a scan taken with the move, 0 if none.
+	 * Returns:
+	 * None
+	 */
+	private void commitEvent(MoveEvent event_p, MoveCommand command_p, int readings_p) {
+		if (event_p.shouldCommit()) {
+			event_p.rotate = command_p.getRotateCommand();
+			event_p.travel = command_p.getTravelCommand();
+			event_p.readings = readings_p;
+			event_p.pipelined = (link != null);
+			event_p.x = command_p.getNewX();
+			event_p.y = command_p.getNewY();
+			event_p.heading = command_p.getNewHeading();
+			event_p.commit();
+		}
+	}
+	
+	/*
+	 * Method to finish timing a scan and commit its flight recorder event,
+	 * if it is being recorded.
+	 * Parameters:
+	 * start_p - Start time from Metrics.start.
+	 * event_p - Event begun when the scan was requested.
+	 * sampleRate_p - Sample rate of the scan.
+	 * scan_p - Scan received.
+	 * Returns:
+	 * The scan given.
+	 */
+	private DataScan finishScan(long start_p, ScanEvent event_p, int sampleRate_p, DataScan scan_p) {
+		SCAN_TIME.stop(start_p);
+		if (event_p.shouldCommit()) {
+			event_p.sampleRate = sampleRate_p;
+			event_p.readings = scan_p.size();
+			//Pipelined scans are always framed.
+			event_p.mode = continuousScan ? "continuous" : (((link != null) || framedScan) ? "framed" : "legacy");
+			event_p.pipelined = (link != null);
+			if (scan_p.getRelativePosition() != null) {
+				event_p.x = scan_p.getRelativePosition().getX();
+				event_p.y = scan_p.getRelativePosition().getY();
+			}
+			event_p.heading = scan_p.getHeading();
+			event_p.commit();
+		}
+		return(scan_p);
+	}
+	
+	/*
+	 * Method to commit the flight recorder event of a session load or save,
+	 * if it is being recorded.
+	 * Parameters:
+	 * event_p - Event begun when the operation started.
+	 * operation_p - load, save or flush.
+	 * filepath_p - Path of session file.
+	 * scans_p - Scans loaded or saved.
+	 * commands_p - Commands loaded or saved.
+	 * success_p - Whether the operation succeeded.
+	 * Returns:
+	 * None
+	 */
+	private void commitEvent(SessionEvent event_p, String operation_p, String filepath_p,
+								int scans_p, int commands_p, boolean success_p) {
+		if (event_p.shouldCommit()) {
+			event_p.operation = operation_p;
+			event_p.path = filepath_p;
+			event_p.scans = scans_p;
+			event_p.commands = commands_p;
+			event_p.bytes = new File(filepath_p).length();
+			event_p.success = success_p;
+			event_p.commit();
+		}
+	}
+	
+	/*
+	 * Method to convert the poses returned for a move to map axes, and set
+	 * the command's odometry from them.
+	 * Parameters:
+	 * command_p - Movement command the robot executed.
+	 * firstPose - Pose before the move, in the NXT's axes.
+	 * newPose - Pose after the move, in the NXT's axes.
+	 * Returns:
+	 * Pose object representing odometry pose after the move, in map axes.
+	 */
+	private Pose finishMove(MoveCommand command_p, Pose firstPose, Pose newPose) {
 		/*
 		 * A lot of conversion goes on in this method to make the leJOS Pose
 		 * objects work with our map system. Ideally the map would just use
@@ -543,11 +1679,6 @@ public class Controller {
 		 * Feel free to make this prettier if you want to, but for now it works.
 		 */
 		
-		//Send function identifier.
-		sendInt(1);
-		
-		Pose firstPose = recvPose();
-		
 		/*
 		 * leJOS pose object uses inverted X and Y axis compared to our map so
 		 * here we flip the X and Y to account for this.
@@ -576,12 +1707,6 @@ public class Controller {
 		
 		System.out.println("First heading: " + fheading);
 		
-		//Send variables.
-		sendInt(command_p.getRotateCommand());
-		sendInt(command_p.getTravelCommand());
-		Pose newPose = recvPose();
-		
-		
 		/*
 		 * leJOS pose object uses inverted x and y axis compared to our map so
 		 * here we flip the X and Y to account for this.
@@ -619,10 +1744,6 @@ public class Controller {
 		System.out.println("Rotation: " + (nheading - fheading));
 		System.out.println("Distance Traveled: " + getDistance(fp, np));
 		
-		Boolean success = recvBool();
-		if (!success) {
-			System.out.println("Controller > moveCommand - Error: NXT reports failure following execution.");
-		}
 		return(newPose);
 	}
 	
@@ -631,19 +1752,46 @@ public class Controller {
 	 * Parameters:
 	 * cellSize_p - Drawn width and height of cells in pixels.
 	 * ratio_p - Height and width of real world area represented by a cell.
-	 * height_p - Height of the map in cells.
-	 * width_p - Width of the map in cells.
+	 * height_p - Height of the initial map area in cells.
+	 * width_p - Width of the initial map area in cells.
 	 * Returns:
 	 * Boolean representing operation success.
 	 */
 	public boolean drawMapGrid(int cellSize_p, double ratio_p, int height_p, int width_p) {
-		//Create OGM object.
-		Visualisation vis = new OGM(cellSize_p, ratio_p, height_p, width_p);
+		//A new map starts a new session journal.
+		closeJournal();
+		synchronized (this) {
+			journalPath = null;
+		}
+		//Create OGM object on a chunked store, which grows wherever readings land.
+		OGM map = new OGM(cellSize_p, ratio_p, height_p, width_p, new ChunkedGridStore(cellPrecision));
+		//Use ray traced integration so scan cost follows beam length, not map size.
+		map.setIntegrationMode(map.INTEGRATE_RAY);
+		//Use inverse sensor model lookup tables.
+		map.setKernelLookup(true);
+		//Integrate scans in parallel tiles when there is more than one core.
+		map.setIntegrationPool(getIntegrationPool());
 		//Set as active visualisation.
-		model.setVisualisation(vis);
+		model.setVisualisation(map);
 		return true;
 	}
 	
+	/*
+	 * Method to get the pool used for parallel scan integration, created on
+	 * first use with one worker per available core.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Fork join pool for integration, null if only one core is available.
+	 */
+	public ForkJoinPool getIntegrationPool() {
+		int threads = Runtime.getRuntime().availableProcessors();
+		if ((integrationPool == null) && (threads > 1)) {
+			integrationPool = new ForkJoinPool(threads);
+		}
+		return(integrationPool);
+	}
+	
 	/*
 	 * Method to calculate distance between two real world points.
 	 * Parameters:
@@ -663,72 +1811,74 @@ public class Controller {
 	/*
 	 * Method to set up Bluetooth communication link to NXT.
 	 * Parameters:
-	 * nxtAddress - Address of NXT to link to.
+	 * None
 	 * Returns:
 	 * Boolean representing operation success.
 	 */
 	public boolean bluetoothSetup() throws NXTCommException {
-		//Create NXTComm object for communication using Bluetooth protocol.
-		model.setNXTComm(	NXTCommFactory.createNXTComm(
-							NXTCommFactory.BLUETOOTH));
-		NXTComm nxtCommPtr = model.getNXTComm();
-		
-		//Create NXTInfo object which uniquely identifies the NXT.
-		model.setNXTInfo(new NXTInfo(
-							NXTCommFactory.BLUETOOTH,
-							"NXT",
-							model.NXT_ADDRESS));
-		NXTInfo nxtInfoPtr = model.getNXTInfo();
+		return(connect(new BluetoothTransport(model.NXT_ADDRESS)));
+	}
+	
+	/*
+	 * Method to set up a communication link to the NXT over any transport,
+	 * such as TCP or a simulated NXT.
+	 * Parameters:
+	 * transport_p - Transport to open.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean connect(Transport transport_p) throws NXTCommException {
+		Transport transport = transport_p;
+		if (Metrics.isEnabled()) {
+			transport = new MeteredTransport(transport);
+		}
+		transport.open();
+		model.setTransport(transport);
 		
-		//Open communication link to the NXT.
-		nxtCommPtr.open(nxtInfoPtr);
+		//Use data input and output streams of the transport.
+		model.setInStream(transport.getInputStream());
+		model.setOutStream(transport.getOutputStream());
 		
-		//Create data input and output streams to the NXT.
-		model.setInStream(new DataInputStream(nxtCommPtr.getInputStream()));
-		model.setOutStream(new DataOutputStream(nxtCommPtr.getOutputStream()));
+		//Start pipelined link, which reads all replies from here on.
+		if (pipelined) {
+			link = new NXTLink(model.getInStream(), model.getOutStream());
+			link.start();
+		}
 		
 		return true;
 	}
 	
 	/*
-	 * Method to clean up and shut down existing Bluetooth link.
+	 * Method to clean up and shut down the existing link.
 	 * Parameters:
 	 * None
 	 * Returns:
 	 * Boolean representing operation success.
 	 */
-	public boolean bluetoothShutdown() {
-		try {
-			//Create pointers to input and output streams and comm object.
-			DataInputStream isPtr = model.getInStream();
-			DataOutputStream osPtr = model.getOutStream();
-			NXTComm nxtCommPtr = model.getNXTComm();
-			
-			//If not null close all.
-			if (isPtr != null) isPtr.close();
-			if (osPtr != null) osPtr.close();
-			if (nxtCommPtr != null) nxtCommPtr.close();
-			
-			return true;
-		} catch (IOException e) {
-			//Print error for IOException on close calls.
-			System.out.println("Controller > bluetoothSetup -"
-								+ "Error: Bluetooth shutdown failed.");
-			return false;
-		}
+	public boolean transportShutdown() {
+		Transport transport = model.getTransport();
+		model.setTransport(null);
+		model.setInStream(null);
+		model.setOutStream(null);
+		return((transport == null) || transport.close());
 	}
 	
 	/*
 	 * Method to terminate operations. Sends terminate code to NXT to finish NXT program and
-	 * shuts down the bluetooth connection.
+	 * shuts down the connection.
 	 * Parameters:
 	 * None
 	 * Returns:
 	 * Boolean representing operation success.
 	 */
 	public boolean closeConnection() {
-		sendInt(0);
-		bluetoothShutdown();
+		if (link != null) {
+			link.terminate();
+			link = null;
+		} else {
+			sendInt(0);
+		}
+		transportShutdown();
 		return true;
 	}
 	
@@ -755,7 +1905,7 @@ public class Controller {
 	 * Boolean representing presence of connection.
 	 */
 	public boolean checkIfNXTConnected() {
-		if ((model.getNXTComm() != null) && (model.getNXTInfo() != null)) {
+		if (model.getTransport() != null) {
 			return true;
 		} else {
 			return false;
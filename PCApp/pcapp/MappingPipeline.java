@@ -0,0 +1,365 @@
+/*
+ * MappingPipeline.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Staged mapping pipeline run off the Swing event thread.
+ *
+ * The pipeline has three stages:
+ * - A reader thread takes scans from a ScanSource, which talks to the NXT or
+ *   reads a session file, and puts them on a bounded queue.
+ * - An integrator thread takes scans off the queue and integrates them into
+ *   the map.
+ * - The map's frame timer repaints the cells each scan changed on the event
+ *   thread, so frames are published to Swing at a capped rate.
+ * The queue holds at most QUEUE_CAPACITY scans. A reader that gets ahead of
+ * integration blocks until there is room, and the robot is driven to and
+ * scans the next position while the previous scan is being integrated.
+ *
+ * Cancelling stops the reader before its next exchange with the source. The
+ * reader is never interrupted, since interrupting a Bluetooth read would
+ * leave the NXT part way through a command. Scans already queued are still
+ * integrated, so the map and its scan history stay in step.
+ *
+ * Progress and completion are reported to a ProgressListener on the event
+ * thread.
+ */
+
+package mattadshead.swansea3.dissertation.pcapp;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
+
+import lejos.pc.comm.NXTCommException;
+import mattadshead.swansea3.dissertation.structures.DataScan;
+import mattadshead.swansea3.dissertation.structures.OGM;
+
+public class MappingPipeline {
+
+	//Symbolic constant for number of scans waiting to be integrated.
+	private final int		QUEUE_CAPACITY = 2;
+
+	//Marker put on the queue after the last scan.
+	private final DataScan	END_OF_SCANS = new DataScan(new Point2D.Double(), 0);
+
+	/*
+	 * Interface for the first stage of the pipeline.
+	 * Sources run on the reader thread, and must do any work on Swing
+	 * components, such as prompting the user or moving the bot icon, through
+	 * MappingPipeline.runOnEventThread.
+	 */
+	public interface ScanSource {
+		/*
+		 * Method to get the next scan.
+		 * Parameters:
+		 * None
+		 * Returns:
+		 * DataScan to integrate, null when there are no more scans.
+		 */
+		public DataScan nextScan() throws NXTCommException, IOException;
+
+		/*
+		 * Method to release the source, called once when the reader stops.
+		 * Parameters:
+		 * None
+		 * Returns:
+		 * None
+		 */
+		public void close();
+	}
+
+	//Interface for progress reports, called on the event thread.
+	public interface ProgressListener {
+		/*
+		 * Method called when a scan is read or integrated.
+		 * Parameters:
+		 * read_p - Number of scans read from the source.
+		 * integrated_p - Number of scans integrated into the map.
+		 * Returns:
+		 * None
+		 */
+		public void progress(int read_p, int integrated_p);
+
+		/*
+		 * Method called once when both threads have stopped.
+		 * Parameters:
+		 * cancelled_p - Whether the pipeline was cancelled.
+		 * error_p - Exception that stopped the pipeline, null if none.
+		 * Returns:
+		 * None
+		 */
+		public void finished(boolean cancelled_p, Exception error_p);
+	}
+
+	//Map to integrate scans into.
+	private OGM map;
+	//Source of scans.
+	private ScanSource source;
+	//Use simple mapping algorithm instead of Bayesian update.
+	private boolean simple;
+	//Listener for progress reports, may be null.
+	private ProgressListener listener;
+
+	//Scans waiting to be integrated.
+	private BlockingQueue<DataScan> queue = new ArrayBlockingQueue<DataScan>(QUEUE_CAPACITY);
+	//Stage threads.
+	private Thread reader, integrator;
+
+	//Stage state, written by any thread.
+	private volatile boolean cancelled = false;
+	private volatile boolean running = false;
+	private volatile Exception error = null;
+	private AtomicInteger readCount = new AtomicInteger(),
+							integratedCount = new AtomicInteger();
+
+	/*
+	 * Class constructor.
+	 * Parameters:
+	 * map_p - Map to integrate scans into.
+	 * source_p - Source of scans.
+	 * simple_p - Whether to use the simple mapping algorithm.
+	 * listener_p - Listener for progress reports, may be null.
+	 * Returns:
+	 * None
+	 */
+	public MappingPipeline(OGM map_p, ScanSource source_p, boolean simple_p, ProgressListener listener_p) {
+		map = map_p;
+		source = source_p;
+		simple = simple_p;
+		listener = listener_p;
+	}
+
+	/*
+	 * Method to start the reader and integrator threads.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Boolean representing operation success, false if already started.
+	 */
+	public boolean start() {
+		if (reader != null) {
+			System.out.println("MappingPipeline > start - Error: Pipeline already started.");
+			return false;
+		}
+		running = true;
+
+		reader = new Thread(new Runnable() {
+			public void run() {
+				readScans();
+			}
+		}, "Scan reader");
+		integrator = new Thread(new Runnable() {
+			public void run() {
+				integrateScans();
+			}
+		}, "Scan integrator");
+		//Do not keep the application open for a pipeline.
+		reader.setDaemon(true);
+		integrator.setDaemon(true);
+
+		integrator.start();
+		reader.start();
+		return true;
+	}
+
+	/*
+	 * Method to stop reading scans. Scans already read are still integrated.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean cancel() {
+		cancelled = true;
+		return true;
+	}
+
+	/*
+	 * Method to check whether the pipeline threads are still running.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Boolean representing whether the pipeline is running.
+	 */
+	public boolean isRunning() {
+		return(running);
+	}
+
+	/*
+	 * Method to wait for the pipeline to finish.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * None
+	 */
+	public void join() throws InterruptedException {
+		if (reader != null) {
+			reader.join();
+			integrator.join();
+		}
+	}
+
+	/*
+	 * Method run by the reader thread. Reads scans until the source runs out,
+	 * the pipeline is cancelled or the source fails.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * None
+	 */
+	private void readScans() {
+		try {
+			while (!cancelled) {
+				DataScan scan = source.nextScan();
+				if (scan == null) {
+					break;
+				}
+				//Blocks while the integrator is QUEUE_CAPACITY scans behind.
+				queue.put(scan);
+				readCount.incrementAndGet();
+				reportProgress();
+			}
+		} catch (InterruptedException e) {
+			System.out.println("MappingPipeline > readScans - Error: Reader interrupted.");
+		} catch (Exception e) {
+			//Keep first error if integrator failed first.
+			if (error == null) {
+				error = e;
+			}
+		} finally {
+			source.close();
+			putEnd();
+		}
+	}
+
+	/*
+	 * Method to put the end marker on the queue, waiting for room.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * None
+	 */
+	private void putEnd() {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				queue.put(END_OF_SCANS);
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/*
+	 * Method run by the integrator thread. Integrates scans until the end
+	 * marker, then reports completion. After a failed integration the
+	 * reader is cancelled and the remaining scans are dropped.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * None
+	 */
+	private void integrateScans() {
+		try {
+			DataScan scan = queue.take();
+			while (scan != END_OF_SCANS) {
+				if (error == null) {
+					try {
+						if (simple) {
+							map.simpleMap(scan);
+						} else {
+							map.updateMap(scan);
+						}
+						integratedCount.incrementAndGet();
+						reportProgress();
+					} catch (RuntimeException e) {
+						error = e;
+						cancelled = true;
+					}
+				}
+				scan = queue.take();
+			}
+		} catch (InterruptedException e) {
+			System.out.println("MappingPipeline > integrateScans - Error: Integrator interrupted.");
+		} finally {
+			running = false;
+			reportFinished();
+		}
+	}
+
+	/*
+	 * Method to send the current counts to the listener.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * None
+	 */
+	private void reportProgress() {
+		if (listener != null) {
+			final int read = readCount.get();
+			final int integrated = integratedCount.get();
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					listener.progress(read, integrated);
+				}
+			});
+		}
+	}
+
+	/*
+	 * Method to tell the listener the pipeline has stopped.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * None
+	 */
+	private void reportFinished() {
+		if (listener != null) {
+			final boolean wasCancelled = cancelled;
+			final Exception finalError = error;
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					listener.finished(wasCancelled, finalError);
+				}
+			});
+		}
+	}
+
+	/*
+	 * Method to run a task on the event thread and wait for it to finish.
+	 * Runs the task directly if already on the event thread, so sources can
+	 * also be used without a pipeline.
+	 * Parameters:
+	 * task_p - Task to run.
+	 * Returns:
+	 * None
+	 */
+	public static void runOnEventThread(Runnable task_p) {
+		if (SwingUtilities.isEventDispatchThread()) {
+			task_p.run();
+			return;
+		}
+		try {
+			SwingUtilities.invokeAndWait(task_p);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (InvocationTargetException e) {
+			//Pass task failures back to the calling thread.
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * MeteredTransport.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Transport counting the bytes another transport carries, into the
+ * link.bytesIn and link.bytesOut metrics. Controller.connect only wraps a
+ * transport in one while metrics are enabled, so unmetered links read and
+ * write their streams directly.
+ */
+
+package mattadshead.swansea3.dissertation.pcapp;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+
+import lejos.pc.comm.NXTCommException;
+import mattadshead.swansea3.dissertation.structures.Metrics;
+
+public class MeteredTransport implements Transport {
+
+	private static final Metrics.Counter	BYTES_IN = Metrics.counter("link.bytesIn", "bytes"),
+											BYTES_OUT = Metrics.counter("link.bytesOut", "bytes");
+
+	private Transport transport;
+	private DataInputStream inStream;
+	private DataOutputStream outStream;
+
+	/*
+	 * Class constructor.
+	 * Parameters:
+	 * transport_p - Transport to count the bytes of.
+	 * Returns:
+	 * None
+	 */
+	public MeteredTransport(Transport transport_p) {
+		transport = transport_p;
+	}
+
+	public boolean open() throws NXTCommException {
+		transport.open();
+		inStream = new DataInputStream(new FilterInputStream(transport.getInputStream()) {
+			public int read() throws IOException {
+				int b = super.read();
+				if (b != -1) {
+					BYTES_IN.add(1);
+				}
+				return(b);
+			}
+
+			public int read(byte[] b_p, int off_p, int len_p) throws IOException {
+				int n = super.read(b_p, off_p, len_p);
+				if (n > 0) {
+					BYTES_IN.add(n);
+				}
+				return(n);
+			}
+		});
+		outStream = new DataOutputStream(new FilterOutputStream(transport.getOutputStream()) {
+			public void write(int b_p) throws IOException {
+				out.write(b_p);
+				BYTES_OUT.add(1);
+			}
+
+			public void write(byte[] b_p, int off_p, int len_p) throws IOException {
+				//Pass arrays on whole, FilterOutputStream would write them a byte at a time.
+				out.write(b_p, off_p, len_p);
+				BYTES_OUT.add(len_p);
+			}
+		});
+		return true;
+	}
+
+	public DataInputStream getInputStream() {
+		return(inStream);
+	}
+
+	public DataOutputStream getOutputStream() {
+		return(outStream);
+	}
+
+	public boolean close() {
+		return(transport.close());
+	}
+}
@@ -15,15 +15,17 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.util.ArrayList;
 
-import lejos.pc.comm.NXTComm;
-import lejos.pc.comm.NXTInfo;
 import mattadshead.swansea3.dissertation.structures.DataScan;
 import mattadshead.swansea3.dissertation.structures.OGM;
 import mattadshead.swansea3.dissertation.structures.Visualisation;
 
 public class Model {
 	//File path for saving sessions to file.
-	public final String DEFAULT_SESSION_PATH = "savedSession.txt";
+	public final String DEFAULT_SESSION_PATH = "savedSession.ses";
+	//File path for journal of the current mapping session.
+	public final String DEFAULT_JOURNAL_PATH = "sessionJournal.snj";
+	//File path journaled sessions are saved to, a link to the session journal.
+	public final String DEFAULT_SAVED_JOURNAL_PATH = "savedSession.snj";
 	
 	//Address of NXT for Bluetooth communication.
 	public final String NXT_ADDRESS = "00:16:53:10:16:49";
@@ -31,10 +33,8 @@ public class Model {
 	//Pointer to view object.
 	private View view;
 	
-	//leJOS NXTComm object represents a communication link to an NXT.
-	private NXTComm nxtComm;
-	//leJOS NXTInfo object contains information about linked NXT.
-	private NXTInfo nxtInfo;
+	//Transport carrying the link to the NXT, null when not connected.
+	private Transport transport;
 	
 	//Data output stream for sending data to NXT.
 	private DataOutputStream outStream;
@@ -80,49 +80,26 @@ public class Model {
 	}
 	
 	/*
-	 * Mutator method for NXTComm object.
+	 * Mutator method for transport object.
 	 * Parameters:
-	 * nxtComm_p - New nxtComm object.
+	 * transport_p - New transport object, null when disconnected.
 	 * Returns:
 	 * Boolean representing operation success.
 	 */
-	public boolean setNXTComm(NXTComm nxtComm_p) {
-		nxtComm = nxtComm_p;
+	public boolean setTransport(Transport transport_p) {
+		transport = transport_p;
 		return true;
 	}
 	
 	/*
-	 * Access method for NXTComm object.
+	 * Access method for transport object.
 	 * Parameters:
 	 * None
 	 * Returns:
-	 * NXTComm object.
+	 * Transport object, null when not connected.
 	 */
-	public NXTComm getNXTComm() {
-		return(nxtComm);
-	}
-	
-	/*
-	 * Mutator method for NXTInfo object.
-	 * Parameters:
-	 * nxtInfo_p - New nxtInfo object.
-	 * Returns:
-	 * Boolean representing operation success.
-	 */
-	public boolean setNXTInfo(NXTInfo nxtInfo_p) {
-		nxtInfo = nxtInfo_p;
-		return true;
-	}
-	
-	/*
-	 * Access method for NXTInfo object.
-	 * Parameters:
-	 * None
-	 * Returns:
-	 * NXTInfo object.
-	 */
-	public NXTInfo getNXTInfo() {
-		return(nxtInfo);
+	public Transport getTransport() {
+		return(transport);
 	}
 	
 	/*
@@ -0,0 +1,51 @@
+/*
+ * MoveEvent.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Flight recorder event for a movement command sent by Controller, lasting
+ * from sending the command until the robot's new pose is back. A move sent
+ * with a scan by Controller.moveScan is one event, with its readings.
+ */
+
+package mattadshead.swansea3.dissertation.pcapp;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("mattadshead.swansea3.dissertation.Move")
+@Label("NXT Move")
+@Category({"Dissertation", "NXT"})
+@Description("Movement command sent to the NXT, until the new pose is received")
+class MoveEvent extends Event {
+
+	@Label("Rotate")
+	@Description("Degrees to rotate")
+	int rotate;
+
+	@Label("Travel")
+	@Description("Distance to travel in mm")
+	int travel;
+
+	@Label("Readings")
+	@Description("Readings of a scan taken with the move, 0 for a move alone")
+	int readings;
+
+	@Label("Pipelined")
+	boolean pipelined;
+
+	@Label("X")
+	@Description("Map position after the move, from the start, in mm")
+	double x;
+
+	@Label("Y")
+	@Description("Map position after the move, from the start, in mm")
+	double y;
+
+	@Label("Heading")
+	@Description("Map heading after the move, in degrees")
+	double heading;
+}
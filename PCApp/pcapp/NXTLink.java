@@ -0,0 +1,522 @@
+/*
+ * NXTLink.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Pipelined request link to the NXT.
+ *
+ * In the original protocol the PC sends a function identifier and its
+ * parameters, then waits for the whole reply before sending anything else.
+ * Here each request is sent as one message tagged with a request ID, so
+ * several requests (a move, a scan and a pose query, say) can be queued
+ * back to back. The NXT executes them in the order sent and streams each
+ * reply as soon as it is ready. A reader thread reads the replies and
+ * completes the future returned for each request, so Bluetooth latency
+ * overlaps the robot's work instead of adding to it.
+ *
+ * Request layout: REQUEST (int), request ID (int), message type (int),
+ * parameter length in bytes (int), parameters (ints).
+ * Reply layout: request ID (int), message type (int), body, success
+ * (boolean). Bodies are the same as in the original protocol: two poses for
+ * a move, scan frames for a scan, one pose for a pose query. A move and scan
+ * replies with the two poses of the move followed by the scan frames.
+ *
+ * Once the link is started the reader thread owns the input stream, so all
+ * traffic with the NXT must go through the link. A reply that cannot be
+ * decoded leaves the stream out of step, so it fails every waiting request
+ * and the link, and the connection must be set up again.
+ */
+
+package mattadshead.swansea3.dissertation.pcapp;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Adler32;
+
+import lejos.pc.comm.NXTCommException;
+import lejos.robotics.navigation.Pose;
+import mattadshead.swansea3.dissertation.structures.Histogram;
+import mattadshead.swansea3.dissertation.structures.Metrics;
+import mattadshead.swansea3.dissertation.structures.ScanSamples;
+
+public class NXTLink {
+
+	//Symbolic constants for function identifiers of a request message and terminate.
+	public static final int		REQUEST = 16,
+								TERMINATE = 0;
+	//Symbolic constants for message types.
+	public static final int		MOVE = 1,
+								SCAN = 3,
+								CONTINUOUS_SCAN = 4,
+								POSE = 5,
+								MOVE_SCAN = 6;
+	//Symbolic constants for most bytes of items in a scan frame, and bytes
+	//per continuous scan sample, matching the NXT.
+	public static final int		FRAME_BYTES = 240,
+								SAMPLE_BYTES = 8;
+	//Time from sending a request to reading its reply, including time queued behind earlier requests.
+	private static final Histogram ROUND_TRIP = Metrics.histogram("link.roundTrip", Histogram.NANOSECONDS);
+
+	private DataInputStream inStream;
+	private DataOutputStream outStream;
+	private Thread reader;
+
+	//Requests waiting for replies, by request ID.
+	private final ConcurrentHashMap<Integer, Request> pending = new ConcurrentHashMap<Integer, Request>();
+	//ID of the next request, guarded by the output stream.
+	private int nextId = 1;
+	//Failure that stopped the link, null while it is working.
+	private volatile NXTCommException failure = null;
+
+	//A request waiting for its reply.
+	private static class Request {
+		private int type;
+		//Scan function, scan size and bytes per reading, for scan replies.
+		private int scanType = SCAN, arraySize, valueBytes;
+		private CompletableFuture<Object> future = new CompletableFuture<Object>();
+		//Time sent, 0 if metrics were disabled.
+		private long sent;
+
+		public Request(int type_p) {
+			type = type_p;
+		}
+	}
+	
+	//Reply to a move and scan: the poses before and after the move, in the
+	//NXT's own axes, and the readings or samples of the scan.
+	public static class MoveScan {
+		private Pose firstPose, newPose;
+		private int[] readings;
+		private ScanSamples samples;
+		
+		public Pose getFirstPose() {
+			return(firstPose);
+		}
+		
+		public Pose getNewPose() {
+			return(newPose);
+		}
+		
+		/*
+		 * Accessor method for readings of a framed scan.
+		 * Parameters:
+		 * None
+		 * Returns:
+		 * Array of readings, null for a continuous scan.
+		 */
+		public int[] getReadings() {
+			return(readings);
+		}
+		
+		/*
+		 * Accessor method for samples of a continuous scan.
+		 * Parameters:
+		 * None
+		 * Returns:
+		 * ScanSamples of the sweep, null for a framed scan.
+		 */
+		public ScanSamples getSamples() {
+			return(samples);
+		}
+	}
+
+	/*
+	 * Class constructor.
+	 * Parameters:
+	 * inStream_p - Stream from the NXT, read only by the link once started.
+	 * outStream_p - Stream to the NXT.
+	 * Returns:
+	 * None
+	 */
+	public NXTLink(DataInputStream inStream_p, DataOutputStream outStream_p) {
+		inStream = inStream_p;
+		outStream = outStream_p;
+	}
+
+	/*
+	 * Method to start the reader thread.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean start() {
+		Metrics.gauge("link.pending", new Metrics.Gauge() {
+			public double getValue() {
+				return(getPendingCount());
+			}
+		});
+		reader = new Thread(new Runnable() {
+			public void run() {
+				readReplies();
+			}
+		}, "NXT reader");
+		reader.setDaemon(true);
+		reader.start();
+		return true;
+	}
+
+	/*
+	 * Method to queue a move. The reply holds the pose before and after
+	 * the move, in the NXT's own axes.
+	 * Parameters:
+	 * rotate_p - Degrees to rotate.
+	 * travel_p - Distance to travel.
+	 * Returns:
+	 * Future of the two poses.
+	 */
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<Pose[]> move(int rotate_p, int travel_p) {
+		Request r = new Request(MOVE);
+		send(r, rotate_p, travel_p);
+		return((CompletableFuture<Pose[]>)(CompletableFuture<?>)r.future);
+	}
+
+	/*
+	 * Method to queue a framed scan.
+	 * Parameters:
+	 * sampleRate_p - Degrees between readings.
+	 * valueBytes_p - Bytes per reading, 2 or 4.
+	 * direction_p - Sweep direction.
+	 * Returns:
+	 * Future of the readings.
+	 */
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<int[]> scan(int sampleRate_p, int valueBytes_p, int direction_p) {
+		Request r = new Request(SCAN);
+		r.arraySize = 360 / sampleRate_p;
+		r.valueBytes = valueBytes_p;
+		send(r, sampleRate_p, valueBytes_p, direction_p);
+		return((CompletableFuture<int[]>)(CompletableFuture<?>)r.future);
+	}
+
+	/*
+	 * Method to queue a continuous scan.
+	 * Parameters:
+	 * sweepSpeed_p - Sweep speed in degrees per second.
+	 * direction_p - Sweep direction.
+	 * Returns:
+	 * Future of the samples.
+	 */
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<ScanSamples> continuousScan(int sweepSpeed_p, int direction_p) {
+		Request r = new Request(CONTINUOUS_SCAN);
+		send(r, sweepSpeed_p, direction_p);
+		return((CompletableFuture<ScanSamples>)(CompletableFuture<?>)r.future);
+	}
+
+	/*
+	 * Method to queue a move followed by a framed scan, taken from where the
+	 * move ends.
+	 * Parameters:
+	 * rotate_p - Degrees to rotate.
+	 * travel_p - Distance to travel.
+	 * sampleRate_p - Degrees between readings.
+	 * valueBytes_p - Bytes per reading, 2 or 4.
+	 * direction_p - Sweep direction.
+	 * Returns:
+	 * Future of the poses and readings.
+	 */
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<MoveScan> moveScan(int rotate_p, int travel_p,
+			int sampleRate_p, int valueBytes_p, int direction_p) {
+		Request r = new Request(MOVE_SCAN);
+		r.arraySize = 360 / sampleRate_p;
+		r.valueBytes = valueBytes_p;
+		send(r, rotate_p, travel_p, SCAN, sampleRate_p, valueBytes_p, direction_p);
+		return((CompletableFuture<MoveScan>)(CompletableFuture<?>)r.future);
+	}
+	
+	/*
+	 * Method to queue a move followed by a continuous scan, taken from where
+	 * the move ends.
+	 * Parameters:
+	 * rotate_p - Degrees to rotate.
+	 * travel_p - Distance to travel.
+	 * sweepSpeed_p - Sweep speed in degrees per second.
+	 * direction_p - Sweep direction.
+	 * Returns:
+	 * Future of the poses and samples.
+	 */
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<MoveScan> moveContinuousScan(int rotate_p, int travel_p,
+			int sweepSpeed_p, int direction_p) {
+		Request r = new Request(MOVE_SCAN);
+		r.scanType = CONTINUOUS_SCAN;
+		send(r, rotate_p, travel_p, CONTINUOUS_SCAN, sweepSpeed_p, direction_p);
+		return((CompletableFuture<MoveScan>)(CompletableFuture<?>)r.future);
+	}
+	
+	/*
+	 * Method to queue a query of the NXT's odometry pose.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Future of the pose, in the NXT's own axes.
+	 */
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<Pose> queryPose() {
+		Request r = new Request(POSE);
+		send(r);
+		return((CompletableFuture<Pose>)(CompletableFuture<?>)r.future);
+	}
+
+	/*
+	 * Method to send the terminate code, ending the NXT program once the
+	 * requests before it are done. Any request without a reply by the time
+	 * the connection closes fails.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean terminate() {
+		synchronized (outStream) {
+			try {
+				outStream.writeInt(TERMINATE);
+				outStream.flush();
+				return true;
+			} catch (IOException e) {
+				System.out.println("NXTLink > terminate - Error: Data transfer failed.");
+				return false;
+			}
+		}
+	}
+
+	/*
+	 * Accessor method for number of requests waiting for replies.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Integer representing number of requests in flight.
+	 */
+	public int getPendingCount() {
+		return(pending.size());
+	}
+
+	/*
+	 * Method to send a request message. The request is registered before it
+	 * is sent, so its reply always finds it.
+	 * Parameters:
+	 * request_p - Request to send.
+	 * params_p - Parameters of the request.
+	 * Returns:
+	 * None
+	 */
+	private void send(Request request_p, int... params_p) {
+		synchronized (outStream) {
+			if (failure != null) {
+				request_p.future.completeExceptionally(failure);
+				return;
+			}
+			int id = nextId++;
+			request_p.sent = Metrics.start();
+			pending.put(id, request_p);
+			try {
+				outStream.writeInt(REQUEST);
+				outStream.writeInt(id);
+				outStream.writeInt(request_p.type);
+				outStream.writeInt(params_p.length * 4);
+				for (int p : params_p) {
+					outStream.writeInt(p);
+				}
+				outStream.flush();
+			} catch (IOException e) {
+				pending.remove(id);
+				request_p.future.completeExceptionally(
+						new NXTCommException("NXTLink > send - Error: Data transfer failed."));
+			}
+		}
+	}
+
+	/*
+	 * Method run by the reader thread. Reads replies in order and completes
+	 * their requests until the stream fails.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * None
+	 */
+	private void readReplies() {
+		//Request being read, which is no longer pending if its reply fails.
+		Request r = null;
+		try {
+			while (true) {
+				int id = inStream.readInt();
+				int type = inStream.readInt();
+				r = pending.remove(id);
+				if ((r == null) || (r.type != type)) {
+					throw new NXTCommException("NXTLink > readReplies - Error: Unexpected reply " + id + ".");
+				}
+				Object body = readBody(r);
+				boolean success = inStream.readBoolean();
+				ROUND_TRIP.stop(r.sent);
+				if (success) {
+					r.future.complete(body);
+				} else {
+					r.future.completeExceptionally(
+							new NXTCommException("NXTLink > readReplies - Error: NXT reports failure following execution."));
+				}
+				r = null;
+			}
+		} catch (IOException e) {
+			fail(r, new NXTCommException("NXTLink > readReplies - Error: Data transfer failed."));
+		} catch (NXTCommException e) {
+			fail(r, e);
+		}
+	}
+	
+	/*
+	 * Method to read the body of a reply.
+	 * Parameters:
+	 * request_p - Request the reply is for.
+	 * Returns:
+	 * Object holding the decoded body.
+	 */
+	private Object readBody(Request request_p) throws IOException, NXTCommException {
+		switch (request_p.type) {
+			case MOVE :				Pose first = new Pose();
+									first.loadObject(inStream);
+									Pose last = new Pose();
+									last.loadObject(inStream);
+									return(new Pose[] {first, last});
+			case SCAN :				return(readScanFrames(inStream, request_p.arraySize, request_p.valueBytes));
+			case CONTINUOUS_SCAN :	return(readSampleFrames(inStream));
+			case POSE :				Pose pose = new Pose();
+									pose.loadObject(inStream);
+									return(pose);
+			case MOVE_SCAN :		MoveScan reply = new MoveScan();
+									reply.firstPose = new Pose();
+									reply.firstPose.loadObject(inStream);
+									reply.newPose = new Pose();
+									reply.newPose.loadObject(inStream);
+									if (request_p.scanType == CONTINUOUS_SCAN) {
+										reply.samples = readSampleFrames(inStream);
+									} else {
+										reply.readings = readScanFrames(inStream, request_p.arraySize, request_p.valueBytes);
+									}
+									return(reply);
+			default :				return(null);
+		}
+	}
+
+	/*
+	 * Method to stop the link, failing every waiting request and any sent
+	 * later.
+	 * Parameters:
+	 * current_p - Request whose reply was being read, null if none.
+	 * failure_p - Reason the link stopped.
+	 * Returns:
+	 * None
+	 */
+	private void fail(Request current_p, NXTCommException failure_p) {
+		synchronized (outStream) {
+			failure = failure_p;
+		}
+		if (current_p != null) {
+			current_p.future.completeExceptionally(failure_p);
+		}
+		for (Integer id : pending.keySet()) {
+			Request r = pending.remove(id);
+			if (r != null) {
+				r.future.completeExceptionally(failure_p);
+			}
+		}
+	}
+
+	/*
+	 * Method to read the readings of a framed scan.
+	 * Parameters:
+	 * in_p - Stream from the NXT.
+	 * arraySize_p - Number of readings in the scan.
+	 * valueBytes_p - Bytes per reading, 2 or 4.
+	 * Returns:
+	 * Array of readings.
+	 */
+	public static int[] readScanFrames(DataInputStream in_p, int arraySize_p, int valueBytes_p)
+			throws NXTCommException {
+		int[] data = new int[arraySize_p];
+		byte[] frame = new byte[FRAME_BYTES];
+		int j = 0;
+		while (j < arraySize_p) {
+			int count = readFrame(in_p, frame, valueBytes_p);
+			if ((count == 0) || (count > arraySize_p - j)) {
+				throw new NXTCommException("NXTLink > readScanFrames - Error: Bad frame length " + count + ".");
+			}
+			//Decode readings, big endian as the NXT writes them.
+			ByteBuffer buf = ByteBuffer.wrap(frame, 0, count * valueBytes_p);
+			for (int i = 0; i < count; i++) {
+				data[j++] = (valueBytes_p == 2) ? buf.getShort() : buf.getInt();
+			}
+		}
+		return(data);
+	}
+
+	/*
+	 * Method to read the samples of a continuous scan, up to the empty frame
+	 * that ends the scan.
+	 * Parameters:
+	 * in_p - Stream from the NXT.
+	 * Returns:
+	 * ScanSamples holding each reading with its angle and time.
+	 */
+	public static ScanSamples readSampleFrames(DataInputStream in_p) throws NXTCommException {
+		byte[] frame = new byte[FRAME_BYTES];
+		int[] ranges = new int[360];
+		double[] angles = new double[360];
+		int[] times = new int[360];
+		int n = 0;
+		int count;
+		while ((count = readFrame(in_p, frame, SAMPLE_BYTES)) > 0) {
+			if (n + count > ranges.length) {
+				ranges = Arrays.copyOf(ranges, 2 * (n + count));
+				angles = Arrays.copyOf(angles, ranges.length);
+				times = Arrays.copyOf(times, ranges.length);
+			}
+			//Decode reading, tacho count and time of each sample.
+			ByteBuffer buf = ByteBuffer.wrap(frame, 0, count * SAMPLE_BYTES);
+			for (int i = 0; i < count; i++, n++) {
+				ranges[n] = buf.getShort();
+				angles[n] = buf.getShort();
+				times[n] = buf.getInt();
+			}
+		}
+		return(new ScanSamples(Arrays.copyOf(ranges, n), Arrays.copyOf(angles, n), Arrays.copyOf(times, n)));
+	}
+
+	/*
+	 * Method to read one scan frame, reading it whole and checking it
+	 * before it is decoded.
+	 * Frame layout: item count (int), items, Adler-32 checksum of the item
+	 * bytes (int).
+	 * Parameters:
+	 * in_p - Stream from the NXT.
+	 * frame_p - Buffer to read items into, FRAME_BYTES long.
+	 * itemBytes_p - Bytes per item.
+	 * Returns:
+	 * Integer representing number of items in the frame.
+	 */
+	private static int readFrame(DataInputStream in_p, byte[] frame_p, int itemBytes_p) throws NXTCommException {
+		try {
+			int count = in_p.readInt();
+			if ((count < 0) || (count * itemBytes_p > FRAME_BYTES)) {
+				throw new NXTCommException("NXTLink > readFrame - Error: Bad frame length " + count + ".");
+			}
+			int length = count * itemBytes_p;
+			in_p.readFully(frame_p, 0, length);
+			Adler32 checksum = new Adler32();
+			checksum.update(frame_p, 0, length);
+			if (in_p.readInt() != (int)checksum.getValue()) {
+				throw new NXTCommException("NXTLink > readFrame - Error: Frame checksum mismatch.");
+			}
+			return(count);
+		} catch (IOException e) {
+			throw new NXTCommException("NXTLink > readFrame - Error: Data transfer failed.");
+		}
+	}
+}
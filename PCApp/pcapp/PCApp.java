@@ -6,6 +6,12 @@
  * Static runner class for PC application.
  *  
  * This object creates the MVC objects to start up the program.
+ *
+ * Run with -metrics file to record metrics, readable over JMX while running
+ * and written to the file as CSV on exit. Run with -precision double, float
+ * or short to set the precision of map cells, float by default. Run the JVM with
+ * -XX:StartFlightRecording to record flight recorder events for scans,
+ * moves, map updates and session I/O, for viewing in JDK Mission Control.
  */
 
 package mattadshead.swansea3.dissertation.pcapp;
@@ -13,6 +19,8 @@ package mattadshead.swansea3.dissertation.pcapp;
 import java.io.IOException;
 
 import lejos.pc.comm.NXTCommException;
+import mattadshead.swansea3.dissertation.structures.ChunkedGridStore;
+import mattadshead.swansea3.dissertation.structures.Metrics;
 import mattadshead.swansea3.dissertation.structures.OGM;
 
 public class PCApp {
@@ -25,10 +33,54 @@ public class PCApp {
 	private static Controller controller;
 	
 	public static void main(String[] args) throws NXTCommException {
+		String metricsPath = null;
+		int precision = ChunkedGridStore.FLOAT_CELLS;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-metrics")) {
+					metricsPath = args[++i];
+				} else if (args[i].equals("-precision")) {
+					precision = ChunkedGridStore.parsePrecision(args[++i]);
+				} else {
+					throw new IllegalArgumentException("Unknown option " + args[i] + ".");
+				}
+			}
+		} catch (RuntimeException e) {
+			//Unknown options and missing option values.
+			System.out.println("PCApp > main - Error: " + e.getMessage());
+			System.out.println("Usage: PCApp [-metrics file] [-precision double|float|short]");
+			System.exit(2);
+		}
+		if (metricsPath != null) {
+			enableMetrics(metricsPath);
+		}
 		//Create model, view, and controller objects.
 		view = new View(null);
 		model = new Model(view);
 		controller = new Controller(model);
+		controller.setCellPrecision(precision);
 		view.setController(controller);
 	}
+	
+	/*
+	 * Method to start recording metrics, register them for JMX and write
+	 * them to a file when the application exits.
+	 * Parameters:
+	 * filepath_p - Path of metrics file.
+	 * Returns:
+	 * None
+	 */
+	private static void enableMetrics(final String filepath_p) {
+		Metrics.setEnabled(true);
+		Metrics.registerMBean();
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			public void run() {
+				try {
+					Metrics.write(filepath_p);
+				} catch (IOException e) {
+					System.out.println("PCApp > enableMetrics - Error: Writing metrics failed.");
+				}
+			}
+		}, "Metrics writer"));
+	}
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+/*
+ * PlacedSessionReader.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Session reader placing recorded scans into the map a session is loaded to.
+ *
+ * Scan positions are recorded in the coordinates of the map a session was
+ * mapped in, while move commands give the pose relative to the start. This
+ * reader works out the recorded start from the first scan and the pose
+ * before it, then moves every scan by the same offset as the map's own
+ * start, so scans and moves line up in a map of any shape.
+ */
+
+package mattadshead.swansea3.dissertation.pcapp;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+
+import mattadshead.swansea3.dissertation.structures.DataScan;
+import mattadshead.swansea3.dissertation.structures.MoveCommand;
+import mattadshead.swansea3.dissertation.structures.OGM;
+
+public class PlacedSessionReader implements SessionReader {
+	private SessionReader reader;
+	private OGM map;
+	//Pose of the last move command read, relative to the start.
+	private double poseX = 0, poseY = 0;
+	//Recorded position of the start pose, null until the first placed scan.
+	private Point2D.Double start = null;
+	private DataScan scan;
+
+	/*
+	 * Class constructor.
+	 * Parameters:
+	 * reader_p - Reader of the session file.
+	 * map_p - Map the session is loaded to.
+	 * Returns:
+	 * None
+	 */
+	public PlacedSessionReader(SessionReader reader_p, OGM map_p) {
+		reader = reader_p;
+		map = map_p;
+	}
+
+	public int next() throws IOException {
+		int type = reader.next();
+		if (type == SessionJournal.SCAN_RECORD) {
+			scan = reader.getScan();
+			Point2D.Double recorded = scan.getRelativePosition();
+			//Scans without a position are integrated at the bot position.
+			if (recorded != null) {
+				if (start == null) {
+					start = new Point2D.Double(recorded.getX() - poseX, recorded.getY() - poseY);
+				}
+				scan.setRelativePosition(map.getSessionPosition(recorded, start));
+			}
+		} else if (type == SessionJournal.COMMAND_RECORD) {
+			MoveCommand mc = reader.getCommand();
+			poseX = mc.getNewX();
+			poseY = mc.getNewY();
+		}
+		return(type);
+	}
+
+	public DataScan getScan() {
+		return(scan);
+	}
+
+	public MoveCommand getCommand() {
+		return(reader.getCommand());
+	}
+
+	public void close() {
+		reader.close();
+	}
+}
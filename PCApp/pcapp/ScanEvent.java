@@ -0,0 +1,50 @@
+/*
+ * ScanEvent.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Flight recorder event for a scan taken by Controller.getScan, lasting from
+ * the request to the NXT until the readings are back. Scan events show
+ * whether a link stall or a slow sweep held up a mapping step.
+ */
+
+package mattadshead.swansea3.dissertation.pcapp;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("mattadshead.swansea3.dissertation.Scan")
+@Label("NXT Scan")
+@Category({"Dissertation", "NXT"})
+@Description("Scan requested from the NXT, until its readings are received")
+class ScanEvent extends Event {
+
+	@Label("Sample Rate")
+	@Description("Degrees between readings")
+	int sampleRate;
+
+	@Label("Readings")
+	int readings;
+
+	@Label("Scan Mode")
+	@Description("framed, continuous or legacy")
+	String mode;
+
+	@Label("Pipelined")
+	boolean pipelined;
+
+	@Label("X")
+	@Description("Map position the scan is placed at, in mm")
+	double x;
+
+	@Label("Y")
+	@Description("Map position the scan is placed at, in mm")
+	double y;
+
+	@Label("Heading")
+	@Description("Map heading the scan is placed at, in degrees")
+	double heading;
+}
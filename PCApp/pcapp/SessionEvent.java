@@ -0,0 +1,44 @@
+/*
+ * SessionEvent.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Flight recorder event for loading or saving a mapping session through
+ * Controller.loadSession and Controller.saveSession.
+ */
+
+package mattadshead.swansea3.dissertation.pcapp;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("mattadshead.swansea3.dissertation.Session")
+@Label("Session I/O")
+@Category({"Dissertation", "Session"})
+@Description("Mapping session loaded from or saved to file")
+class SessionEvent extends Event {
+
+	@Label("Operation")
+	@Description("load, save, or flush of a journaled session")
+	String operation;
+
+	@Label("Path")
+	String path;
+
+	@Label("Scans")
+	int scans;
+
+	@Label("Commands")
+	int commands;
+
+	@Label("File Size")
+	@DataAmount
+	long bytes;
+
+	@Label("Succeeded")
+	boolean success;
+}
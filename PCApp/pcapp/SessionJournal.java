@@ -0,0 +1,590 @@
+/*
+ * SessionJournal.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Append only journal of a mapping session, written as the session runs.
+ *
+ * Each scan and move command is added to the journal as soon as it is
+ * produced, so a crash loses at most the records that were not yet on disk
+ * rather than everything since the last save. Adding a record only encodes it
+ * and puts it on a queue, so the mapping loop never waits for the disk. A
+ * writer thread takes every record waiting on the queue, writes them, and
+ * forces them to disk with one fsync, so records produced while an fsync is
+ * in progress are committed together by the next one.
+ *
+ * File layout:
+ * - Header, HEADER_SIZE bytes: magic number (int), format version (short),
+ *   flags (short, unused).
+ * - Records, one after another:
+ *   record type (byte), payload length (int), payload, CRC32 of the type,
+ *   length and payload (int).
+ * Scan payloads are sample rate (int, negative for a reverse sweep), number
+ * of readings (int), x, y and heading of the position the scan was taken
+ * from (doubles), readings (ints).
+ * Command payloads are rotation (int), travel (int), odometry x, y and
+ * heading (doubles).
+ *
+ * Records are in the order they were produced, so each move command follows
+ * the scan taken before it. A crash part way through a write leaves a final
+ * record that is short or fails its CRC; readers stop before it and recover
+ * truncates the file back to the last complete record.
+ */
+
+package mattadshead.swansea3.dissertation.pcapp;
+
+import java.awt.geom.Point2D;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+import mattadshead.swansea3.dissertation.structures.DataScan;
+import mattadshead.swansea3.dissertation.structures.Histogram;
+import mattadshead.swansea3.dissertation.structures.Metrics;
+import mattadshead.swansea3.dissertation.structures.MoveCommand;
+
+public class SessionJournal {
+
+	//Symbolic constants for file format.
+	public static final int		MAGIC = 0x454E564A,	//"ENVJ"
+								FORMAT_VERSION = 1,
+								HEADER_SIZE = 8,
+								SCAN_RECORD = 1,
+								COMMAND_RECORD = 2;
+
+	//Symbolic constants for record framing, type and length before payload, CRC after.
+	private static final int	RECORD_HEADER_SIZE = 5,
+								RECORD_TRAILER_SIZE = 4,
+								SCAN_HEADER_SIZE = 32,
+								COMMAND_SIZE = 32,
+								//Largest payload accepted when reading, larger lengths are corrupt.
+								MAX_PAYLOAD = 1 << 24;
+	//Time to write and sync one batch of records.
+	private static final Histogram SYNC_TIME = Metrics.histogram("session.journalSync", Histogram.NANOSECONDS);
+
+	//Marker put on the queue to stop the writer thread.
+	private final ByteBuffer	CLOSE = ByteBuffer.allocate(0);
+
+	//Journal file.
+	private String filepath;
+	private RandomAccessFile file;
+	private FileChannel channel;
+
+	//Encoded records waiting to be written. Unbounded, so adding never blocks.
+	private LinkedBlockingQueue<ByteBuffer> queue = new LinkedBlockingQueue<ByteBuffer>();
+	private Thread writer;
+
+	//Record counts, guarded by the journal. Durable records have been forced to disk.
+	private long appended = 0, durable = 0, syncs = 0;
+	//Records of each type in the file, including ones from before it was opened.
+	private int scanRecords = 0, commandRecords = 0;
+	//First write failure, after which records are no longer written.
+	private volatile IOException error = null;
+	private volatile boolean closed = false;
+
+	/*
+	 * Class constructor. Opens a journal file for appending and starts the
+	 * writer thread.
+	 * Parameters:
+	 * filepath_p - Path of journal file.
+	 * file_p - Journal file, positioned after its last complete record.
+	 * Returns:
+	 * None
+	 */
+	private SessionJournal(String filepath_p, RandomAccessFile file_p) throws IOException {
+		filepath = filepath_p;
+		file = file_p;
+		channel = file.getChannel();
+		channel.position(channel.size());
+		writer = new Thread(new Runnable() {
+			public void run() {
+				writeRecords();
+			}
+		}, "Session journal writer");
+		//Records not yet committed are lost on exit, as in a crash.
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/*
+	 * Method to create a new, empty journal, replacing any file at the path.
+	 * Parameters:
+	 * filepath_p - Path of journal file.
+	 * Returns:
+	 * SessionJournal ready for records.
+	 */
+	public static SessionJournal create(String filepath_p) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(filepath_p, "rw");
+		try {
+			file.setLength(0);
+			file.writeInt(MAGIC);
+			file.writeShort(FORMAT_VERSION);
+			file.writeShort(0);
+			//Make header durable before any record depends on it.
+			file.getChannel().force(true);
+			return(new SessionJournal(filepath_p, file));
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/*
+	 * Method to open an existing journal to add more records, after
+	 * recovering it from any crash.
+	 * Parameters:
+	 * filepath_p - Path of journal file.
+	 * Returns:
+	 * SessionJournal ready for records.
+	 */
+	public static SessionJournal open(String filepath_p) throws IOException {
+		int[] counts = recoverFile(filepath_p);
+		SessionJournal journal = new SessionJournal(filepath_p, new RandomAccessFile(filepath_p, "rw"));
+		journal.scanRecords = counts[1];
+		journal.commandRecords = counts[2];
+		return(journal);
+	}
+
+	/*
+	 * Method to recover a journal after a crash by truncating any incomplete
+	 * or corrupt final record.
+	 * Parameters:
+	 * filepath_p - Path of journal file.
+	 * Returns:
+	 * Integer representing number of complete records kept.
+	 */
+	public static int recover(String filepath_p) throws IOException {
+		return(recoverFile(filepath_p)[0]);
+	}
+
+	/*
+	 * Method to recover a journal and count its records.
+	 * Parameters:
+	 * filepath_p - Path of journal file.
+	 * Returns:
+	 * Integer array of complete records kept, scan records and command records.
+	 */
+	private static int[] recoverFile(String filepath_p) throws IOException {
+		Reader reader = new Reader(filepath_p);
+		int[] counts = new int[3];
+		long end;
+		try {
+			int type = reader.next();
+			while (type != -1) {
+				counts[0]++;
+				if (type == SCAN_RECORD) {
+					counts[1]++;
+				} else {
+					counts[2]++;
+				}
+				type = reader.next();
+			}
+			end = reader.getValidLength();
+		} finally {
+			reader.close();
+		}
+		RandomAccessFile file = new RandomAccessFile(filepath_p, "rw");
+		try {
+			if (file.length() > end) {
+				System.out.println("SessionJournal > recover - Error: Dropped "
+						+ (file.length() - end) + " bytes of incomplete record.");
+				file.setLength(end);
+				file.getChannel().force(true);
+			}
+		} finally {
+			file.close();
+		}
+		return(counts);
+	}
+
+	/*
+	 * Method to check whether a file is a session journal.
+	 * Parameters:
+	 * filepath_p - Path of file to check.
+	 * Returns:
+	 * Boolean representing whether the file starts with the magic number.
+	 */
+	public static boolean isJournal(String filepath_p) throws IOException {
+		DataInputStream in = new DataInputStream(new FileInputStream(filepath_p));
+		try {
+			return(in.readInt() == MAGIC);
+		} catch (IOException e) {
+			//Files shorter than the magic number are not journals.
+			return false;
+		} finally {
+			in.close();
+		}
+	}
+
+	/*
+	 * Method to add a scan to the journal. Does not wait for the disk.
+	 * Parameters:
+	 * scan_p - Scan to add.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean append(DataScan scan_p) {
+		int[] vals = scan_p.getValues();
+		ByteBuffer record = startRecord(SCAN_RECORD, SCAN_HEADER_SIZE + (vals.length * 4));
+		Point2D.Double position = scan_p.getRelativePosition();
+		record.putInt(scan_p.getAngleStep());
+		record.putInt(vals.length);
+		record.putDouble(position.getX());
+		record.putDouble(position.getY());
+		record.putDouble(scan_p.getHeading());
+		for (int v : vals) {
+			record.putInt(v);
+		}
+		return(finishRecord(record));
+	}
+
+	/*
+	 * Method to add a move command to the journal. Does not wait for the disk.
+	 * Parameters:
+	 * command_p - Move command to add, with odometry values set.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean append(MoveCommand command_p) {
+		ByteBuffer record = startRecord(COMMAND_RECORD, COMMAND_SIZE);
+		record.putInt(command_p.getRotateCommand());
+		record.putInt(command_p.getTravelCommand());
+		record.putDouble(command_p.getNewX());
+		record.putDouble(command_p.getNewY());
+		record.putDouble(command_p.getNewHeading());
+		return(finishRecord(record));
+	}
+
+	/*
+	 * Method to wait until every record added so far is on disk.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Boolean representing operation success, false if a write failed.
+	 */
+	public synchronized boolean flush() throws InterruptedException {
+		long target = appended;
+		while ((durable < target) && (error == null)) {
+			wait();
+		}
+		return(error == null);
+	}
+
+	/*
+	 * Method to commit the remaining records, stop the writer thread and
+	 * close the file.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Boolean representing operation success, false if a write failed.
+	 */
+	public boolean close() throws InterruptedException {
+		synchronized (this) {
+			if (closed) {
+				return(error == null);
+			}
+			closed = true;
+		}
+		queue.add(CLOSE);
+		writer.join();
+		try {
+			file.close();
+		} catch (IOException e) {
+			System.out.println("SessionJournal > close - Error: Closing file failed.");
+		}
+		return(error == null);
+	}
+
+	public String getFilePath() {
+		return(filepath);
+	}
+
+	public synchronized long getRecordCount() {
+		return(appended);
+	}
+
+	public synchronized long getDurableCount() {
+		return(durable);
+	}
+
+	/*
+	 * Accessor method for number of scans in the journal, including scans
+	 * written before it was opened.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Integer representing scan record count.
+	 */
+	public synchronized int getScanCount() {
+		return(scanRecords);
+	}
+
+	/*
+	 * Accessor method for number of move commands in the journal, including
+	 * commands written before it was opened.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Integer representing command record count.
+	 */
+	public synchronized int getCommandCount() {
+		return(commandRecords);
+	}
+
+	/*
+	 * Accessor method for number of fsyncs, which is the number of group
+	 * commits made.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Long representing fsync count.
+	 */
+	public synchronized long getSyncCount() {
+		return(syncs);
+	}
+
+	/*
+	 * Method to allocate a record and write its type and length.
+	 * Parameters:
+	 * type_p - Record type.
+	 * payloadSize_p - Payload size in bytes.
+	 * Returns:
+	 * ByteBuffer positioned at the start of the payload.
+	 */
+	private ByteBuffer startRecord(int type_p, int payloadSize_p) {
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payloadSize_p + RECORD_TRAILER_SIZE);
+		record.put((byte)type_p);
+		record.putInt(payloadSize_p);
+		return(record);
+	}
+
+	/*
+	 * Method to add the CRC to a record and queue it for the writer.
+	 * Parameters:
+	 * record_p - Record with its payload written.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	private boolean finishRecord(ByteBuffer record_p) {
+		CRC32 crc = new CRC32();
+		crc.update(record_p.array(), 0, record_p.position());
+		record_p.putInt((int)crc.getValue());
+		record_p.flip();
+		synchronized (this) {
+			if (closed) {
+				System.out.println("SessionJournal > append - Error: Journal is closed.");
+				return false;
+			}
+			if (error != null) {
+				System.out.println("SessionJournal > append - Error: Journal write failed, record dropped.");
+				return false;
+			}
+			appended++;
+			if (record_p.get(0) == SCAN_RECORD) {
+				scanRecords++;
+			} else {
+				commandRecords++;
+			}
+			//Queued under the lock so records are written in count order.
+			queue.add(record_p);
+		}
+		return true;
+	}
+
+	/*
+	 * Method run by the writer thread. Writes and forces records in batches
+	 * until the journal is closed or a write fails.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * None
+	 */
+	private void writeRecords() {
+		ArrayList<ByteBuffer> batch = new ArrayList<ByteBuffer>();
+		boolean stop = false;
+		while (!stop) {
+			try {
+				//Wait for a record, then take every other record waiting.
+				batch.add(queue.take());
+				queue.drainTo(batch);
+			} catch (InterruptedException e) {
+				System.out.println("SessionJournal > writeRecords - Error: Writer interrupted.");
+				return;
+			}
+			if (batch.get(batch.size() - 1) == CLOSE) {
+				//Nothing is queued after the close marker.
+				batch.remove(batch.size() - 1);
+				stop = true;
+			}
+			if (!batch.isEmpty() && (error == null)) {
+				try {
+					long start = Metrics.start();
+					ByteBuffer[] buffers = batch.toArray(new ByteBuffer[batch.size()]);
+					long remaining = 0;
+					for (ByteBuffer b : buffers) {
+						remaining += b.remaining();
+					}
+					while (remaining > 0) {
+						remaining -= channel.write(buffers);
+					}
+					//One fsync commits the whole batch.
+					channel.force(false);
+					SYNC_TIME.stop(start);
+					synchronized (this) {
+						durable += batch.size();
+						syncs++;
+						notifyAll();
+					}
+				} catch (IOException e) {
+					System.out.println("SessionJournal > writeRecords - Error: Writing to file failed.");
+					synchronized (this) {
+						error = e;
+						notifyAll();
+					}
+				}
+			}
+			batch.clear();
+		}
+	}
+
+	/*
+	 * Sequential reader for journal files. Stops at the end of the file or
+	 * at the first incomplete or corrupt record.
+	 */
+	public static class Reader implements SessionReader {
+		private DataInputStream in;
+		//Length of the file up to the end of the last complete record.
+		private long validLength;
+		//Last record read.
+		private DataScan scan;
+		private MoveCommand command;
+
+		/*
+		 * Class constructor. Opens a journal and checks its header.
+		 * Parameters:
+		 * filepath_p - Path of journal file.
+		 * Returns:
+		 * None
+		 */
+		public Reader(String filepath_p) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(filepath_p), 1 << 16));
+			try {
+				if (in.readInt() != MAGIC) {
+					throw new IOException("SessionJournal - Error: Not a session journal.");
+				}
+				int version = in.readShort();
+				if (version > FORMAT_VERSION) {
+					throw new IOException("SessionJournal - Error: Unsupported format version " + version + ".");
+				}
+				in.readShort();
+			} catch (EOFException e) {
+				in.close();
+				throw new IOException("SessionJournal - Error: File too short for header.");
+			} catch (IOException e) {
+				in.close();
+				throw e;
+			}
+			validLength = HEADER_SIZE;
+		}
+
+		/*
+		 * Method to read the next record.
+		 * Parameters:
+		 * None
+		 * Returns:
+		 * Integer representing record type, -1 when there are no more
+		 * complete records.
+		 */
+		public int next() throws IOException {
+			byte[] record;
+			int type, length;
+			try {
+				type = in.readUnsignedByte();
+				length = in.readInt();
+				if ((length < 0) || (length > MAX_PAYLOAD)) {
+					return(-1);
+				}
+				record = new byte[RECORD_HEADER_SIZE + length];
+				in.readFully(record, RECORD_HEADER_SIZE, length);
+				int storedCrc = in.readInt();
+				ByteBuffer.wrap(record).put((byte)type).putInt(length);
+				CRC32 crc = new CRC32();
+				crc.update(record, 0, record.length);
+				if ((int)crc.getValue() != storedCrc) {
+					return(-1);
+				}
+			} catch (EOFException e) {
+				//Torn final record.
+				return(-1);
+			}
+
+			ByteBuffer payload = ByteBuffer.wrap(record, RECORD_HEADER_SIZE, length);
+			if ((type == SCAN_RECORD) && (length >= SCAN_HEADER_SIZE)) {
+				int rate = payload.getInt();
+				int numVals = payload.getInt();
+				if (length != SCAN_HEADER_SIZE + (numVals * 4)) {
+					return(-1);
+				}
+				Point2D.Double position = new Point2D.Double(payload.getDouble(), payload.getDouble());
+				double heading = payload.getDouble();
+				int[] vals = new int[numVals];
+				payload.asIntBuffer().get(vals);
+				scan = new DataScan(vals, position, heading);
+				if (rate < 0) {
+					scan.setSweepDirection(DataScan.SWEEP_REVERSE);
+				}
+			} else if ((type == COMMAND_RECORD) && (length == COMMAND_SIZE)) {
+				command = new MoveCommand(payload.getInt(), payload.getInt());
+				command.setNewX(payload.getDouble());
+				command.setNewY(payload.getDouble());
+				command.setNewHeading(payload.getDouble());
+			} else {
+				return(-1);
+			}
+			validLength += RECORD_HEADER_SIZE + length + RECORD_TRAILER_SIZE;
+			return(type);
+		}
+
+		/*
+		 * Accessor method for scan read by the last call to next.
+		 * Parameters:
+		 * None
+		 * Returns:
+		 * DataScan of last scan record.
+		 */
+		public DataScan getScan() {
+			return(scan);
+		}
+
+		/*
+		 * Accessor method for move command read by the last call to next.
+		 * Parameters:
+		 * None
+		 * Returns:
+		 * MoveCommand of last command record.
+		 */
+		public MoveCommand getCommand() {
+			return(command);
+		}
+
+		public long getValidLength() {
+			return(validLength);
+		}
+
+		public void close() {
+			try {
+				in.close();
+			} catch (IOException e) {
+				System.out.println("SessionJournal > Reader - Error: Closing file failed.");
+			}
+		}
+	}
+}
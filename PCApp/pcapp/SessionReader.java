@@ -0,0 +1,59 @@
+/*
+ * SessionReader.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Interface for sequential readers of mapping session files.
+ *
+ * A reader returns the scans and move commands of a session in the order
+ * they were made, whatever the file format, so loading and replaying a
+ * session does not depend on how it was stored. Record types are those of
+ * SessionJournal.
+ */
+
+package mattadshead.swansea3.dissertation.pcapp;
+
+import java.io.IOException;
+
+import mattadshead.swansea3.dissertation.structures.DataScan;
+import mattadshead.swansea3.dissertation.structures.MoveCommand;
+
+public interface SessionReader {
+
+	/*
+	 * Method to read the next record.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Integer representing record type, SessionJournal.SCAN_RECORD or
+	 * SessionJournal.COMMAND_RECORD, -1 when there are no more records.
+	 */
+	public int next() throws IOException;
+
+	/*
+	 * Accessor method for scan read by the last call to next.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * DataScan of last scan record.
+	 */
+	public DataScan getScan();
+
+	/*
+	 * Accessor method for move command read by the last call to next.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * MoveCommand of last command record.
+	 */
+	public MoveCommand getCommand();
+
+	/*
+	 * Method to release the file.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * None
+	 */
+	public void close();
+}
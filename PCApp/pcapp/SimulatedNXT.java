@@ -0,0 +1,498 @@
+/*
+ * SimulatedNXT.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Simulated NXT robot speaking the same protocol as NXTProgram.
+ *
+ * The robot drives in a floor plan of wall segments. Moves are exact, and
+ * odometry is reported in leJOS Pose axes as the real pose tracker does.
+ * Sensor readings are found by casting a ray from the robot to the nearest
+ * wall, with Gaussian noise added, and readings beyond the sensor's range
+ * come back as the 800mm maximum. The floor plan is in map axes, with the
+ * robot starting at the origin facing along +y, so a map built from the
+ * simulator's scans lines up with the plan.
+ *
+ * Scans take no real time. Continuous scans are tagged with the times and
+ * angles the sweep would have read them at, so mapping can be load tested
+ * as fast as the PC can go. Link latency is added by the transport (see
+ * SimulatedTransport).
+ *
+ * Run on its own, it serves the protocol over TCP for TcpTransport:
+ * java SimulatedNXT [-port n] [-plan file] [-noise mm] [-seed n]
+ */
+
+package mattadshead.swansea3.dissertation.pcapp;
+
+import java.awt.geom.Line2D;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Adler32;
+
+import lejos.robotics.navigation.Pose;
+
+public class SimulatedNXT {
+
+	//Symbolic constant for function identifier of the original scan, which
+	//sends each reading on its own.
+	public static final int		LEGACY_SCAN = 2;
+	//Symbolic constants for the sensor's longest reading in mm, and readings
+	//per second in a continuous sweep.
+	public static final int		MAX_RANGE = 800,
+								READ_RATE = 50;
+	//Symbolic constant for default TCP port.
+	public static final int		DEFAULT_PORT = 5555;
+
+	//Walls of the floor plan in map axes.
+	private ArrayList<Line2D.Double> walls;
+	//Standard deviation of reading noise in mm.
+	private double noise = 0;
+	private Random random = new Random(0);
+
+	//Odometry pose in leJOS axes: x ahead at the start, y to the left,
+	//heading in degrees anticlockwise, -180 to 180.
+	private double poseX = 0, poseY = 0, poseHeading = 0;
+	//Sensor motor tacho count, 0 or 360 between sweeps.
+	private int sensorAngle = 0;
+
+	/*
+	 * Class constructor.
+	 * Parameters:
+	 * walls_p - Walls of the floor plan in map axes.
+	 * Returns:
+	 * None
+	 */
+	public SimulatedNXT(ArrayList<Line2D.Double> walls_p) {
+		walls = walls_p;
+	}
+
+	/*
+	 * Mutator method for reading noise.
+	 * Parameters:
+	 * noise_p - Standard deviation of reading noise in mm.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setNoise(double noise_p) {
+		noise = noise_p;
+		return true;
+	}
+
+	/*
+	 * Mutator method for seed of reading noise, so runs can be repeated.
+	 * Parameters:
+	 * seed_p - Random seed.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setSeed(long seed_p) {
+		random = new Random(seed_p);
+		return true;
+	}
+
+	/*
+	 * Accessor method for odometry pose.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Pose object in leJOS axes.
+	 */
+	public synchronized Pose getPose() {
+		return(new Pose((float)poseX, (float)poseY, (float)poseHeading));
+	}
+
+	/*
+	 * Method to run the protocol on a pair of streams until the PC sends
+	 * terminate or closes the link.
+	 * Parameters:
+	 * in_p - Stream from the PC.
+	 * out_p - Stream to the PC.
+	 * Returns:
+	 * Boolean representing whether the session ended with terminate.
+	 */
+	public boolean run(DataInputStream in_p, DataOutputStream out_p) {
+		try {
+			while (true) {
+				int functionSelect = in_p.readInt();
+				if (functionSelect == NXTLink.TERMINATE) {
+					//Return sensor to 0 as the NXT does.
+					sensorAngle = 0;
+					return true;
+				} else if (functionSelect == NXTLink.REQUEST) {
+					handleRequest(in_p, out_p);
+				} else {
+					out_p.writeBoolean(execute(functionSelect, in_p, out_p));
+					out_p.flush();
+				}
+			}
+		} catch (EOFException e) {
+			return false;
+		} catch (IOException e) {
+			System.out.println("SimulatedNXT > run - Error: Data transfer failed.");
+			return false;
+		}
+	}
+
+	/*
+	 * Method to execute one request message, as NXTProgram.handleRequest.
+	 * Parameters:
+	 * in_p - Stream from the PC.
+	 * out_p - Stream to the PC.
+	 * Returns:
+	 * None
+	 */
+	private void handleRequest(DataInputStream in_p, DataOutputStream out_p) throws IOException {
+		int id = in_p.readInt();
+		int type = in_p.readInt();
+		int length = in_p.readInt();
+		out_p.writeInt(id);
+		out_p.writeInt(type);
+		boolean success;
+		if ((type == NXTLink.MOVE) || (type == NXTLink.SCAN) || (type == NXTLink.CONTINUOUS_SCAN)
+				|| (type == NXTLink.POSE) || (type == NXTLink.MOVE_SCAN)) {
+			success = execute(type, in_p, out_p);
+		} else {
+			in_p.skipBytes(length);
+			success = false;
+		}
+		out_p.writeBoolean(success);
+		out_p.flush();
+	}
+
+	/*
+	 * Method to execute one function, reading its parameters and sending
+	 * its reply body. The success boolean is left to the caller.
+	 * Parameters:
+	 * functionSelect_p - Function identifier.
+	 * in_p - Stream from the PC.
+	 * out_p - Stream to the PC.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	private boolean execute(int functionSelect_p, DataInputStream in_p, DataOutputStream out_p) throws IOException {
+		switch (functionSelect_p) {
+			case NXTLink.MOVE :				getPose().dumpObject(out_p);
+											out_p.flush();
+											drive(in_p.readInt(), in_p.readInt());
+											getPose().dumpObject(out_p);
+											out_p.flush();
+											return true;
+			case LEGACY_SCAN :				legacyScan(in_p.readInt(), out_p);
+											return true;
+			case NXTLink.SCAN :				framedScan(in_p.readInt(), in_p.readInt(), in_p.readInt(), out_p);
+											return true;
+			case NXTLink.CONTINUOUS_SCAN :	continuousScan(in_p.readInt(), in_p.readInt(), out_p);
+											return true;
+			case NXTLink.POSE :				getPose().dumpObject(out_p);
+											out_p.flush();
+											return true;
+			case NXTLink.MOVE_SCAN :		int rotate = in_p.readInt();
+											int travel = in_p.readInt();
+											int scanType = in_p.readInt();
+											getPose().dumpObject(out_p);
+											drive(rotate, travel);
+											getPose().dumpObject(out_p);
+											return(execute(scanType, in_p, out_p));
+			default :						System.out.println("SimulatedNXT > execute - Error: Unknown function " + functionSelect_p + ".");
+											return false;
+		}
+	}
+
+	/*
+	 * Method to execute a move, as NXTProgram.drive. Only positive rotations
+	 * and travels are made, and rotation is clockwise.
+	 * Parameters:
+	 * rotate_p - Degrees to rotate.
+	 * travel_p - Distance to travel.
+	 * Returns:
+	 * None
+	 */
+	private synchronized void drive(int rotate_p, int travel_p) {
+		if (rotate_p > 0) {
+			poseHeading -= rotate_p;
+			//Keep heading in the range leJOS gives.
+			poseHeading = ((poseHeading % 360) + 540) % 360 - 180;
+		}
+		if (travel_p > 0) {
+			poseX += travel_p * Math.cos(Math.toRadians(poseHeading));
+			poseY += travel_p * Math.sin(Math.toRadians(poseHeading));
+		}
+	}
+
+	/*
+	 * Method to send a scan one reading at a time, as NXTProgram.scan.
+	 * Parameters:
+	 * sampleRate_p - Degrees between readings.
+	 * out_p - Stream to the PC.
+	 * Returns:
+	 * None
+	 */
+	private void legacyScan(int sampleRate_p, DataOutputStream out_p) throws IOException {
+		for (int j = 0; j < 360 / sampleRate_p; j++) {
+			out_p.writeInt(getReading(j * sampleRate_p));
+			out_p.flush();
+		}
+		sensorAngle = 0;
+	}
+
+	/*
+	 * Method to send a scan in frames, as NXTProgram.framedScan.
+	 * Parameters:
+	 * sampleRate_p - Degrees between readings.
+	 * valueBytes_p - Bytes per reading, 2 or 4.
+	 * direction_p - Sweep direction, 1 or -1.
+	 * out_p - Stream to the PC.
+	 * Returns:
+	 * None
+	 */
+	private void framedScan(int sampleRate_p, int valueBytes_p, int direction_p, DataOutputStream out_p)
+			throws IOException {
+		int arraySize = 360 / sampleRate_p;
+		byte[] frame = new byte[NXTLink.FRAME_BYTES];
+		int pos = 0;
+		sensorAngle = (direction_p > 0) ? 0 : 360;
+		for (int j = 0; j < arraySize; j++) {
+			int value = getReading(sensorAngle);
+			if (valueBytes_p == 4) {
+				frame[pos++] = (byte)(value >> 24);
+				frame[pos++] = (byte)(value >> 16);
+			}
+			frame[pos++] = (byte)(value >> 8);
+			frame[pos++] = (byte)value;
+			if ((pos + valueBytes_p > NXTLink.FRAME_BYTES) || (j == arraySize - 1)) {
+				sendFrame(frame, pos, valueBytes_p, out_p);
+				pos = 0;
+			}
+			sensorAngle += sampleRate_p * direction_p;
+		}
+	}
+
+	/*
+	 * Method to send a continuous scan, as NXTProgram.continuousScan, with
+	 * readings READ_RATE times a second of simulated time.
+	 * Parameters:
+	 * sweepSpeed_p - Sweep speed in degrees per second.
+	 * direction_p - Sweep direction, 1 or -1.
+	 * out_p - Stream to the PC.
+	 * Returns:
+	 * None
+	 */
+	private void continuousScan(int sweepSpeed_p, int direction_p, DataOutputStream out_p) throws IOException {
+		byte[] frame = new byte[NXTLink.FRAME_BYTES];
+		int pos = 0;
+		int start = (direction_p > 0) ? 0 : 360;
+		int turned = 0;
+		for (int i = 0; turned < 360; i++) {
+			int time = i * 1000 / READ_RATE;
+			turned = Math.min(360, time * sweepSpeed_p / 1000);
+			int tacho = turned * direction_p;
+			int value = getReading(start + tacho);
+			frame[pos++] = (byte)(value >> 8);
+			frame[pos++] = (byte)value;
+			frame[pos++] = (byte)(tacho >> 8);
+			frame[pos++] = (byte)tacho;
+			frame[pos++] = (byte)(time >> 24);
+			frame[pos++] = (byte)(time >> 16);
+			frame[pos++] = (byte)(time >> 8);
+			frame[pos++] = (byte)time;
+			if (pos + NXTLink.SAMPLE_BYTES > NXTLink.FRAME_BYTES) {
+				sendFrame(frame, pos, NXTLink.SAMPLE_BYTES, out_p);
+				pos = 0;
+			}
+		}
+		sensorAngle = start + (360 * direction_p);
+		if (pos > 0) {
+			sendFrame(frame, pos, NXTLink.SAMPLE_BYTES, out_p);
+		}
+		sendFrame(frame, 0, NXTLink.SAMPLE_BYTES, out_p);
+	}
+
+	/*
+	 * Method to send one scan frame and flush it, as NXTProgram.sendFrame.
+	 * Parameters:
+	 * frame_p - Buffer holding item bytes.
+	 * length_p - Number of bytes used in the buffer.
+	 * itemBytes_p - Bytes per item.
+	 * out_p - Stream to the PC.
+	 * Returns:
+	 * None
+	 */
+	private void sendFrame(byte[] frame_p, int length_p, int itemBytes_p, DataOutputStream out_p)
+			throws IOException {
+		Adler32 checksum = new Adler32();
+		checksum.update(frame_p, 0, length_p);
+		out_p.writeInt(length_p / itemBytes_p);
+		out_p.write(frame_p, 0, length_p);
+		out_p.writeInt((int)checksum.getValue());
+		out_p.flush();
+	}
+
+	/*
+	 * Method to take a sensor reading at a sensor angle.
+	 * Parameters:
+	 * sensorAngle_p - Sensor angle clockwise from the robot's heading in degrees.
+	 * Returns:
+	 * Integer representing reading in mm.
+	 */
+	private synchronized int getReading(double sensorAngle_p) {
+		//Robot in map axes: leJOS x and y swapped, x negated, heading reversed.
+		double x = -poseY;
+		double y = poseX;
+		double angle = Math.toRadians(sensorAngle_p - poseHeading);
+		double range = castRay(walls, x, y, Math.sin(angle), Math.cos(angle));
+		if (range >= MAX_RANGE) {
+			return(MAX_RANGE);
+		}
+		range += noise * random.nextGaussian();
+		return((int)Math.round(Math.max(0, Math.min(MAX_RANGE, range))));
+	}
+
+	/*
+	 * Method to find the distance along a ray to the nearest wall.
+	 * Parameters:
+	 * walls_p - Walls the ray can hit.
+	 * x_p - Ray origin X in map axes.
+	 * y_p - Ray origin Y in map axes.
+	 * dx_p - Unit ray direction X.
+	 * dy_p - Unit ray direction Y.
+	 * Returns:
+	 * Double representing distance to nearest wall, infinite if none is hit.
+	 */
+	static double castRay(List<Line2D.Double> walls_p, double x_p, double y_p, double dx_p, double dy_p) {
+		double nearest = Double.POSITIVE_INFINITY;
+		for (Line2D.Double wall : walls_p) {
+			double ex = wall.x2 - wall.x1;
+			double ey = wall.y2 - wall.y1;
+			double denom = (dx_p * ey) - (dy_p * ex);
+			if (denom == 0) {
+				//Ray parallel to wall.
+				continue;
+			}
+			double wx = wall.x1 - x_p;
+			double wy = wall.y1 - y_p;
+			//Distance along ray, and position along wall from 0 to 1.
+			double t = ((wx * ey) - (wy * ex)) / denom;
+			double u = ((wx * dy_p) - (wy * dx_p)) / denom;
+			if ((t >= 0) && (u >= 0) && (u <= 1) && (t < nearest)) {
+				nearest = t;
+			}
+		}
+		return(nearest);
+	}
+
+	/*
+	 * Method to make the floor plan of a rectangular room.
+	 * Parameters:
+	 * width_p - Room width in mm.
+	 * height_p - Room height in mm.
+	 * Returns:
+	 * List of the four walls, centred on the origin.
+	 */
+	public static ArrayList<Line2D.Double> room(double width_p, double height_p) {
+		double w = width_p / 2;
+		double h = height_p / 2;
+		ArrayList<Line2D.Double> walls = new ArrayList<Line2D.Double>();
+		walls.add(new Line2D.Double(-w, -h, w, -h));
+		walls.add(new Line2D.Double(w, -h, w, h));
+		walls.add(new Line2D.Double(w, h, -w, h));
+		walls.add(new Line2D.Double(-w, h, -w, -h));
+		return(walls);
+	}
+
+	/*
+	 * Method to load a floor plan from a text file with one wall per line,
+	 * as x1 y1 x2 y2 in mm. Blank lines and lines starting with # are
+	 * skipped.
+	 * Parameters:
+	 * filepath_p - Path of floor plan file.
+	 * Returns:
+	 * List of walls.
+	 */
+	public static ArrayList<Line2D.Double> loadFloorPlan(String filepath_p) throws IOException {
+		ArrayList<Line2D.Double> walls = new ArrayList<Line2D.Double>();
+		BufferedReader reader = new BufferedReader(new FileReader(filepath_p));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if ((line.length() == 0) || line.startsWith("#")) {
+					continue;
+				}
+				String[] parts = line.split("\\s+");
+				if (parts.length != 4) {
+					throw new IOException("SimulatedNXT > loadFloorPlan - Error: Bad wall \"" + line + "\".");
+				}
+				walls.add(new Line2D.Double(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]),
+											Double.parseDouble(parts[2]), Double.parseDouble(parts[3])));
+			}
+		} catch (NumberFormatException e) {
+			throw new IOException("SimulatedNXT > loadFloorPlan - Error: Bad number in floor plan.");
+		} finally {
+			reader.close();
+		}
+		return(walls);
+	}
+
+	/*
+	 * Main method, serves the protocol over TCP, one connection at a time.
+	 * Each connection starts a fresh robot at the origin.
+	 * Parameters:
+	 * args - Options: -port n, -plan file, -noise mm, -seed n.
+	 * Returns:
+	 * None
+	 */
+	public static void main(String[] args) {
+		int port = DEFAULT_PORT;
+		String plan = null;
+		double noise = 0;
+		long seed = 0;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-port")) {
+					port = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-plan")) {
+					plan = args[++i];
+				} else if (args[i].equals("-noise")) {
+					noise = Double.parseDouble(args[++i]);
+				} else if (args[i].equals("-seed")) {
+					seed = Long.parseLong(args[++i]);
+				} else {
+					throw new IllegalArgumentException(args[i]);
+				}
+			}
+		} catch (RuntimeException e) {
+			System.out.println("Usage: SimulatedNXT [-port n] [-plan file] [-noise mm] [-seed n]");
+			System.exit(2);
+		}
+
+		try {
+			ArrayList<Line2D.Double> walls = (plan == null) ? room(2000, 2000) : loadFloorPlan(plan);
+			ServerSocket server = new ServerSocket(port);
+			System.out.println("SimulatedNXT listening on port " + server.getLocalPort());
+			while (true) {
+				Socket socket = server.accept();
+				socket.setTcpNoDelay(true);
+				SimulatedNXT nxt = new SimulatedNXT(walls);
+				nxt.setNoise(noise);
+				nxt.setSeed(seed);
+				nxt.run(new DataInputStream(new BufferedInputStream(socket.getInputStream())),
+						new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())));
+				socket.close();
+			}
+		} catch (IOException e) {
+			System.out.println("SimulatedNXT > main - Error: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * SimulatedTransport.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Transport to a SimulatedNXT running in the same process.
+ *
+ * The two directions of the link are message pipes: bytes written are held
+ * until flushed, and each flushed message is readable latency ms after the
+ * flush, as a Bluetooth packet would arrive. Messages in flight do not hold
+ * each other up, so pipelined requests overlap their latency as they would
+ * on a real link.
+ */
+
+package mattadshead.swansea3.dissertation.pcapp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.LinkedBlockingQueue;
+
+public class SimulatedTransport implements Transport {
+
+	private SimulatedNXT nxt;
+	//One way delay of each message in ms.
+	private int latency;
+	private DataInputStream inStream;
+	private DataOutputStream outStream;
+	private Pipe toNXT, fromNXT;
+
+	/*
+	 * Class constructor.
+	 * Parameters:
+	 * nxt_p - Simulated NXT to link to.
+	 * latency_p - One way delay of each message in ms.
+	 * Returns:
+	 * None
+	 */
+	public SimulatedTransport(SimulatedNXT nxt_p, int latency_p) {
+		nxt = nxt_p;
+		latency = latency_p;
+	}
+
+	public boolean open() {
+		toNXT = new Pipe(latency);
+		fromNXT = new Pipe(latency);
+		inStream = new DataInputStream(fromNXT.getInputStream());
+		outStream = new DataOutputStream(toNXT.getOutputStream());
+
+		final DataInputStream nxtIn = new DataInputStream(toNXT.getInputStream());
+		final DataOutputStream nxtOut = new DataOutputStream(fromNXT.getOutputStream());
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				nxt.run(nxtIn, nxtOut);
+				fromNXT.close();
+			}
+		}, "Simulated NXT");
+		thread.setDaemon(true);
+		thread.start();
+		return true;
+	}
+
+	public DataInputStream getInputStream() {
+		return(inStream);
+	}
+
+	public DataOutputStream getOutputStream() {
+		return(outStream);
+	}
+
+	public boolean close() {
+		if (toNXT != null) {
+			toNXT.close();
+		}
+		return true;
+	}
+
+	//Message pipe with a fixed delay, one direction of the link.
+	private static class Pipe {
+		//A flushed message and the time it can be read.
+		private static class Message {
+			private long due;
+			private byte[] data;
+
+			public Message(long due_p, byte[] data_p) {
+				due = due_p;
+				data = data_p;
+			}
+		}
+
+		//Empty message marking the end of the stream.
+		private static final Message END = new Message(0, new byte[0]);
+
+		private int latency;
+		private LinkedBlockingQueue<Message> messages = new LinkedBlockingQueue<Message>();
+
+		public Pipe(int latency_p) {
+			latency = latency_p;
+		}
+
+		//Ends the stream once messages already flushed have been read.
+		public void close() {
+			messages.add(END);
+		}
+
+		public OutputStream getOutputStream() {
+			return(new OutputStream() {
+				private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+				public void write(int b_p) {
+					buffer.write(b_p);
+				}
+
+				public void write(byte[] b_p, int off_p, int len_p) {
+					buffer.write(b_p, off_p, len_p);
+				}
+
+				public void flush() {
+					if (buffer.size() > 0) {
+						messages.add(new Message(System.currentTimeMillis() + latency, buffer.toByteArray()));
+						buffer.reset();
+					}
+				}
+
+				public void close() {
+					flush();
+					Pipe.this.close();
+				}
+			});
+		}
+
+		public InputStream getInputStream() {
+			return(new InputStream() {
+				private Message current = null;
+				private int pos = 0;
+
+				//Waits for the next message with bytes left, false at end of stream.
+				private boolean fill() throws IOException {
+					while ((current == null) || (pos == current.data.length)) {
+						if (current == END) {
+							return false;
+						}
+						try {
+							current = messages.take();
+							pos = 0;
+							long wait = current.due - System.currentTimeMillis();
+							if (wait > 0) {
+								Thread.sleep(wait);
+							}
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							throw new IOException("SimulatedTransport > read - Error: Interrupted.");
+						}
+					}
+					return true;
+				}
+
+				public int read() throws IOException {
+					if (!fill()) {
+						return(-1);
+					}
+					return(current.data[pos++] & 0xff);
+				}
+
+				public int read(byte[] b_p, int off_p, int len_p) throws IOException {
+					if (len_p == 0) {
+						return(0);
+					}
+					if (!fill()) {
+						return(-1);
+					}
+					int n = Math.min(len_p, current.data.length - pos);
+					System.arraycopy(current.data, pos, b_p, off_p, n);
+					pos += n;
+					return(n);
+				}
+
+				public int available() {
+					return((current == null) ? 0 : current.data.length - pos);
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ * SnapshotStress.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Stress test of published grid snapshots under concurrent readers and
+ * writers.
+ *
+ * A reference run integrates a fixed series of random scans on one thread
+ * and records a checksum of the cells of every snapshot it publishes. The
+ * same scans are then integrated again with each scan's tiles written by a
+ * pool of workers, while reader threads take snapshots as fast as they can
+ * and checksum them. A snapshot is checked against the reference snapshot
+ * with the same version, so a reader that sees part of a scan, a cell from
+ * a later scan, or versions going backwards is reported. Both integration
+ * modes are run.
+ *
+ * Exits with status 1 if any snapshot fails its check.
+ *
+ * Usage:
+ * java -Djava.awt.headless=true mattadshead.swansea3.dissertation.pcapp.SnapshotStress
+ *     [-scans n] [-writers n] [-readers n] [-seed n]
+ */
+
+package mattadshead.swansea3.dissertation.pcapp;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mattadshead.swansea3.dissertation.structures.ChunkedGridStore;
+import mattadshead.swansea3.dissertation.structures.DataScan;
+import mattadshead.swansea3.dissertation.structures.GridSnapshot;
+import mattadshead.swansea3.dissertation.structures.OGM;
+
+public class SnapshotStress {
+
+	//Symbolic constants for map shape, drawn cell size and scan readings.
+	private static final double	RATIO = 10;
+	private static final int	WIDTH = 200,
+								HEIGHT = 200,
+								CELL_SIZE = 3,
+								MAX_READING = 800;
+
+	private int scans = 100, writers = 4, readers = 4;
+	private long seed = 0;
+
+	//Region checksummed, the extent of the reference map once every scan is in.
+	private int minX, minY, maxX, maxY;
+
+	/*
+	 * Main method, runs the test in both integration modes.
+	 * Parameters:
+	 * args - Options.
+	 * Returns:
+	 * None
+	 */
+	public static void main(String[] args) {
+		SnapshotStress stress = new SnapshotStress();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-scans")) {
+					stress.scans = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-writers")) {
+					stress.writers = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-readers")) {
+					stress.readers = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-seed")) {
+					stress.seed = Long.parseLong(args[++i]);
+				} else {
+					throw new IllegalArgumentException("Unknown option " + args[i] + ".");
+				}
+			}
+			if ((stress.scans < 1) || (stress.writers < 1) || (stress.readers < 1)) {
+				throw new IllegalArgumentException("Scans, writers and readers must be positive.");
+			}
+		} catch (RuntimeException e) {
+			//Bad numbers and missing option values.
+			System.out.println("SnapshotStress > main - Error: " + e.getMessage());
+			System.out.println("Usage: SnapshotStress [-scans n] [-writers n] [-readers n] [-seed n]");
+			System.exit(2);
+		}
+
+		long failures = 0;
+		try {
+			failures += stress.run(true);
+			failures += stress.run(false);
+		} catch (InterruptedException e) {
+			System.out.println("SnapshotStress > main - Error: Interrupted.");
+			System.exit(1);
+		}
+		System.exit((failures == 0) ? 0 : 1);
+	}
+
+	/*
+	 * Method to run the test in one integration mode.
+	 * Parameters:
+	 * ray_p - Whether to ray trace scans rather than evaluate every cell.
+	 * Returns:
+	 * Long representing number of snapshots that failed their check.
+	 */
+	public long run(boolean ray_p) throws InterruptedException {
+		ArrayList<DataScan> scanList = createScans();
+
+		//Reference checksums by snapshot version.
+		OGM reference = createMap(ray_p, null);
+		ArrayList<GridSnapshot> snapshots = new ArrayList<GridSnapshot>();
+		snapshots.add(reference.getSnapshot());
+		for (DataScan scan : scanList) {
+			reference.updateMap(scan);
+			GridSnapshot s = reference.getSnapshot();
+			if (s.getVersion() != snapshots.get(snapshots.size() - 1).getVersion()) {
+				snapshots.add(s);
+			}
+		}
+		GridSnapshot last = snapshots.get(snapshots.size() - 1);
+		minX = last.getMinX();
+		minY = last.getMinY();
+		maxX = minX + last.getWidth() - 1;
+		maxY = minY + last.getHeight() - 1;
+		final long[] expected = new long[(int)last.getVersion() + 1];
+		for (GridSnapshot s : snapshots) {
+			expected[(int)s.getVersion()] = getChecksum(s);
+		}
+
+		//Integrate again on the pool while readers check every snapshot they see.
+		ForkJoinPool pool = new ForkJoinPool(writers);
+		final OGM map = createMap(ray_p, pool);
+		final AtomicBoolean done = new AtomicBoolean(false);
+		final AtomicLong checks = new AtomicLong(), failures = new AtomicLong();
+		Thread[] readerThreads = new Thread[readers];
+		for (int i = 0; i < readers; i++) {
+			readerThreads[i] = new Thread(new Runnable() {
+				public void run() {
+					long lastVersion = -1;
+					//Check once more after the writer finishes, for the final snapshot.
+					boolean finished = false;
+					while (!finished) {
+						finished = done.get();
+						GridSnapshot s = map.getSnapshot();
+						long version = s.getVersion();
+						if ((version < lastVersion) || (version >= expected.length)
+								|| (getChecksum(s) != expected[(int)version])) {
+							if (failures.incrementAndGet() <= 10) {
+								System.out.println("SnapshotStress > run - Error: Snapshot version " + version
+										+ " does not match the reference.");
+							}
+						}
+						lastVersion = version;
+						checks.incrementAndGet();
+					}
+				}
+			}, "snapshot-reader-" + i);
+			readerThreads[i].start();
+		}
+		long start = System.nanoTime();
+		for (DataScan scan : scanList) {
+			map.updateMap(scan);
+		}
+		long integrateTime = System.nanoTime() - start;
+		done.set(true);
+		for (Thread t : readerThreads) {
+			t.join();
+		}
+		pool.shutdown();
+		if (map.getSnapshot().getVersion() != last.getVersion()) {
+			failures.incrementAndGet();
+			System.out.println("SnapshotStress > run - Error: Published " + map.getSnapshot().getVersion()
+					+ " snapshots, reference published " + last.getVersion() + ".");
+		}
+
+		System.out.println(String.format("%s: %d scans on %d writers in %d ms, %d snapshots checked by %d readers, %d failed",
+				ray_p ? "ray" : "full", scans, writers, integrateTime / 1000000, checks.get(), readers, failures.get()));
+		return(failures.get());
+	}
+
+	/*
+	 * Method to create the scans, the same for every run with one seed.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * ArrayList of scans at random poses around the map centre.
+	 */
+	private ArrayList<DataScan> createScans() {
+		Random random = new Random(seed);
+		ArrayList<DataScan> scanList = new ArrayList<DataScan>();
+		double centreX = WIDTH * RATIO / 2, centreY = HEIGHT * RATIO / 2;
+		for (int k = 0; k < scans; k++) {
+			int[] values = new int[72];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = (random.nextInt(10) == 0) ? MAX_READING : random.nextInt(MAX_READING - 100);
+			}
+			//Wander beyond the initial area, so chunks and tiles are added while readers run.
+			Point2D.Double position = new Point2D.Double(centreX + ((random.nextDouble() - 0.5) * WIDTH * RATIO * 2),
+					centreY + ((random.nextDouble() - 0.5) * HEIGHT * RATIO * 2));
+			scanList.add(new DataScan(values, position, random.nextInt(360)));
+		}
+		return(scanList);
+	}
+
+	/*
+	 * Method to create a map set up as Controller.drawMapGrid does.
+	 * Parameters:
+	 * ray_p - Whether to ray trace scans.
+	 * pool_p - Pool to integrate on, null for the calling thread only.
+	 * Returns:
+	 * OGM to integrate into.
+	 */
+	private OGM createMap(boolean ray_p, ForkJoinPool pool_p) {
+		OGM map = new OGM(CELL_SIZE, RATIO, HEIGHT, WIDTH, new ChunkedGridStore(ChunkedGridStore.FLOAT_CELLS));
+		map.setIntegrationMode(ray_p ? map.INTEGRATE_RAY : map.INTEGRATE_FULL);
+		map.setKernelLookup(true);
+		map.setIntegrationPool(pool_p);
+		map.setScanHistory(false);
+		return(map);
+	}
+
+	/*
+	 * Method to checksum the cells of a snapshot over the checked region.
+	 * Parameters:
+	 * cells_p - Snapshot to checksum.
+	 * Returns:
+	 * Long representing checksum.
+	 */
+	private long getChecksum(GridSnapshot cells_p) {
+		long sum = 0;
+		for (int y = minY; y <= maxY; y++) {
+			for (int x = minX; x <= maxX; x++) {
+				sum = (sum * 31) + Double.doubleToLongBits(cells_p.get(x, y));
+			}
+		}
+		return(sum);
+	}
+}
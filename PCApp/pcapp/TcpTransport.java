@@ -0,0 +1,74 @@
+/*
+ * TcpTransport.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Transport over a TCP socket, to an NXT simulator serving on a port (see
+ * SimulatedNXT) or anything else relaying the protocol.
+ *
+ * Nagle's algorithm is turned off, since the protocol flushes whole
+ * messages and waits for the reply.
+ */
+
+package mattadshead.swansea3.dissertation.pcapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+import lejos.pc.comm.NXTCommException;
+
+public class TcpTransport implements Transport {
+
+	private String host;
+	private int port;
+	private Socket socket;
+	private DataInputStream inStream;
+	private DataOutputStream outStream;
+
+	/*
+	 * Class constructor.
+	 * Parameters:
+	 * host_p - Host to connect to.
+	 * port_p - Port to connect to.
+	 * Returns:
+	 * None
+	 */
+	public TcpTransport(String host_p, int port_p) {
+		host = host_p;
+		port = port_p;
+	}
+
+	public boolean open() throws NXTCommException {
+		try {
+			socket = new Socket(host, port);
+			socket.setTcpNoDelay(true);
+			inStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			outStream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			return true;
+		} catch (IOException e) {
+			throw new NXTCommException("TcpTransport > open - Error: Could not connect to " + host + ":" + port + ".");
+		}
+	}
+
+	public DataInputStream getInputStream() {
+		return(inStream);
+	}
+
+	public DataOutputStream getOutputStream() {
+		return(outStream);
+	}
+
+	public boolean close() {
+		try {
+			if (socket != null) socket.close();
+			return true;
+		} catch (IOException e) {
+			System.out.println("TcpTransport > close - Error: Socket close failed.");
+			return false;
+		}
+	}
+}
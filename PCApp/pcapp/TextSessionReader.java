@@ -0,0 +1,107 @@
+/*
+ * TextSessionReader.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Reader for session files in the original text format.
+ *
+ * The text format stores one value per line. Each record is a scan (sample
+ * rate, number of readings, readings, x, y, heading) followed by the move
+ * command made after it (rotation, travel, odometry x, y, heading).
+ */
+
+package mattadshead.swansea3.dissertation.pcapp;
+
+import java.awt.geom.Point2D;
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+
+import mattadshead.swansea3.dissertation.structures.DataScan;
+import mattadshead.swansea3.dissertation.structures.MoveCommand;
+
+public class TextSessionReader implements SessionReader {
+	//Reader for session file.
+	private BufferedReader in;
+	//Last scan read, and the move command read with it.
+	private DataScan scan;
+	private MoveCommand command;
+	//Whether the command read with the last scan is still to be returned.
+	private boolean commandPending = false;
+	
+	/*
+	 * Class constructor.
+	 * Parameters:
+	 * filepath_p - Path of text session file.
+	 * Returns:
+	 * None
+	 */
+	public TextSessionReader(String filepath_p) throws FileNotFoundException {
+		//Create buffered reader for file reading using file path.
+		in = new BufferedReader(new FileReader(filepath_p));
+	}
+	
+	/*
+	 * Method to read the next record. Lines that are not numbers throw
+	 * NumberFormatException.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Integer representing record type, -1 at the end of the file.
+	 */
+	public int next() throws IOException {
+		if (commandPending) {
+			commandPending = false;
+			return(SessionJournal.COMMAND_RECORD);
+		}
+		//Get first line, null signals end of file.
+		String line = in.readLine();
+		if (line == null) {
+			return(-1);
+		}
+		//Get sample rate value, negative for a reverse sweep, and number of readings in scan from file.
+		int rate = Integer.parseInt(line);
+		int numVals = Integer.parseInt(in.readLine());
+		//Initialise values array.
+		int[] vals = new int[numVals];
+		//Get each value from file and add to values array.
+		for (int i = 0; i < numVals; i++) {
+			vals[i] = Integer.parseInt(in.readLine());
+		}
+		//Get coordinates from file and use to create point object.
+		Point2D.Double position = new Point2D.Double(
+				Double.parseDouble(in.readLine()),
+				Double.parseDouble(in.readLine()));
+		//Get heading value from file.
+		double heading = Double.parseDouble(in.readLine());
+		//Create data scan object using values, position and heading.
+		scan = new DataScan(vals, position, heading);
+		if (rate < 0) {
+			scan.setSweepDirection(DataScan.SWEEP_REVERSE);
+		}
+		//Get move command made after scan.
+		command = new MoveCommand(Integer.parseInt(in.readLine()), Integer.parseInt(in.readLine()));
+		command.setNewX(Double.parseDouble(in.readLine()));
+		command.setNewY(Double.parseDouble(in.readLine()));
+		command.setNewHeading(Double.parseDouble(in.readLine()));
+		commandPending = true;
+		return(SessionJournal.SCAN_RECORD);
+	}
+	
+	public DataScan getScan() {
+		return(scan);
+	}
+	
+	public MoveCommand getCommand() {
+		return(command);
+	}
+	
+	public void close() {
+		try {
+			in.close();
+		} catch (IOException e) {
+			System.out.println("TextSessionReader > close - Error: Closing file failed.");
+		}
+	}
+}
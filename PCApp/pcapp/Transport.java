@@ -0,0 +1,58 @@
+/*
+ * Transport.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Interface for links carrying the NXT protocol.
+ *
+ * The controller speaks the protocol over a pair of data streams, and a
+ * transport is whatever supplies them: Bluetooth to a real NXT, TCP to an
+ * NXT simulator or relay, or a simulator in the same process. Everything
+ * above the streams is the same for all of them.
+ */
+
+package mattadshead.swansea3.dissertation.pcapp;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import lejos.pc.comm.NXTCommException;
+
+public interface Transport {
+
+	/*
+	 * Method to open the link.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean open() throws NXTCommException;
+
+	/*
+	 * Accessor method for stream from the NXT, valid once open.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Data input stream object.
+	 */
+	public DataInputStream getInputStream();
+
+	/*
+	 * Accessor method for stream to the NXT, valid once open.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Data output stream object.
+	 */
+	public DataOutputStream getOutputStream();
+
+	/*
+	 * Method to close the link and its streams.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean close();
+}
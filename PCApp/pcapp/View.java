@@ -46,6 +46,9 @@ public class View extends JFrame {
 	//Pointer to controller object.
 	private Controller controller;
 	
+	//Mapping pipeline running off the event thread, null if none has run.
+	private MappingPipeline pipeline;
+	
 	/*
 	 * Class constructor.
 	 * Parameters:
@@ -358,6 +361,13 @@ public class View extends JFrame {
 		public void actionPerformed(ActionEvent ae) {
 			//If action was clicking the confirm button.
 			if (ae.getSource() == confirmButton) {
+				//While a pipeline is running the confirm button cancels it.
+				if ((pipeline != null) && pipeline.isRunning()) {
+					pipeline.cancel();
+					confirmButton.setEnabled(false);
+					title.setText("Cancelling...");
+					return;
+				}
 				//Perform function which is selected in dropdown box.
 				try {
 					int[] varsint;
@@ -406,7 +416,7 @@ public class View extends JFrame {
 									controller.bluetoothSetup();
 								}
 								controller.drawMapGrid(size, ratio, height, width);
-								controller.simpleMap(rate);
+								startPipeline(controller.startSimpleMap(rate, new PipelineListener()));
 								break;
 						//Bayesian Map
 						case 5:	varsint = variablePanel.getVariableIntegers();
@@ -419,16 +429,16 @@ public class View extends JFrame {
 									controller.bluetoothSetup();
 								}
 								controller.drawMapGrid(size, ratio, height, width);
-								controller.bayesianMap(rate);
+								startPipeline(controller.startBayesianMap(rate, new PipelineListener()));
 								break;
 						//Save Session
-						case 6:	controller.saveSession();
+						case 6:	controller.startSaveSession();
 								break;
 						//Load Session		
 						case 7: String filepath = variablePanel.getVariableStrings()[0];
 								if (controller.checkIfMapPresent()) {
 									OGM map = (OGM)controller.getModel().getVisualisation();
-									controller.loadSession(map, filepath);
+									startPipeline(controller.startLoadSession(map, filepath, new PipelineListener()));
 								}
 								break;
 						//Close Connection
@@ -467,6 +477,62 @@ public class View extends JFrame {
 			if (ae.getSource() == functionSelect) {
 				insertVariablePanel(createVariablePanel(functionSelect.getSelectedIndex()));
 			}
-		}	
+		}
+		
+		/*
+		 * Method to show a started pipeline in the GUI.
+		 * Parameters:
+		 * pipeline_p - Started pipeline, null if it could not be started.
+		 * Returns:
+		 * None
+		 */
+		private void startPipeline(MappingPipeline pipeline_p) {
+			if (pipeline_p != null) {
+				pipeline = pipeline_p;
+				confirmButton.setText("Cancel");
+				title.setText("Mapping...");
+			}
+		}
+	}
+	
+	//Pipeline listener inner class to show mapping progress, called on the event thread.
+	public class PipelineListener implements MappingPipeline.ProgressListener {
+		
+		public void progress(int read_p, int integrated_p) {
+			title.setText("Mapping: " + read_p + " scans read, " + integrated_p + " integrated");
+		}
+		
+		public void finished(boolean cancelled_p, Exception error_p) {
+			//Restore title and confirm button.
+			title.setText(WINDOW_TITLE);
+			confirmButton.setText("Confirm");
+			confirmButton.setEnabled(true);
+			//Report errors as for functions run on the event thread.
+			if (error_p instanceof NumberFormatException) {
+				JOptionPane.showMessageDialog(
+						mappingPanel,
+					    "Invalid variable input.",
+					    "Error",
+					    JOptionPane.ERROR_MESSAGE);
+				System.out.println(error_p);
+			} else if (error_p instanceof NXTCommException) {
+				JOptionPane.showMessageDialog(
+						mappingPanel,
+					    "Unable to connect to NXT robot.\n"
+					    + "Are you sure the robot is in range and switched on?",
+					    "Error",
+					    JOptionPane.ERROR_MESSAGE);
+			} else if (error_p instanceof IOException) {
+				JOptionPane.showMessageDialog(
+						mappingPanel,
+					    "Error reading file.",
+					    "Error",
+					    JOptionPane.ERROR_MESSAGE);
+			} else if (error_p instanceof IndexOutOfBoundsException) {
+				System.out.println("View > PipelineListener - Error: Reading out of bounds.");
+			} else if (error_p != null) {
+				System.out.println("View > PipelineListener - Error: " + error_p);
+			}
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,619 @@
+/*
+ * WorldGenerator.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Generator of synthetic mapping sessions for stress testing.
+ *
+ * A world is a grid of square rooms. Rooms next to each other in a row
+ * share a wall with a door in the middle, and rows are joined by corridors
+ * running the width of the world, with a door from every room onto the
+ * corridor beside it. Clutter is square boxes scattered over each room's
+ * floor, up to a chosen fraction of it, kept off the cross through the room
+ * centre so the robot's path stays clear.
+ *
+ * The robot snakes through the rooms centre to centre, turning at each
+ * centre and scanning every step. A single room is toured along its centre
+ * cross instead. At the end of the route it turns back and retraces it
+ * until the requested number of scans is taken. Readings are ray cast from
+ * the true pose as in SimulatedNXT, with optional Gaussian noise.
+ *
+ * Scans and moves are written as a session, binary, or a journal when the
+ * path ends .snj, which streams so very long sessions need little memory.
+ * Scan positions are the true positions in the coordinates of a map just
+ * big enough to hold the world with the start at its centre, as OGM
+ * records them, and move commands carry the move from the start position.
+ * The world itself is written as a ground truth map checkpoint of that
+ * shape: walls and boxes are occupied, the floor is free, and cells outside
+ * the world are left at the prior. The checkpoint uses the same cell
+ * indexing as OGM, so it can be compared cell for cell with a map of its
+ * shape replayed from the session at the same ratio.
+ *
+ * The same seed and settings always give the same world and session.
+ *
+ * Usage:
+ * java mattadshead.swansea3.dissertation.pcapp.WorldGenerator
+ *     [-rooms colsxrows] [-room mm] [-corridor mm] [-door mm]
+ *     [-clutter fraction] [-box mm] [-scans n] [-rate deg] [-step mm]
+ *     [-noise mm] [-ratio mm] [-seed n] session truth.ckpt
+ */
+
+package mattadshead.swansea3.dissertation.pcapp;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import mattadshead.swansea3.dissertation.structures.ChunkedGridStore;
+import mattadshead.swansea3.dissertation.structures.DataScan;
+import mattadshead.swansea3.dissertation.structures.MapCheckpoint;
+import mattadshead.swansea3.dissertation.structures.MoveCommand;
+
+public class WorldGenerator {
+
+	//Symbolic constant for half width of the clear cross through each room in mm.
+	private static final double CLEARANCE = 300;
+	//Symbolic constants for log odds of ground truth occupied and free cells.
+	public static final double	OCCUPIED = Math.log(0.999 / 0.001),
+								FREE = -OCCUPIED;
+
+	//World shape.
+	private int roomsX = 2, roomsY = 2;
+	private double roomSize = 2000, corridorWidth = 1000, doorWidth = 600;
+	//Fraction of room floor covered by clutter, and clutter box side.
+	private double clutter = 0.05, boxSize = 200;
+	//Session shape.
+	private int scans = 100, sampleRate = 5;
+	private double stepLength = 200, noise = 5;
+	//Real world size of a ground truth cell.
+	private double ratio = 10;
+	private long seed = 0;
+
+	//Generated world.
+	private ArrayList<Line2D.Double> walls;
+	private ArrayList<Rectangle2D.Double> boxes;
+	private double worldWidth, worldHeight;
+	private ArrayList<Point2D.Double> route;
+	//Shape of the ground truth map in cells, and the move from world
+	//coordinates to its coordinates.
+	private int truthWidth, truthHeight;
+	private double shiftX, shiftY;
+	//Walls by square bucket of side SimulatedNXT.MAX_RANGE, so a scan only
+	//casts against walls in the buckets around it.
+	private HashMap<Long, ArrayList<Line2D.Double>> buckets;
+
+	/*
+	 * Main method, generates one session and its ground truth.
+	 * Parameters:
+	 * args - Options, then session path and ground truth checkpoint path.
+	 * Returns:
+	 * None
+	 */
+	public static void main(String[] args) {
+		WorldGenerator generator = new WorldGenerator();
+		ArrayList<String> paths = new ArrayList<String>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-rooms")) {
+					String[] parts = args[++i].split("x");
+					generator.setRooms(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+				} else if (args[i].equals("-room")) {
+					generator.roomSize = Double.parseDouble(args[++i]);
+				} else if (args[i].equals("-corridor")) {
+					generator.corridorWidth = Double.parseDouble(args[++i]);
+				} else if (args[i].equals("-door")) {
+					generator.doorWidth = Double.parseDouble(args[++i]);
+				} else if (args[i].equals("-clutter")) {
+					generator.clutter = Double.parseDouble(args[++i]);
+				} else if (args[i].equals("-box")) {
+					generator.boxSize = Double.parseDouble(args[++i]);
+				} else if (args[i].equals("-scans")) {
+					generator.scans = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-rate")) {
+					generator.sampleRate = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-step")) {
+					generator.stepLength = Double.parseDouble(args[++i]);
+				} else if (args[i].equals("-noise")) {
+					generator.noise = Double.parseDouble(args[++i]);
+				} else if (args[i].equals("-ratio")) {
+					generator.ratio = Double.parseDouble(args[++i]);
+				} else if (args[i].equals("-seed")) {
+					generator.seed = Long.parseLong(args[++i]);
+				} else if (args[i].startsWith("-")) {
+					throw new IllegalArgumentException("Unknown option " + args[i] + ".");
+				} else {
+					paths.add(args[i]);
+				}
+			}
+			if (paths.size() != 2) {
+				throw new IllegalArgumentException("Give a session path and a ground truth path.");
+			}
+			generator.check();
+		} catch (RuntimeException e) {
+			//Bad numbers and missing option values.
+			System.out.println("WorldGenerator > main - Error: " + e.getMessage());
+			System.out.println("Usage: WorldGenerator [-rooms colsxrows] [-room mm] [-corridor mm] [-door mm] "
+					+ "[-clutter fraction] [-box mm] [-scans n] [-rate deg] [-step mm] [-noise mm] "
+					+ "[-ratio mm] [-seed n] session truth.ckpt");
+			System.exit(2);
+		}
+
+		try {
+			long start = System.nanoTime();
+			generator.writeSession(paths.get(0));
+			long truth = generator.writeGroundTruth(paths.get(1));
+			System.out.println(String.format("World %.0f x %.0f mm, %d walls, %d boxes, %d scans, "
+					+ "%d truth cells in a %d x %d map, %d ms",
+					generator.worldWidth, generator.worldHeight, generator.walls.size(), generator.boxes.size(),
+					generator.scans, truth, generator.truthWidth, generator.truthHeight,
+					(System.nanoTime() - start) / 1000000));
+		} catch (Exception e) {
+			System.out.println("WorldGenerator > main - Error: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/*
+	 * Mutator method for number of rooms.
+	 * Parameters:
+	 * roomsX_p - Rooms in each row.
+	 * roomsY_p - Rows of rooms.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setRooms(int roomsX_p, int roomsY_p) {
+		roomsX = roomsX_p;
+		roomsY = roomsY_p;
+		walls = null;
+		return true;
+	}
+
+	/*
+	 * Mutator method for room shape.
+	 * Parameters:
+	 * roomSize_p - Room side in mm.
+	 * corridorWidth_p - Width of corridors between rows in mm, 0 for rows
+	 * that share walls.
+	 * doorWidth_p - Door width in mm.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setRoomShape(double roomSize_p, double corridorWidth_p, double doorWidth_p) {
+		roomSize = roomSize_p;
+		corridorWidth = corridorWidth_p;
+		doorWidth = doorWidth_p;
+		walls = null;
+		return true;
+	}
+
+	/*
+	 * Mutator method for clutter.
+	 * Parameters:
+	 * clutter_p - Fraction of each room's floor to cover with boxes.
+	 * boxSize_p - Box side in mm.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setClutter(double clutter_p, double boxSize_p) {
+		clutter = clutter_p;
+		boxSize = boxSize_p;
+		walls = null;
+		return true;
+	}
+
+	/*
+	 * Mutator method for session shape.
+	 * Parameters:
+	 * scans_p - Number of scans.
+	 * sampleRate_p - Degrees between readings, a factor of 360.
+	 * stepLength_p - Most travel between scans in mm.
+	 * noise_p - Standard deviation of reading noise in mm.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setSession(int scans_p, int sampleRate_p, double stepLength_p, double noise_p) {
+		scans = scans_p;
+		sampleRate = sampleRate_p;
+		stepLength = stepLength_p;
+		noise = noise_p;
+		return true;
+	}
+
+	/*
+	 * Mutator method for ground truth cell size.
+	 * Parameters:
+	 * ratio_p - Real world size of a cell in mm.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setRatio(double ratio_p) {
+		ratio = ratio_p;
+		//Ground truth shape, and so scan positions, depend on the ratio.
+		walls = null;
+		return true;
+	}
+
+	/*
+	 * Mutator method for random seed of world and noise.
+	 * Parameters:
+	 * seed_p - Random seed.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setSeed(long seed_p) {
+		seed = seed_p;
+		walls = null;
+		return true;
+	}
+
+	/*
+	 * Accessor method for walls of the world, generated on first use.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * List of walls in world coordinates.
+	 */
+	public ArrayList<Line2D.Double> getWalls() {
+		buildWorld();
+		return(walls);
+	}
+
+	/*
+	 * Method to check the settings describe a world that can be built.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * None
+	 */
+	private void check() {
+		if ((roomsX < 1) || (roomsY < 1) || (scans < 1) || (stepLength <= 0) || (ratio <= 0)
+				|| (sampleRate < 1) || (360 % sampleRate != 0)) {
+			throw new IllegalArgumentException("Rooms, scans, step and ratio must be positive "
+					+ "and the rate a factor of 360.");
+		}
+		if ((doorWidth <= 0) || (doorWidth >= roomSize) || (corridorWidth < 0) || (clutter < 0) || (clutter >= 1)) {
+			throw new IllegalArgumentException("Doors must fit in rooms and clutter be a fraction below 1.");
+		}
+	}
+
+	/*
+	 * Method to generate the walls, boxes and route of the world, if not
+	 * already generated.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * None
+	 */
+	private void buildWorld() {
+		if (walls != null) {
+			return;
+		}
+		check();
+		walls = new ArrayList<Line2D.Double>();
+		boxes = new ArrayList<Rectangle2D.Double>();
+		route = new ArrayList<Point2D.Double>();
+		Random random = new Random(seed);
+		double rowPitch = roomSize + corridorWidth;
+		worldWidth = roomsX * roomSize;
+		worldHeight = (roomsY * roomSize) + ((roomsY - 1) * corridorWidth);
+
+		for (int r = 0; r < roomsY; r++) {
+			double y0 = r * rowPitch;
+			double y1 = y0 + roomSize;
+			for (int c = 0; c < roomsX; c++) {
+				double x0 = c * roomSize;
+				double x1 = x0 + roomSize;
+				double cx = x0 + (roomSize / 2);
+				double cy = y0 + (roomSize / 2);
+				//Bottom wall, with a door unless on the world edge. Without
+				//corridors it is the top wall of the room below.
+				addWall(x0, y0, x1, y0, (r > 0) ? cx : Double.NaN);
+				if ((corridorWidth > 0) || (r == roomsY - 1)) {
+					addWall(x0, y1, x1, y1, (r < roomsY - 1) ? cx : Double.NaN);
+				}
+				//Left wall, shared with the room before in the row.
+				addWall(x0, y0, x0, y1, (c > 0) ? cy : Double.NaN);
+				if (c == roomsX - 1) {
+					addWall(x1, y0, x1, y1, Double.NaN);
+				}
+				addClutter(random, x0, y0, cx, cy);
+			}
+			//Ends of the corridor above the row.
+			if ((r < roomsY - 1) && (corridorWidth > 0)) {
+				addWall(0, y1, 0, y1 + corridorWidth, Double.NaN);
+				addWall(worldWidth, y1, worldWidth, y1 + corridorWidth, Double.NaN);
+			}
+		}
+
+		//Snake through room centres, or tour the cross of a single room.
+		double half = roomSize / 2;
+		if ((roomsX == 1) && (roomsY == 1)) {
+			double reach = half - Math.min(half / 2, CLEARANCE);
+			double[][] tour = {{0, 0}, {0, reach}, {0, 0}, {reach, 0}, {0, 0}, {0, -reach}, {0, 0}, {-reach, 0}};
+			for (double[] t : tour) {
+				route.add(new Point2D.Double(half + t[0], half + t[1]));
+			}
+		} else {
+			for (int r = 0; r < roomsY; r++) {
+				for (int i = 0; i < roomsX; i++) {
+					int c = (r % 2 == 0) ? i : (roomsX - 1 - i);
+					route.add(new Point2D.Double((c * roomSize) + half, (r * rowPitch) + half));
+				}
+			}
+		}
+
+		//Centre the ground truth map on the start, as OGM centres the start pose.
+		Point2D.Double start = route.get(0);
+		truthWidth = 2 * (int)Math.ceil(Math.max(start.getX(), worldWidth - start.getX()) / ratio);
+		truthHeight = 2 * (int)Math.ceil(Math.max(start.getY(), worldHeight - start.getY()) / ratio);
+		shiftX = (truthWidth * ratio / 2) - start.getX();
+		shiftY = (truthHeight * ratio / 2) - start.getY();
+
+		//Bucket walls for ray casting.
+		buckets = new HashMap<Long, ArrayList<Line2D.Double>>();
+		for (Line2D.Double wall : walls) {
+			int bx0 = bucketOf(Math.min(wall.x1, wall.x2));
+			int bx1 = bucketOf(Math.max(wall.x1, wall.x2));
+			int by0 = bucketOf(Math.min(wall.y1, wall.y2));
+			int by1 = bucketOf(Math.max(wall.y1, wall.y2));
+			for (int bx = bx0; bx <= bx1; bx++) {
+				for (int by = by0; by <= by1; by++) {
+					Long key = bucketKey(bx, by);
+					ArrayList<Line2D.Double> list = buckets.get(key);
+					if (list == null) {
+						list = new ArrayList<Line2D.Double>();
+						buckets.put(key, list);
+					}
+					list.add(wall);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Method to add a wall, with a door in it if a door centre is given.
+	 * Parameters:
+	 * x1_p - Start X.
+	 * y1_p - Start Y.
+	 * x2_p - End X.
+	 * y2_p - End Y.
+	 * door_p - Door centre along the wall's varying axis, NaN for no door.
+	 * Returns:
+	 * None
+	 */
+	private void addWall(double x1_p, double y1_p, double x2_p, double y2_p, double door_p) {
+		if (Double.isNaN(door_p)) {
+			walls.add(new Line2D.Double(x1_p, y1_p, x2_p, y2_p));
+			return;
+		}
+		double d = doorWidth / 2;
+		if (y1_p == y2_p) {
+			walls.add(new Line2D.Double(x1_p, y1_p, door_p - d, y2_p));
+			walls.add(new Line2D.Double(door_p + d, y1_p, x2_p, y2_p));
+		} else {
+			walls.add(new Line2D.Double(x1_p, y1_p, x2_p, door_p - d));
+			walls.add(new Line2D.Double(x1_p, door_p + d, x2_p, y2_p));
+		}
+	}
+
+	/*
+	 * Method to scatter boxes over a room's floor, off its centre cross.
+	 * Parameters:
+	 * random_p - Random source.
+	 * x0_p - Room left X.
+	 * y0_p - Room bottom Y.
+	 * cx_p - Room centre X.
+	 * cy_p - Room centre Y.
+	 * Returns:
+	 * None
+	 */
+	private void addClutter(Random random_p, double x0_p, double y0_p, double cx_p, double cy_p) {
+		int count = (int)Math.round(clutter * roomSize * roomSize / (boxSize * boxSize));
+		double span = roomSize - boxSize;
+		//Give up on boxes that keep landing on the cross in small rooms.
+		for (int placed = 0, tries = 0; (placed < count) && (tries < count * 20); tries++) {
+			double bx = x0_p + (random_p.nextDouble() * span);
+			double by = y0_p + (random_p.nextDouble() * span);
+			if (((bx + boxSize > cx_p - CLEARANCE) && (bx < cx_p + CLEARANCE))
+					|| ((by + boxSize > cy_p - CLEARANCE) && (by < cy_p + CLEARANCE))) {
+				continue;
+			}
+			boxes.add(new Rectangle2D.Double(bx, by, boxSize, boxSize));
+			walls.add(new Line2D.Double(bx, by, bx + boxSize, by));
+			walls.add(new Line2D.Double(bx + boxSize, by, bx + boxSize, by + boxSize));
+			walls.add(new Line2D.Double(bx + boxSize, by + boxSize, bx, by + boxSize));
+			walls.add(new Line2D.Double(bx, by + boxSize, bx, by));
+			placed++;
+		}
+	}
+
+	private static int bucketOf(double v_p) {
+		return((int)Math.floor(v_p / SimulatedNXT.MAX_RANGE));
+	}
+
+	private static Long bucketKey(int bx_p, int by_p) {
+		return(Long.valueOf(((long)bx_p << 32) | (by_p & 0xffffffffL)));
+	}
+
+	/*
+	 * Method to take a scan from a pose.
+	 * Parameters:
+	 * x_p - Position X.
+	 * y_p - Position Y.
+	 * heading_p - Heading in degrees clockwise from +Y, as OGM uses.
+	 * random_p - Source of reading noise.
+	 * Returns:
+	 * DataScan at the pose.
+	 */
+	private DataScan takeScan(double x_p, double y_p, double heading_p, Random random_p) {
+		//Walls in the buckets the sensor can reach.
+		HashSet<Line2D.Double> near = new HashSet<Line2D.Double>();
+		int bx = bucketOf(x_p);
+		int by = bucketOf(y_p);
+		for (int i = bx - 1; i <= bx + 1; i++) {
+			for (int j = by - 1; j <= by + 1; j++) {
+				ArrayList<Line2D.Double> list = buckets.get(bucketKey(i, j));
+				if (list != null) {
+					near.addAll(list);
+				}
+			}
+		}
+		List<Line2D.Double> candidates = new ArrayList<Line2D.Double>(near);
+
+		int[] values = new int[360 / sampleRate];
+		for (int j = 0; j < values.length; j++) {
+			double angle = Math.toRadians(heading_p + (j * sampleRate));
+			double range = SimulatedNXT.castRay(candidates, x_p, y_p, Math.sin(angle), Math.cos(angle));
+			if (range >= SimulatedNXT.MAX_RANGE) {
+				values[j] = SimulatedNXT.MAX_RANGE;
+			} else {
+				range += noise * random_p.nextGaussian();
+				values[j] = (int)Math.round(Math.max(0, Math.min(SimulatedNXT.MAX_RANGE, range)));
+			}
+		}
+		return(new DataScan(values, new Point2D.Double(x_p + shiftX, y_p + shiftY), heading_p));
+	}
+
+	/*
+	 * Method to generate the session and write it to file.
+	 * Parameters:
+	 * filepath_p - Path of session file, a journal if it ends .snj,
+	 * otherwise binary.
+	 * Returns:
+	 * None
+	 */
+	public void writeSession(String filepath_p) throws IOException, InterruptedException {
+		buildWorld();
+		boolean stream = filepath_p.endsWith(".snj");
+		SessionJournal journal = stream ? SessionJournal.create(filepath_p) : null;
+		ArrayList<DataScan> scanList = new ArrayList<DataScan>();
+		ArrayList<MoveCommand> commandList = new ArrayList<MoveCommand>();
+		Random random = new Random(seed + 1);
+
+		Point2D.Double start = route.get(0);
+		double x = start.getX();
+		double y = start.getY();
+		int heading = 0;
+		//Next route point, and the way along the route.
+		int target = 1;
+		int step = 1;
+		try {
+			for (int k = 0; k < scans; k++) {
+				DataScan scan = takeScan(x, y, heading, random);
+
+				//Turn to face the next route point and step towards it,
+				//moving on along the route once there.
+				int rotate = 0;
+				int travel = 0;
+				if ((k < scans - 1) && (route.size() > 1)) {
+					double dx = route.get(target).getX() - x;
+					double dy = route.get(target).getY() - y;
+					double distance = Math.sqrt((dx * dx) + (dy * dy));
+					if (distance < 1) {
+						if ((target + step < 0) || (target + step >= route.size())) {
+							step = -step;
+						}
+						target += step;
+						dx = route.get(target).getX() - x;
+						dy = route.get(target).getY() - y;
+						distance = Math.sqrt((dx * dx) + (dy * dy));
+					}
+					int bearing = (int)Math.round(Math.toDegrees(Math.atan2(dx, dy)));
+					rotate = (((bearing - heading) % 360) + 360) % 360;
+					travel = (int)Math.round(Math.min(stepLength, distance));
+					heading = (heading + rotate) % 360;
+					if (travel >= distance - 1) {
+						//Land on the route point so rounding does not build up.
+						x = route.get(target).getX();
+						y = route.get(target).getY();
+					} else {
+						x += travel * Math.sin(Math.toRadians(heading));
+						y += travel * Math.cos(Math.toRadians(heading));
+					}
+				}
+				MoveCommand command = new MoveCommand(rotate, travel);
+				command.setNewX(x - start.getX());
+				command.setNewY(y - start.getY());
+				command.setNewHeading(heading);
+
+				if (stream) {
+					journal.append(scan);
+					journal.append(command);
+				} else {
+					scanList.add(scan);
+					commandList.add(command);
+				}
+			}
+		} finally {
+			if (stream) {
+				journal.close();
+			}
+		}
+		if (!stream) {
+			BinarySession.write(filepath_p, scanList, commandList);
+		}
+	}
+
+	/*
+	 * Method to write the ground truth map of the world as a checkpoint.
+	 * Parameters:
+	 * filepath_p - Path of checkpoint file.
+	 * Returns:
+	 * Long representing number of cells set.
+	 */
+	public long writeGroundTruth(String filepath_p) throws IOException {
+		buildWorld();
+		ChunkedGridStore cells = new ChunkedGridStore();
+		//Store index i holds the cell centred at (i + 0.5) * ratio, as in OGM.
+		int i0 = truthCell(0, shiftX), i1 = truthCell(worldWidth, shiftX);
+		int j0 = truthCell(0, shiftY), j1 = truthCell(worldHeight, shiftY);
+		long count = 0;
+		for (int j = j0; j < j1; j++) {
+			for (int i = i0; i < i1; i++) {
+				cells.set(i, j, FREE);
+				count++;
+			}
+		}
+		for (Rectangle2D.Double box : boxes) {
+			for (int j = truthCell(box.getMinY(), shiftY); j <= truthCell(box.getMaxY(), shiftY); j++) {
+				for (int i = truthCell(box.getMinX(), shiftX); i <= truthCell(box.getMaxX(), shiftX); i++) {
+					cells.set(i, j, OCCUPIED);
+				}
+			}
+		}
+		//Mark every cell a wall passes through, sampling at half a cell.
+		for (Line2D.Double wall : walls) {
+			double length = wall.getP1().distance(wall.getP2());
+			int samples = (int)Math.ceil(length / (ratio / 2));
+			for (int s = 0; s <= samples; s++) {
+				double t = (double)s / samples;
+				double wx = wall.x1 + (t * (wall.x2 - wall.x1));
+				double wy = wall.y1 + (t * (wall.y2 - wall.y1));
+				cells.set(truthCell(wx, shiftX), truthCell(wy, shiftY), OCCUPIED);
+			}
+		}
+		Point2D.Double start = new Point2D.Double(truthWidth * ratio / 2, truthHeight * ratio / 2);
+		MapCheckpoint truth = new MapCheckpoint(cells, ratio, truthWidth, truthHeight, 0, 0,
+				start, 0, new ArrayList<Line2D.Double>());
+		truth.write(filepath_p);
+		return(count);
+	}
+
+	/*
+	 * Method to get the ground truth cell holding a world coordinate.
+	 * Parameters:
+	 * v_p - World X or Y coordinate.
+	 * shift_p - Move from world to ground truth coordinates on that axis.
+	 * Returns:
+	 * Integer representing cell index.
+	 */
+	private int truthCell(double v_p, double shift_p) {
+		return((int)Math.floor((v_p + shift_p) / ratio));
+	}
+}
@@ -0,0 +1,335 @@
+/*
+ * ChunkedGridStore.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ * 
+ * Unbounded grid store made of fixed-size square chunks of cells.
+ * 
+ * Chunks are allocated the first time one of their cells is written and are
+ * kept in a hash table keyed by chunk coordinates, so memory is only used where
+ * the robot has observed. Cells of chunks that do not exist read as 0, the
+ * log odds of the 0.5 prior. The map grows in any direction, including
+ * negative indices, without moving the chunks already allocated. The extent
+ * reported is the block of chunks allocated so far.
+ * 
+ * Chunks hold doubles, floats or quantized shorts, chosen when the store is
+ * made. Float chunks halve the memory of double chunks and short chunks
+ * quarter it, with the precision of FloatGridStore and ShortGridStore.
+ * 
+ * Chunks are found through an open addressing table keyed by the packed
+ * long chunk coordinates, so a lookup is a hash and an array probe with no
+ * boxing or allocation. Lookups take no lock, so parallel integration tiles
+ * only meet on the table when one of them allocates a chunk, which is done
+ * under the store's lock.
+ */
+
+package mattadshead.swansea3.dissertation.structures;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class ChunkedGridStore implements GridStore {
+	
+	//Symbolic constants for cell precision.
+	public static final int	DOUBLE_CELLS = 0,
+							FLOAT_CELLS = 1,
+							SHORT_CELLS = 2;
+	
+	//Symbolic constants for chunk size, a power of two.
+	private final int	CHUNK_SHIFT = 6,
+						CHUNK_SIZE = 1 << CHUNK_SHIFT,
+						CHUNK_MASK = CHUNK_SIZE - 1;
+	//Symbolic constant for first table size, a power of two.
+	private final int	TABLE_SIZE = 64;
+	//Symbolic constant for key of an empty table slot. Chunk columns are cell
+	//columns shifted by CHUNK_SHIFT, so no chunk key has this top half.
+	private static final long	EMPTY = Long.MIN_VALUE;
+	
+	//Precision of cells, and bytes each one uses.
+	private final int precision, cellBytes;
+	
+	//Table of chunks, replaced by a larger copy when half full.
+	private volatile ChunkTable table = new ChunkTable(TABLE_SIZE);
+	//Number of chunks, written under the store's lock.
+	private volatile int chunkCount = 0;
+	
+	//Extent of allocated chunks in chunk coordinates, guarded by the store.
+	private int minChunkX = 0, minChunkY = 0, maxChunkX = -1, maxChunkY = -1;
+	
+	/*
+	 * Class constructor for a store of doubles.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * None
+	 */
+	public ChunkedGridStore() {
+		this(DOUBLE_CELLS);
+	}
+	
+	/*
+	 * Class constructor.
+	 * Parameters:
+	 * precision_p - DOUBLE_CELLS, FLOAT_CELLS or SHORT_CELLS.
+	 * Returns:
+	 * None
+	 */
+	public ChunkedGridStore(int precision_p) {
+		if (precision_p == FLOAT_CELLS) {
+			cellBytes = 4;
+		} else if (precision_p == SHORT_CELLS) {
+			cellBytes = 2;
+		} else if (precision_p == DOUBLE_CELLS) {
+			cellBytes = 8;
+		} else {
+			throw new IllegalArgumentException("ChunkedGridStore - Error: Unknown cell precision " + precision_p + ".");
+		}
+		precision = precision_p;
+	}
+	
+	public double get(int x_p, int y_p) {
+		Object chunk = getChunk(x_p, y_p, false);
+		if (chunk == null) {
+			return 0;
+		}
+		int index = ((y_p & CHUNK_MASK) << CHUNK_SHIFT) + (x_p & CHUNK_MASK);
+		if (precision == FLOAT_CELLS) {
+			return(((float[]) chunk)[index]);
+		} else if (precision == SHORT_CELLS) {
+			return(ShortGridStore.toValue(((short[]) chunk)[index]));
+		} else {
+			return(((double[]) chunk)[index]);
+		}
+	}
+	
+	public void set(int x_p, int y_p, double value_p) {
+		Object chunk = getChunk(x_p, y_p, true);
+		int index = ((y_p & CHUNK_MASK) << CHUNK_SHIFT) + (x_p & CHUNK_MASK);
+		if (precision == FLOAT_CELLS) {
+			((float[]) chunk)[index] = (float) value_p;
+		} else if (precision == SHORT_CELLS) {
+			((short[]) chunk)[index] = ShortGridStore.toShort(value_p);
+		} else {
+			((double[]) chunk)[index] = value_p;
+		}
+	}
+	
+	/*
+	 * Method to get the chunk holding a cell.
+	 * Parameters:
+	 * x_p - Column index.
+	 * y_p - Row index.
+	 * create_p - Whether to allocate the chunk if it does not exist.
+	 * Returns:
+	 * Array of chunk cells, null if the chunk does not exist and create_p is false.
+	 */
+	private Object getChunk(int x_p, int y_p, boolean create_p) {
+		int chunkX = x_p >> CHUNK_SHIFT;
+		int chunkY = y_p >> CHUNK_SHIFT;
+		long key = (((long) chunkX) << 32) | (chunkY & 0xFFFFFFFFL);
+		Object chunk = table.get(key);
+		if ((chunk == null) && create_p) {
+			chunk = addChunk(chunkX, chunkY, key);
+		}
+		return(chunk);
+	}
+	
+	/*
+	 * Method to allocate a chunk, unless another thread already has.
+	 * Parameters:
+	 * chunkX_p - Chunk column.
+	 * chunkY_p - Chunk row.
+	 * key_p - Chunk key.
+	 * Returns:
+	 * Array of chunk cells.
+	 */
+	private synchronized Object addChunk(int chunkX_p, int chunkY_p, long key_p) {
+		//Check again, now that no other thread can add it.
+		Object chunk = table.get(key_p);
+		if (chunk != null) {
+			return(chunk);
+		}
+		//Grow table when half full, readers of the old table see every chunk it had.
+		if ((chunkCount + 1) * 2 > table.capacity()) {
+			ChunkTable grown = new ChunkTable(table.capacity() * 2);
+			table.copyTo(grown);
+			table = grown;
+		}
+		chunk = newChunk();
+		table.put(key_p, chunk);
+		chunkCount++;
+		growExtent(chunkX_p, chunkY_p);
+		return(chunk);
+	}
+	
+	/*
+	 * Method to allocate a chunk of cells at the prior.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Array of chunk cells of the store's precision.
+	 */
+	private Object newChunk() {
+		if (precision == FLOAT_CELLS) {
+			return(new float[CHUNK_SIZE * CHUNK_SIZE]);
+		} else if (precision == SHORT_CELLS) {
+			return(new short[CHUNK_SIZE * CHUNK_SIZE]);
+		} else {
+			return(new double[CHUNK_SIZE * CHUNK_SIZE]);
+		}
+	}
+	
+	/*
+	 * Method to grow the extent to include a new chunk. Called while
+	 * holding the store's lock.
+	 * Parameters:
+	 * chunkX_p - Chunk column.
+	 * chunkY_p - Chunk row.
+	 * Returns:
+	 * None
+	 */
+	private void growExtent(int chunkX_p, int chunkY_p) {
+		if (maxChunkX < minChunkX) {
+			minChunkX = chunkX_p;
+			maxChunkX = chunkX_p;
+			minChunkY = chunkY_p;
+			maxChunkY = chunkY_p;
+		} else {
+			minChunkX = Math.min(minChunkX, chunkX_p);
+			maxChunkX = Math.max(maxChunkX, chunkX_p);
+			minChunkY = Math.min(minChunkY, chunkY_p);
+			maxChunkY = Math.max(maxChunkY, chunkY_p);
+		}
+	}
+	
+	public boolean isBounded() {
+		return false;
+	}
+	
+	public synchronized int getMinX() {
+		return(minChunkX << CHUNK_SHIFT);
+	}
+	
+	public synchronized int getMinY() {
+		return(minChunkY << CHUNK_SHIFT);
+	}
+	
+	public synchronized int getWidth() {
+		return((maxChunkX - minChunkX + 1) << CHUNK_SHIFT);
+	}
+	
+	public synchronized int getHeight() {
+		return((maxChunkY - minChunkY + 1) << CHUNK_SHIFT);
+	}
+	
+	public long getMemoryBytes() {
+		return((long) chunkCount * CHUNK_SIZE * CHUNK_SIZE * cellBytes);
+	}
+	
+	public boolean isSinglePrecision() {
+		return(precision != DOUBLE_CELLS);
+	}
+	
+	/*
+	 * Method to get the cell precision named on a command line.
+	 * Parameters:
+	 * name_p - "double", "float" or "short".
+	 * Returns:
+	 * Integer representing DOUBLE_CELLS, FLOAT_CELLS or SHORT_CELLS.
+	 */
+	public static int parsePrecision(String name_p) {
+		if (name_p.equals("double")) {
+			return(DOUBLE_CELLS);
+		} else if (name_p.equals("float")) {
+			return(FLOAT_CELLS);
+		} else if (name_p.equals("short")) {
+			return(SHORT_CELLS);
+		}
+		throw new IllegalArgumentException("Unknown cell precision " + name_p + ", expecting double, float or short.");
+	}
+	
+	/*
+	 * Accessor method for cell precision.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Integer representing DOUBLE_CELLS, FLOAT_CELLS or SHORT_CELLS.
+	 */
+	public int getPrecision() {
+		return(precision);
+	}
+	
+	/*
+	 * Method to get the number of allocated chunks.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Integer representing number of chunks.
+	 */
+	public int getChunkCount() {
+		return(chunkCount);
+	}
+	
+	/*
+	 * Open addressing table of chunks keyed by chunk key, probing linearly.
+	 * Slots are filled under the store's lock and never emptied, and each
+	 * chunk is stored before its key, so a reader that finds a key also
+	 * finds its chunk.
+	 */
+	private static class ChunkTable {
+		private final AtomicLongArray keys;
+		private final AtomicReferenceArray<Object> chunks;
+		private final int mask;
+		
+		public ChunkTable(int capacity_p) {
+			keys = new AtomicLongArray(capacity_p);
+			chunks = new AtomicReferenceArray<Object>(capacity_p);
+			mask = capacity_p - 1;
+			for (int i = 0; i < capacity_p; i++) {
+				keys.set(i, EMPTY);
+			}
+		}
+		
+		public int capacity() {
+			return(mask + 1);
+		}
+		
+		//First slot to probe for a key.
+		private int getSlot(long key_p) {
+			long hash = key_p * 0x9E3779B97F4A7C15L;
+			return((int) (hash ^ (hash >>> 32)) & mask);
+		}
+		
+		//Chunk with a key, null if there is none.
+		public Object get(long key_p) {
+			for (int i = getSlot(key_p); ; i = (i + 1) & mask) {
+				long key = keys.get(i);
+				if (key == key_p) {
+					return(chunks.get(i));
+				} else if (key == EMPTY) {
+					return null;
+				}
+			}
+		}
+		
+		//Adds a chunk whose key is not in the table, which must have an empty slot.
+		public void put(long key_p, Object chunk_p) {
+			int i = getSlot(key_p);
+			while (keys.get(i) != EMPTY) {
+				i = (i + 1) & mask;
+			}
+			chunks.set(i, chunk_p);
+			keys.set(i, key_p);
+		}
+		
+		//Adds every chunk to a larger table.
+		public void copyTo(ChunkTable table_p) {
+			for (int i = 0; i <= mask; i++) {
+				long key = keys.get(i);
+				if (key != EMPTY) {
+					table_p.put(key, chunks.get(i));
+				}
+			}
+		}
+	}
+}
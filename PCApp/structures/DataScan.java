@@ -10,6 +10,7 @@
  * - Unique ID for this scan. (Integer)
  * - Value for sample rate, representing how many degrees are between each sample. (Integer)
  * - Array of data containing raw sensor values. (Double[])
+ * - Sweep direction, whether readings go round in increasing or decreasing angle. (Integer)
  */
 
 package mattadshead.swansea3.dissertation.structures;
@@ -20,6 +21,11 @@ import java.awt.geom.Point2D;
 public class DataScan {
 	//Symbolic constant for default sample rate value.
 	private final int DEFAULT_SAMPLE_RATE = 1;
+	//Symbolic constants for sweep direction. Reading i of a forward sweep is
+	//i * sample rate degrees from the heading, and of a reverse sweep
+	//-i * sample rate degrees.
+	public static final int		SWEEP_FORWARD = 1,
+								SWEEP_REVERSE = -1;
 	
 	//Sample rate in degrees for scan.
 	private int sampleRate;
@@ -29,6 +35,8 @@ public class DataScan {
 	//Robot state at time of scan collection.
 	private Point2D.Double relPos;
 	private double heading;
+	//Direction the sensor turned while readings were taken.
+	private int sweepDirection = SWEEP_FORWARD;
 	
 	/*
 	 * Class constructor for ID only.
@@ -240,4 +248,44 @@ public class DataScan {
 		heading = heading_p;
 		return true;
 	}
-}
\ No newline at end of file
+	
+	/*
+	 * Accessor method for sweep direction.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Integer representing sweep direction, SWEEP_FORWARD or SWEEP_REVERSE.
+	 */
+	public int getSweepDirection() {
+		return(sweepDirection);
+	}
+	
+	/*
+	 * Mutator method for sweep direction.
+	 * Parameters:
+	 * sweepDirection_p - SWEEP_FORWARD or SWEEP_REVERSE.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setSweepDirection(int sweepDirection_p) {
+		if ((sweepDirection_p == SWEEP_FORWARD) || (sweepDirection_p == SWEEP_REVERSE)) {
+			sweepDirection = sweepDirection_p;
+			return true;
+		} else {
+			System.out.println("DataScan > setSweepDirection - Error: Invalid sweep direction.");
+			return false;
+		}
+	}
+	
+	/*
+	 * Accessor method for sample rate signed by sweep direction, as stored
+	 * in session files.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Integer representing degrees from one reading to the next.
+	 */
+	public int getAngleStep() {
+		return(sampleRate * sweepDirection);
+	}
+}
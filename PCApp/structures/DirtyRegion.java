@@ -0,0 +1,115 @@
+/*
+ * DirtyRegion.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Record of grid cells changed since they were last drawn or published.
+ *
+ * Cell writes are recorded against square tiles of TILE_SIZE cells, so many
+ * writes to the same area only mark one tile. The renderer drains the dirty
+ * tiles at its own frame rate, getting them back as rectangles with runs of
+ * neighbouring tiles in a row joined together. All methods are synchronized
+ * so cells can be marked from integration threads while the event thread
+ * drains them.
+ */
+
+package mattadshead.swansea3.dissertation.structures;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+
+public class DirtyRegion {
+
+	//Symbolic constants for tile size in cells, a power of two.
+	private final int	TILE_SHIFT = 4,
+						TILE_SIZE = 1 << TILE_SHIFT;
+
+	//Dirty tiles keyed by tile coordinates.
+	private HashSet<Long> tiles = new HashSet<Long>();
+
+	/*
+	 * Method to mark a single cell as changed.
+	 * Parameters:
+	 * x_p - Zero based column index.
+	 * y_p - Zero based row index.
+	 * Returns:
+	 * None
+	 */
+	public synchronized void markCell(int x_p, int y_p) {
+		tiles.add(getKey(x_p >> TILE_SHIFT, y_p >> TILE_SHIFT));
+	}
+
+	/*
+	 * Method to mark a block of cells as changed.
+	 * Parameters:
+	 * x0_p, y0_p - Zero based indices of first cell in block.
+	 * x1_p, y1_p - Zero based indices of last cell in block.
+	 * Returns:
+	 * None
+	 */
+	public synchronized void markCells(int x0_p, int y0_p, int x1_p, int y1_p) {
+		for (int tx = (x0_p >> TILE_SHIFT); tx <= (x1_p >> TILE_SHIFT); tx++) {
+			for (int ty = (y0_p >> TILE_SHIFT); ty <= (y1_p >> TILE_SHIFT); ty++) {
+				tiles.add(getKey(tx, ty));
+			}
+		}
+	}
+
+	/*
+	 * Method to check whether any cells have changed.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Boolean representing whether there are no dirty tiles.
+	 */
+	public synchronized boolean isEmpty() {
+		return(tiles.isEmpty());
+	}
+
+	/*
+	 * Method to take the dirty tiles and clear them.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * List of rectangles in zero based cell indices covering the dirty tiles.
+	 */
+	public synchronized ArrayList<Rectangle> drain() {
+		ArrayList<Rectangle> rects = new ArrayList<Rectangle>();
+		if (tiles.isEmpty()) {
+			return rects;
+		}
+		//Sort tiles by row then column.
+		ArrayList<Long> keys = new ArrayList<Long>(tiles);
+		tiles.clear();
+		Collections.sort(keys);
+
+		//Join runs of neighbouring tiles in the same row.
+		Rectangle run = null;
+		for (long key : keys) {
+			int tx = (int) key;
+			int ty = (int) ((key - tx) >> 32);
+			if ((run != null) && (run.y == (ty << TILE_SHIFT))
+					&& ((run.x + run.width) == (tx << TILE_SHIFT))) {
+				run.width += TILE_SIZE;
+			} else {
+				run = new Rectangle(tx << TILE_SHIFT, ty << TILE_SHIFT, TILE_SIZE, TILE_SIZE);
+				rects.add(run);
+			}
+		}
+		return rects;
+	}
+
+	/*
+	 * Method to get the key of a tile, ordered by row then column.
+	 * Parameters:
+	 * tx_p - Tile column.
+	 * ty_p - Tile row.
+	 * Returns:
+	 * Long representing tile key.
+	 */
+	private long getKey(int tx_p, int ty_p) {
+		return((((long) ty_p) << 32) + tx_p);
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * DoubleGridStore.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ * 
+ * Grid store keeping cell values in a flat row-major double array.
+ * 
+ * This is the default store. It has the same precision as the old
+ * double[][] matrix, so integration results are unchanged.
+ */
+
+package mattadshead.swansea3.dissertation.structures;
+
+public class DoubleGridStore implements GridStore {
+	
+	//Dimensions in cells.
+	private int width, height;
+	//Cell values, row-major.
+	private double[] cells;
+	
+	/*
+	 * Class constructor.
+	 * Parameters:
+	 * width_p - Number of columns.
+	 * height_p - Number of rows.
+	 * Returns:
+	 * None
+	 */
+	public DoubleGridStore(int width_p, int height_p) {
+		long size = (long) width_p * height_p;
+		if ((width_p < 0) || (height_p < 0) || (size > Integer.MAX_VALUE - 8)) {
+			throw new IllegalArgumentException("DoubleGridStore - Error: " + width_p + " x " + height_p
+					+ " cells do not fit in one array.");
+		}
+		width = width_p;
+		height = height_p;
+		cells = new double[(int) size];
+	}
+	
+	public double get(int x_p, int y_p) {
+		return(cells[(y_p * width) + x_p]);
+	}
+	
+	public void set(int x_p, int y_p, double value_p) {
+		cells[(y_p * width) + x_p] = value_p;
+	}
+	
+	public boolean isBounded() {
+		return true;
+	}
+	
+	public int getMinX() {
+		return 0;
+	}
+	
+	public int getMinY() {
+		return 0;
+	}
+	
+	public int getWidth() {
+		return(width);
+	}
+	
+	public int getHeight() {
+		return(height);
+	}
+	
+	public long getMemoryBytes() {
+		return((long) cells.length * 8);
+	}
+	
+	public boolean isSinglePrecision() {
+		return false;
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * FloatGridStore.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ * 
+ * Grid store keeping cell values in a flat row-major float array.
+ * 
+ * Uses half the memory of DoubleGridStore. Log odds keep about seven
+ * significant digits, which is well below the resolution of the sensor.
+ */
+
+package mattadshead.swansea3.dissertation.structures;
+
+public class FloatGridStore implements GridStore {
+	
+	//Dimensions in cells.
+	private int width, height;
+	//Cell values, row-major.
+	private float[] cells;
+	
+	/*
+	 * Class constructor.
+	 * Parameters:
+	 * width_p - Number of columns.
+	 * height_p - Number of rows.
+	 * Returns:
+	 * None
+	 */
+	public FloatGridStore(int width_p, int height_p) {
+		long size = (long) width_p * height_p;
+		if ((width_p < 0) || (height_p < 0) || (size > Integer.MAX_VALUE - 8)) {
+			throw new IllegalArgumentException("FloatGridStore - Error: " + width_p + " x " + height_p
+					+ " cells do not fit in one array.");
+		}
+		width = width_p;
+		height = height_p;
+		cells = new float[(int) size];
+	}
+	
+	public double get(int x_p, int y_p) {
+		return(cells[(y_p * width) + x_p]);
+	}
+	
+	public void set(int x_p, int y_p, double value_p) {
+		cells[(y_p * width) + x_p] = (float) value_p;
+	}
+	
+	public boolean isBounded() {
+		return true;
+	}
+	
+	public int getMinX() {
+		return 0;
+	}
+	
+	public int getMinY() {
+		return 0;
+	}
+	
+	public int getWidth() {
+		return(width);
+	}
+	
+	public int getHeight() {
+		return(height);
+	}
+	
+	public long getMemoryBytes() {
+		return((long) cells.length * 4);
+	}
+	
+	public boolean isSinglePrecision() {
+		return true;
+	}
+}
@@ -0,0 +1,384 @@
+/*
+ * GridRaster.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Backing image of an occupancy grid, one pixel per cell.
+ *
+ * The image is split into square tiles keyed by tile coordinates, so it can
+ * follow an unbounded grid store in any direction. Each tile is an int
+ * backed BufferedImage whose pixels are written directly. Pixels are only
+ * recomputed for cells reported as changed, and drawing scales the tiles by
+ * the cell size, so painting costs the same however big the grid is and
+ * repaints for resizes or overlays do not touch the grid at all.
+ *
+ * Coarser levels form a pyramid for drawing zoomed out views. Each pixel of
+ * level n covers a 2x2 block of level n-1, and takes the darkest of them,
+ * which is the grey of the largest log odds in the block, so thin walls stay
+ * visible at every level. Level n tiles are built from level n-1 tiles when
+ * first drawn and changed cells are passed up through the levels that exist,
+ * so the cost of a frame depends on the number of visible tiles rather than
+ * the size of the map.
+ *
+ * Log odds are mapped to grey without Math.exp by a table of the log odds at
+ * which each of the 256 grey levels starts. A binary search of the table
+ * gives the same level as 255 - floor(255 * p) for probability p, apart from
+ * log odds around 37 where p flickers between rounding to 1 or not.
+ *
+ * Tiles are created and updated on the event thread only. OGM draws from
+ * its published GridSnapshot, so cells are never read while being written.
+ */
+
+package mattadshead.swansea3.dissertation.structures;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+public class GridRaster {
+
+	//Symbolic constants for tile size in cells, a power of two.
+	private final int	TILE_SHIFT = 6,
+						TILE_SIZE = 1 << TILE_SHIFT,
+						TILE_MASK = TILE_SIZE - 1;
+	//Pixel value for cells outside a bounded store, left transparent.
+	private final int	OUTSIDE = 0;
+	//Largest pyramid level, each pixel covering 2^MAX_LEVEL cells across.
+	private final int	MAX_LEVEL = 16;
+	//Log odds bound for threshold search, past which Math.exp overflows.
+	private final double	MAX_LOG_ODDS = 700;
+
+	//Grid being drawn.
+	private GridView grid;
+
+	//Tile images for each pyramid level keyed by tile coordinates.
+	private ArrayList<HashMap<Long, BufferedImage>> levels = new ArrayList<HashMap<Long, BufferedImage>>();
+
+	//Log odds at which probability reaches k/255, for k = 1 to 255.
+	private double[] thresholds = new double[256];
+	//Opaque pixel value for each grey level.
+	private int[] greys = new int[256];
+
+	/*
+	 * Class constructor.
+	 * Parameters:
+	 * grid_p - Grid to draw.
+	 * Returns:
+	 * None
+	 */
+	public GridRaster(GridView grid_p) {
+		grid = grid_p;
+		for (int i = 0; i <= MAX_LEVEL; i++) {
+			levels.add(new HashMap<Long, BufferedImage>());
+		}
+
+		//Find the first log odds reaching each level by bisection, so levels
+		//match the exp based calculation exactly. thresholds[0] is unused.
+		thresholds[0] = Double.NEGATIVE_INFINITY;
+		for (int k = 1; k < 256; k++) {
+			double lo = -MAX_LOG_ODDS, hi = MAX_LOG_ODDS;
+			while (Math.nextUp(lo) < hi) {
+				double mid = (lo + hi) / 2;
+				if (getLevelExact(mid) >= k) {
+					hi = mid;
+				} else {
+					lo = mid;
+				}
+			}
+			thresholds[k] = hi;
+		}
+
+		for (int i = 0; i < 256; i++) {
+			greys[i] = 0xFF000000 | (i << 16) | (i << 8) | i;
+		}
+	}
+
+	/*
+	 * Method to get the grey value of a log odds value.
+	 * Parameters:
+	 * logOdds_p - Cell log odds value.
+	 * Returns:
+	 * Integer representing grey value, 255 for free and 0 for occupied.
+	 */
+	public int getGrey(double logOdds_p) {
+		//Find number of thresholds at or below value.
+		int lo = 0, hi = 255;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (thresholds[mid] <= logOdds_p) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		//NaN is treated as occupied, as in the exp based calculation.
+		if (logOdds_p != logOdds_p) {
+			lo = 255;
+		}
+		return(255 - lo);
+	}
+
+	/*
+	 * Method to get the probability level of a log odds value using Math.exp.
+	 * Parameters:
+	 * logOdds_p - Cell log odds value.
+	 * Returns:
+	 * Integer representing floor(255 * p).
+	 */
+	private int getLevelExact(double logOdds_p) {
+		double odds = Math.exp(logOdds_p);
+		return((int) Math.floor((odds/(1 + odds)) * 255));
+	}
+
+	/*
+	 * Method to recompute the pixels of changed cells at every level. Pixels
+	 * in tiles that have not been created yet are skipped, they are drawn
+	 * when the tile is created.
+	 * Parameters:
+	 * cells_p - Block of changed cells in zero based store indices.
+	 * Returns:
+	 * None
+	 */
+	public void update(Rectangle cells_p) {
+		int x0 = cells_p.x, y0 = cells_p.y;
+		int x1 = cells_p.x + cells_p.width - 1;
+		int y1 = cells_p.y + cells_p.height - 1;
+		for (int level = 0; (level <= MAX_LEVEL) && !levels.get(level).isEmpty(); level++) {
+			HashMap<Long, BufferedImage> tiles = levels.get(level);
+			for (int ty = (y0 >> TILE_SHIFT); ty <= (y1 >> TILE_SHIFT); ty++) {
+				for (int tx = (x0 >> TILE_SHIFT); tx <= (x1 >> TILE_SHIFT); tx++) {
+					BufferedImage tile = tiles.get(getKey(tx, ty));
+					if (tile != null) {
+						int baseX = tx << TILE_SHIFT, baseY = ty << TILE_SHIFT;
+						renderPixels(tile, level, baseX, baseY,
+								Math.max(x0, baseX), Math.max(y0, baseY),
+								Math.min(x1, baseX + TILE_MASK), Math.min(y1, baseY + TILE_MASK));
+					}
+				}
+			}
+			//Get block of pixels covering the change at the next level.
+			x0 >>= 1;
+			y0 >>= 1;
+			x1 >>= 1;
+			y1 >>= 1;
+		}
+	}
+
+	/*
+	 * Method to get the pyramid level to draw at a scale, the coarsest level
+	 * whose pixels are no more than one screen pixel across, so zoomed out
+	 * views lose no detail and each tile is shrunk by less than half.
+	 * Parameters:
+	 * scale_p - Drawn width and height of cells in pixels.
+	 * Returns:
+	 * Integer representing level.
+	 */
+	public int getLevel(double scale_p) {
+		int level = 0;
+		while ((level < MAX_LEVEL) && ((scale_p * (1 << (level + 1))) <= 1)) {
+			level++;
+		}
+		return(level);
+	}
+
+	/*
+	 * Method to draw a block of cells at a scale, using the level chosen by
+	 * getLevel. Rows are drawn bottom up, so cell row 0 is the bottom row.
+	 * Parameters:
+	 * g_p - Graphics to draw to.
+	 * cells_p - Block of cells to draw in zero based store indices.
+	 * left_p - Pixel column of the left edge of cell column 0.
+	 * bottom_p - Pixel row of the bottom edge of cell row 0.
+	 * scale_p - Drawn width and height of cells in pixels.
+	 * Returns:
+	 * None
+	 */
+	public void draw(Graphics2D g_p, Rectangle cells_p, double left_p, double bottom_p, double scale_p) {
+		if ((cells_p.width <= 0) || (cells_p.height <= 0)) {
+			return;
+		}
+		//Keep tiles to the requested cells, tiles can overhang them.
+		Graphics2D g = (Graphics2D) g_p.create();
+		int clipX = getPixel(left_p, cells_p.x, scale_p);
+		int clipY = getPixel(bottom_p, -(cells_p.y + cells_p.height), scale_p);
+		g.clipRect(clipX, clipY, getPixel(left_p, cells_p.x + cells_p.width, scale_p) - clipX,
+				getPixel(bottom_p, -cells_p.y, scale_p) - clipY);
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+				RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+
+		//Get tiles of chosen level covering the cells.
+		int level = getLevel(scale_p);
+		int shift = TILE_SHIFT + level;
+		long tileCells = 1L << shift;
+		int x1 = cells_p.x + cells_p.width - 1;
+		int y1 = cells_p.y + cells_p.height - 1;
+		for (int ty = (cells_p.y >> shift); ty <= (y1 >> shift); ty++) {
+			int top = getPixel(bottom_p, -((ty + 1) * tileCells), scale_p);
+			int bottom = getPixel(bottom_p, -(ty * tileCells), scale_p);
+			for (int tx = (cells_p.x >> shift); tx <= (x1 >> shift); tx++) {
+				int left = getPixel(left_p, tx * tileCells, scale_p);
+				int right = getPixel(left_p, (tx + 1) * tileCells, scale_p);
+				g.drawImage(getTile(level, tx, ty), left, top, right, bottom,
+						0, 0, TILE_SIZE, TILE_SIZE, null);
+			}
+		}
+		g.dispose();
+	}
+
+	/*
+	 * Method to get the screen pixel of a cell edge, rounded so neighbouring
+	 * tiles meet without gaps.
+	 * Parameters:
+	 * origin_p - Pixel position of cell edge 0.
+	 * cells_p - Number of cells from edge 0, negative for rows drawn upwards.
+	 * scale_p - Drawn width and height of cells in pixels.
+	 * Returns:
+	 * Integer representing pixel position.
+	 */
+	private int getPixel(double origin_p, long cells_p, double scale_p) {
+		return((int) Math.floor(origin_p + (cells_p * scale_p) + 0.5));
+	}
+
+	/*
+	 * Mutator method for the grid tiles are drawn from. Tiles already
+	 * drawn are kept, so the new grid should only differ in cells passed to
+	 * update afterwards.
+	 * Parameters:
+	 * grid_p - Grid to draw.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setGrid(GridView grid_p) {
+		grid = grid_p;
+		return true;
+	}
+
+	/*
+	 * Method to drop all tiles, so they are recomputed when next drawn.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * None
+	 */
+	public void clear() {
+		for (HashMap<Long, BufferedImage> tiles : levels) {
+			tiles.clear();
+		}
+	}
+
+	/*
+	 * Method to get a tile image, creating and drawing it if needed.
+	 * Parameters:
+	 * level_p - Pyramid level.
+	 * tx_p - Tile column.
+	 * ty_p - Tile row.
+	 * Returns:
+	 * BufferedImage of tile.
+	 */
+	private BufferedImage getTile(int level_p, int tx_p, int ty_p) {
+		long key = getKey(tx_p, ty_p);
+		HashMap<Long, BufferedImage> tiles = levels.get(level_p);
+		BufferedImage tile = tiles.get(key);
+		if (tile == null) {
+			tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+			int baseX = tx_p << TILE_SHIFT, baseY = ty_p << TILE_SHIFT;
+			renderPixels(tile, level_p, baseX, baseY, baseX, baseY, baseX + TILE_MASK, baseY + TILE_MASK);
+			tiles.put(key, tile);
+		}
+		return(tile);
+	}
+
+	/*
+	 * Method to write a block of pixels within one tile, from the grid at
+	 * level 0 or from the level below otherwise.
+	 * Parameters:
+	 * tile_p - Tile image.
+	 * level_p - Pyramid level of tile.
+	 * baseX_p, baseY_p - Indices of the first pixel in the tile.
+	 * x0_p, y0_p - Indices of first pixel in block.
+	 * x1_p, y1_p - Indices of last pixel in block.
+	 * Returns:
+	 * None
+	 */
+	private void renderPixels(BufferedImage tile_p, int level_p, int baseX_p, int baseY_p,
+			int x0_p, int y0_p, int x1_p, int y1_p) {
+		int[] pixels = ((DataBufferInt) tile_p.getRaster().getDataBuffer()).getData();
+		if (level_p == 0) {
+			renderCells(pixels, baseX_p, baseY_p, x0_p, y0_p, x1_p, y1_p);
+			return;
+		}
+		//Each quarter of the tile comes from one tile of the level below.
+		int half = TILE_SIZE >> 1;
+		for (int qy = 0; qy < 2; qy++) {
+			for (int qx = 0; qx < 2; qx++) {
+				int qx0 = Math.max(x0_p, baseX_p + (qx * half)), qx1 = Math.min(x1_p, baseX_p + (qx * half) + half - 1);
+				int qy0 = Math.max(y0_p, baseY_p + (qy * half)), qy1 = Math.min(y1_p, baseY_p + (qy * half) + half - 1);
+				if ((qx0 > qx1) || (qy0 > qy1)) {
+					continue;
+				}
+				int childBaseX = (baseX_p + (qx * half)) << 1;
+				int childBaseY = (baseY_p + (qy * half)) << 1;
+				BufferedImage child = getTile(level_p - 1, childBaseX >> TILE_SHIFT, childBaseY >> TILE_SHIFT);
+				int[] childPixels = ((DataBufferInt) child.getRaster().getDataBuffer()).getData();
+				for (int y = qy0; y <= qy1; y++) {
+					int row = (TILE_MASK - (y - baseY_p)) << TILE_SHIFT;
+					//Child rows of this pixel, image rows run top down.
+					int childY = (y << 1) - childBaseY;
+					int lowRow = (TILE_MASK - childY) << TILE_SHIFT;
+					int highRow = (TILE_MASK - (childY + 1)) << TILE_SHIFT;
+					for (int x = qx0; x <= qx1; x++) {
+						int childX = (x << 1) - childBaseX;
+						//Opaque greys order by level and sort below OUTSIDE, so the
+						//smallest value is the darkest cell, or OUTSIDE if all are.
+						pixels[row + (x - baseX_p)] = Math.min(
+								Math.min(childPixels[lowRow + childX], childPixels[lowRow + childX + 1]),
+								Math.min(childPixels[highRow + childX], childPixels[highRow + childX + 1]));
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * Method to write the pixels of a block of cells within one level 0 tile.
+	 * Parameters:
+	 * pixels_p - Tile pixels.
+	 * baseX_p, baseY_p - Indices of the first cell in the tile.
+	 * x0_p, y0_p - Indices of first cell in block.
+	 * x1_p, y1_p - Indices of last cell in block.
+	 * Returns:
+	 * None
+	 */
+	private void renderCells(int[] pixels_p, int baseX_p, int baseY_p,
+			int x0_p, int y0_p, int x1_p, int y1_p) {
+		boolean bounded = grid.isBounded();
+		int width = grid.getWidth(), height = grid.getHeight();
+		for (int y = y0_p; y <= y1_p; y++) {
+			//Image rows run top down, cell rows bottom up.
+			int row = (TILE_MASK - (y - baseY_p)) << TILE_SHIFT;
+			for (int x = x0_p; x <= x1_p; x++) {
+				if (bounded && ((x < 0) || (x >= width) || (y < 0) || (y >= height))) {
+					pixels_p[row + (x - baseX_p)] = OUTSIDE;
+				} else {
+					pixels_p[row + (x - baseX_p)] = greys[getGrey(grid.get(x, y))];
+				}
+			}
+		}
+	}
+
+	/*
+	 * Method to get the key of a tile.
+	 * Parameters:
+	 * tx_p - Tile column.
+	 * ty_p - Tile row.
+	 * Returns:
+	 * Long representing tile key.
+	 */
+	private long getKey(int tx_p, int ty_p) {
+		return((((long) ty_p) << 32) | (tx_p & 0xFFFFFFFFL));
+	}
+}
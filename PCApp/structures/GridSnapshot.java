@@ -0,0 +1,329 @@
+/*
+ * GridSnapshot.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Read only copy of a grid store as it was at one point in time.
+ *
+ * OGM integrates into a working store and publishes a new snapshot after
+ * each scan, so readers on other threads (the renderer, exporters, planners)
+ * always see the map between two scans and never part way through one.
+ * Snapshots are never changed after they are made, so readers need no locks.
+ *
+ * Cells are held in square tiles, found through a persistent hash trie on
+ * the tile coordinates. A new snapshot copies each tile with changed cells
+ * from the previous snapshot, along with the few trie nodes on the way to
+ * it, updates just the changed cells from the store, and shares every other
+ * tile and node, so publishing costs about the area a scan touched rather
+ * than the size of the map.
+ * Tiles with no copy read as 0, the log odds of the 0.5 prior. Snapshots of
+ * a single precision store hold float tiles, half the memory of doubles.
+ */
+
+package mattadshead.swansea3.dissertation.structures;
+
+import java.awt.Rectangle;
+import java.util.List;
+
+public class GridSnapshot implements GridView {
+
+	//Symbolic constants for tile size in cells, a power of two.
+	private final int	TILE_SHIFT = 6,
+						TILE_SIZE = 1 << TILE_SHIFT,
+						TILE_MASK = TILE_SIZE - 1;
+	//Symbolic constants for trie nodes, each splitting on INDEX_BITS bits of the key hash.
+	private static final int	INDEX_BITS = 5,
+								INDEX_SIZE = 1 << INDEX_BITS,
+								INDEX_MASK = INDEX_SIZE - 1;
+
+	//Root of the tile trie. Tiles are arrays of TILE_SIZE rows of cells.
+	private final IndexNode root;
+	//Number of tiles in the trie.
+	private final int tileCount;
+	//Whether tiles hold floats rather than doubles.
+	private final boolean floatTiles;
+	//Publication number, one higher than the previous snapshot.
+	private final long version;
+	//Store shape when the snapshot was made.
+	private final boolean bounded;
+	private final int minX, minY, width, height;
+
+	/*
+	 * Class constructor for an empty snapshot.
+	 * Parameters:
+	 * store_p - Store the snapshot will follow, for its shape.
+	 * Returns:
+	 * None
+	 */
+	public GridSnapshot(GridView store_p) {
+		this(store_p, new IndexNode(null, null), 0, store_p.isSinglePrecision(), 0);
+	}
+
+	/*
+	 * Class constructor.
+	 * Parameters:
+	 * store_p - Store the snapshot is taken from, for its shape.
+	 * root_p - Root of the tile trie, not changed afterwards.
+	 * tileCount_p - Number of tiles in the trie.
+	 * floatTiles_p - Whether tiles hold floats.
+	 * version_p - Publication number.
+	 * Returns:
+	 * None
+	 */
+	private GridSnapshot(GridView store_p, IndexNode root_p, int tileCount_p, boolean floatTiles_p, long version_p) {
+		root = root_p;
+		tileCount = tileCount_p;
+		floatTiles = floatTiles_p;
+		version = version_p;
+		bounded = store_p.isBounded();
+		minX = store_p.getMinX();
+		minY = store_p.getMinY();
+		width = store_p.getWidth();
+		height = store_p.getHeight();
+	}
+
+	/*
+	 * Method to make the next snapshot of a store. Must be called by the
+	 * thread writing the store, after the writes it should include.
+	 * Parameters:
+	 * store_p - Working store to copy from.
+	 * changed_p - Blocks of cells changed since this snapshot was made.
+	 * Returns:
+	 * New GridSnapshot sharing unchanged tiles with this one.
+	 */
+	public GridSnapshot next(GridView store_p, List<Rectangle> changed_p) {
+		//Nodes and tiles copied for this snapshot are owned by it, and can be
+		//written until it is made. Everything else is shared.
+		Object owner = new Object();
+		IndexNode nextRoot = new IndexNode(root, owner);
+		int nextCount = tileCount;
+		boolean storeBounded = store_p.isBounded();
+		int storeWidth = store_p.getWidth(), storeHeight = store_p.getHeight();
+		for (Rectangle r : changed_p) {
+			int x0 = r.x, y0 = r.y;
+			int x1 = r.x + r.width - 1;
+			int y1 = r.y + r.height - 1;
+			//Bounded stores only hold cells inside their extent.
+			if (storeBounded) {
+				x0 = Math.max(x0, 0);
+				y0 = Math.max(y0, 0);
+				x1 = Math.min(x1, storeWidth - 1);
+				y1 = Math.min(y1, storeHeight - 1);
+			}
+			for (int ty = (y0 >> TILE_SHIFT); ty <= (y1 >> TILE_SHIFT); ty++) {
+				for (int tx = (x0 >> TILE_SHIFT); tx <= (x1 >> TILE_SHIFT); tx++) {
+					//Copy tile the first time it changes, from the previous snapshot.
+					TileEntry entry = getOwnedTile(nextRoot, getKey(tx, ty), owner);
+					if (entry.added) {
+						nextCount++;
+						entry.added = false;
+					}
+					Object tile = entry.cells;
+					//Copy changed cells inside tile from store.
+					int baseX = tx << TILE_SHIFT, baseY = ty << TILE_SHIFT;
+					int cx1 = Math.min(x1, baseX + TILE_MASK), cy1 = Math.min(y1, baseY + TILE_MASK);
+					for (int y = Math.max(y0, baseY); y <= cy1; y++) {
+						int row = (y - baseY) << TILE_SHIFT;
+						for (int x = Math.max(x0, baseX); x <= cx1; x++) {
+							if (floatTiles) {
+								((float[]) tile)[row + (x - baseX)] = (float) store_p.get(x, y);
+							} else {
+								((double[]) tile)[row + (x - baseX)] = store_p.get(x, y);
+							}
+						}
+					}
+				}
+			}
+		}
+		return(new GridSnapshot(store_p, nextRoot, nextCount, floatTiles, version + 1));
+	}
+
+	/*
+	 * Method to find a tile in a trie being built for the next snapshot,
+	 * copying it and the nodes on the way to it from the previous snapshot
+	 * the first time it is found.
+	 * Parameters:
+	 * root_p - Root of the trie being built, owned by owner_p.
+	 * key_p - Tile key.
+	 * owner_p - Owner of nodes and tiles copied for the next snapshot.
+	 * Returns:
+	 * TileEntry that can be written, marked as added if the tile is new.
+	 */
+	private TileEntry getOwnedTile(IndexNode root_p, long key_p, Object owner_p) {
+		long hash = getHash(key_p);
+		IndexNode node = root_p;
+		int shift = 0;
+		while (true) {
+			int index = (int) (hash >>> shift) & INDEX_MASK;
+			Object child = node.children[index];
+			if (child == null) {
+				TileEntry entry = new TileEntry(key_p, copyTile(null), owner_p);
+				entry.added = true;
+				node.children[index] = entry;
+				return(entry);
+			}
+			if (child instanceof IndexNode) {
+				IndexNode next = (IndexNode) child;
+				if (next.owner != owner_p) {
+					next = new IndexNode(next, owner_p);
+					node.children[index] = next;
+				}
+				node = next;
+				shift += INDEX_BITS;
+				continue;
+			}
+			TileEntry entry = (TileEntry) child;
+			if (entry.key == key_p) {
+				if (entry.owner != owner_p) {
+					entry = new TileEntry(key_p, copyTile(entry.cells), owner_p);
+					node.children[index] = entry;
+				}
+				return(entry);
+			}
+			//Another tile shares these hash bits, so move it down a level.
+			IndexNode split = new IndexNode(null, owner_p);
+			split.children[(int) (getHash(entry.key) >>> (shift + INDEX_BITS)) & INDEX_MASK] = entry;
+			node.children[index] = split;
+			node = split;
+			shift += INDEX_BITS;
+		}
+	}
+
+	/*
+	 * Method to find a tile.
+	 * Parameters:
+	 * key_p - Tile key.
+	 * Returns:
+	 * Array of tile cells, null if the tile has no copy.
+	 */
+	private Object getTile(long key_p) {
+		long hash = getHash(key_p);
+		Object child = root;
+		while (child instanceof IndexNode) {
+			child = ((IndexNode) child).children[(int) hash & INDEX_MASK];
+			hash >>>= INDEX_BITS;
+		}
+		if ((child != null) && (((TileEntry) child).key == key_p)) {
+			return(((TileEntry) child).cells);
+		}
+		return null;
+	}
+
+	/*
+	 * Method to copy a tile for writing.
+	 * Parameters:
+	 * tile_p - Tile to copy, null for a tile of cells at the prior.
+	 * Returns:
+	 * Array of tile cells.
+	 */
+	private Object copyTile(Object tile_p) {
+		if (floatTiles) {
+			return((tile_p == null) ? new float[TILE_SIZE * TILE_SIZE] : ((float[]) tile_p).clone());
+		} else {
+			return((tile_p == null) ? new double[TILE_SIZE * TILE_SIZE] : ((double[]) tile_p).clone());
+		}
+	}
+
+	public double get(int x_p, int y_p) {
+		Object tile = getTile(getKey(x_p >> TILE_SHIFT, y_p >> TILE_SHIFT));
+		if (tile == null) {
+			return 0;
+		}
+		int index = ((y_p & TILE_MASK) << TILE_SHIFT) + (x_p & TILE_MASK);
+		if (floatTiles) {
+			return(((float[]) tile)[index]);
+		}
+		return(((double[]) tile)[index]);
+	}
+
+	public boolean isBounded() {
+		return(bounded);
+	}
+
+	public int getMinX() {
+		return(minX);
+	}
+
+	public int getMinY() {
+		return(minY);
+	}
+
+	public int getWidth() {
+		return(width);
+	}
+
+	public int getHeight() {
+		return(height);
+	}
+
+	public long getMemoryBytes() {
+		return((long) tileCount * TILE_SIZE * TILE_SIZE * (floatTiles ? 4 : 8));
+	}
+
+	public boolean isSinglePrecision() {
+		return(floatTiles);
+	}
+
+	/*
+	 * Accessor method for publication number.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Long representing version, higher for later snapshots.
+	 */
+	public long getVersion() {
+		return(version);
+	}
+
+	/*
+	 * Method to get the key of a tile.
+	 * Parameters:
+	 * tx_p - Tile column.
+	 * ty_p - Tile row.
+	 * Returns:
+	 * Long representing tile key.
+	 */
+	private long getKey(int tx_p, int ty_p) {
+		return((((long) tx_p) << 32) | (ty_p & 0xFFFFFFFFL));
+	}
+
+	/*
+	 * Method to spread a tile key over the trie. Both steps can be undone,
+	 * so different keys always have different hashes.
+	 * Parameters:
+	 * key_p - Tile key.
+	 * Returns:
+	 * Long representing hash, read INDEX_BITS at a time from the bottom.
+	 */
+	private static long getHash(long key_p) {
+		long h = key_p * 0x9E3779B97F4A7C15L;
+		return(h ^ (h >>> 32));
+	}
+
+	//Node of the tile trie. Children are nodes, tile entries or null.
+	private static final class IndexNode {
+		final Object[] children;
+		//Token of the snapshot build that made the node, the only one that writes it.
+		final Object owner;
+
+		IndexNode(IndexNode from_p, Object owner_p) {
+			children = (from_p == null) ? new Object[INDEX_SIZE] : from_p.children.clone();
+			owner = owner_p;
+		}
+	}
+
+	//Tile of the trie, with its key.
+	private static final class TileEntry {
+		final long key;
+		final Object cells;
+		final Object owner;
+		//Whether the tile is new, until counted by the build that made it.
+		boolean added = false;
+
+		TileEntry(long key_p, Object cells_p, Object owner_p) {
+			key = key_p;
+			cells = cells_p;
+			owner = owner_p;
+		}
+	}
+}
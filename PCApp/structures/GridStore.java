@@ -0,0 +1,34 @@
+/*
+ * GridStore.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ * 
+ * Storage interface for the log odds values of an occupancy grid.
+ * 
+ * OGM keeps its cell values behind this interface so that the storage can be
+ * chosen to fit the map. Cells are addressed by zero based primitive column
+ * and row indices, where OGM cell (1, 1) is store cell (0, 0). Implementations
+ * must allow different threads to write different cells at the same time, as
+ * parallel integration gives each tile of cells to one worker. Cells are
+ * read through the methods of GridView.
+ * 
+ * Bounded stores hold a fixed block of cells starting at (0, 0). Unbounded
+ * stores accept any indices, including negative ones, and report the extent
+ * of the cells written so far through the min, width and height methods.
+ */
+
+package mattadshead.swansea3.dissertation.structures;
+
+public interface GridStore extends GridView {
+	
+	/*
+	 * Method to set the log odds value of a cell.
+	 * Parameters:
+	 * x_p - Zero based column index.
+	 * y_p - Zero based row index.
+	 * value_p - New log odds value.
+	 * Returns:
+	 * None
+	 */
+	public void set(int x_p, int y_p, double value_p);
+}
@@ -0,0 +1,91 @@
+/*
+ * GridView.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ * 
+ * Read only interface for the log odds values of an occupancy grid.
+ * 
+ * Everything that only reads cells, such as drawing, checkpoints and
+ * snapshots, takes a GridView, so published snapshots need no way to be
+ * written. Cells are addressed as in GridStore, and the extent methods
+ * describe the cells as GridStore's do.
+ */
+
+package mattadshead.swansea3.dissertation.structures;
+
+public interface GridView {
+	
+	/*
+	 * Method to get the log odds value of a cell.
+	 * Parameters:
+	 * x_p - Zero based column index.
+	 * y_p - Zero based row index.
+	 * Returns:
+	 * Double representing log odds value.
+	 */
+	public double get(int x_p, int y_p);
+	
+	/*
+	 * Method to check whether the grid has a fixed size.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Boolean representing whether only cells inside the extent can be used.
+	 */
+	public boolean isBounded();
+	
+	/*
+	 * Accessor method for lowest column index of grid extent.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Integer representing first column index.
+	 */
+	public int getMinX();
+	
+	/*
+	 * Accessor method for lowest row index of grid extent.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Integer representing first row index.
+	 */
+	public int getMinY();
+	
+	/*
+	 * Accessor method for grid width.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Integer representing number of columns.
+	 */
+	public int getWidth();
+	
+	/*
+	 * Accessor method for grid height.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Integer representing number of rows.
+	 */
+	public int getHeight();
+	
+	/*
+	 * Method to get the memory used by cell values.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Long representing bytes used for cell values.
+	 */
+	public long getMemoryBytes();
+	
+	/*
+	 * Method to check whether cell values keep no more precision than a
+	 * float, so copies of the grid can hold them as floats.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Boolean representing whether a float holds each value.
+	 */
+	public boolean isSinglePrecision();
+}
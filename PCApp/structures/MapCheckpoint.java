@@ -0,0 +1,294 @@
+/*
+ * MapCheckpoint.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Saved state of an occupancy grid map part way through a session.
+ *
+ * A checkpoint holds the log odds of every cell after the first scanCount
+ * scans of the session were integrated, along with the bot position, heading
+ * and path lines after the first commandCount move commands. Loading a session
+ * restores the latest checkpoint and only integrates the scans after it.
+ * The cells and the bot state are each taken at one point in time, but not
+ * necessarily the same one, since moves are made ahead of integration.
+ *
+ * Checkpoint files are gzip compressed. Cells are stored in square blocks,
+ * and blocks with every cell at the 0.5 prior are left out, so a file is
+ * about the size of the area the robot has observed.
+ *
+ * File layout, inside the gzip stream:
+ * - Header: magic number (int), format version (short), flags (short, unused).
+ * - Map shape: ratio (double), width and height in cells (ints).
+ * - Session position: scan count and command count (ints).
+ * - Bot state: x, y and heading (doubles).
+ * - Path lines: line count (int), then x1, y1, x2 and y2 of each (doubles).
+ * - Cells: extent min x, min y, width and height (ints), then for each block
+ *   in row order a flag byte, followed by the block's cells in row order
+ *   (doubles) when the flag is 1.
+ */
+
+package mattadshead.swansea3.dissertation.structures;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class MapCheckpoint {
+
+	//Symbolic constants for file format.
+	public static final int		MAGIC = 0x454E5643,	//"ENVC"
+								FORMAT_VERSION = 1;
+
+	//Symbolic constants for block size in cells, a power of two.
+	private static final int	BLOCK_SHIFT = 6,
+								BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+	//Cell log odds, indexed as in the map's grid store.
+	private final GridView cells;
+	//Map shape the cells belong to.
+	private final double mapRatio;
+	private final int mapWidth, mapHeight;
+	//Number of scans integrated into the cells, and commands applied to the bot state.
+	private final int scanCount, commandCount;
+	//Bot state and path.
+	private final Point2D.Double botPosition;
+	private final double botOrientation;
+	private final ArrayList<Line2D.Double> lines;
+
+	/*
+	 * Class constructor.
+	 * Parameters:
+	 * cells_p - Cell log odds, not changed afterwards.
+	 * mapRatio_p - Real world size of a cell.
+	 * mapWidth_p - Width of the initial map area in cells.
+	 * mapHeight_p - Height of the initial map area in cells.
+	 * scanCount_p - Number of scans integrated into the cells.
+	 * commandCount_p - Number of move commands applied to the bot state.
+	 * botPosition_p - Bot position.
+	 * botOrientation_p - Bot heading in degrees.
+	 * lines_p - Bot path lines, copied.
+	 * Returns:
+	 * None
+	 */
+	public MapCheckpoint(GridView cells_p, double mapRatio_p, int mapWidth_p, int mapHeight_p,
+			int scanCount_p, int commandCount_p, Point2D.Double botPosition_p, double botOrientation_p,
+			List<Line2D.Double> lines_p) {
+		cells = cells_p;
+		mapRatio = mapRatio_p;
+		mapWidth = mapWidth_p;
+		mapHeight = mapHeight_p;
+		scanCount = scanCount_p;
+		commandCount = commandCount_p;
+		botPosition = new Point2D.Double(botPosition_p.getX(), botPosition_p.getY());
+		botOrientation = botOrientation_p;
+		lines = new ArrayList<Line2D.Double>();
+		for (Line2D.Double l : lines_p) {
+			lines.add(new Line2D.Double(l.getX1(), l.getY1(), l.getX2(), l.getY2()));
+		}
+	}
+
+	/*
+	 * Method to write the checkpoint to file. The file is written beside the
+	 * path and moved into place once it is on disk, so a crash part way
+	 * through leaves the previous checkpoint in place.
+	 * Parameters:
+	 * filepath_p - Path of checkpoint file.
+	 * Returns:
+	 * None
+	 */
+	public void write(String filepath_p) throws IOException {
+		File target = new File(filepath_p);
+		File temp = new File(filepath_p + ".tmp");
+		FileOutputStream file = new FileOutputStream(temp);
+		GZIPOutputStream gzip = new GZIPOutputStream(file, 1 << 16);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(gzip, 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeShort(FORMAT_VERSION);
+			out.writeShort(0);
+			out.writeDouble(mapRatio);
+			out.writeInt(mapWidth);
+			out.writeInt(mapHeight);
+			out.writeInt(scanCount);
+			out.writeInt(commandCount);
+			out.writeDouble(botPosition.getX());
+			out.writeDouble(botPosition.getY());
+			out.writeDouble(botOrientation);
+			out.writeInt(lines.size());
+			for (Line2D.Double l : lines) {
+				out.writeDouble(l.getX1());
+				out.writeDouble(l.getY1());
+				out.writeDouble(l.getX2());
+				out.writeDouble(l.getY2());
+			}
+			writeCells(out);
+			out.flush();
+			//Finish gzip stream and make file durable before it replaces the old one.
+			gzip.finish();
+			file.getFD().sync();
+		} catch (IOException e) {
+			out.close();
+			temp.delete();
+			throw e;
+		}
+		out.close();
+		Files.move(temp.toPath(), target.toPath(),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/*
+	 * Method to read a checkpoint file.
+	 * Parameters:
+	 * filepath_p - Path of checkpoint file.
+	 * Returns:
+	 * MapCheckpoint read from file.
+	 */
+	public static MapCheckpoint read(String filepath_p) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new GZIPInputStream(new FileInputStream(filepath_p), 1 << 16), 1 << 16));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("MapCheckpoint - Error: Not a checkpoint file.");
+			}
+			int version = in.readShort();
+			if (version > FORMAT_VERSION) {
+				throw new IOException("MapCheckpoint - Error: Unsupported format version " + version + ".");
+			}
+			in.readShort();
+			double ratio = in.readDouble();
+			int width = in.readInt();
+			int height = in.readInt();
+			int scans = in.readInt();
+			int comms = in.readInt();
+			Point2D.Double position = new Point2D.Double(in.readDouble(), in.readDouble());
+			double heading = in.readDouble();
+			int lineCount = in.readInt();
+			ArrayList<Line2D.Double> lineList = new ArrayList<Line2D.Double>();
+			for (int i = 0; i < lineCount; i++) {
+				lineList.add(new Line2D.Double(in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble()));
+			}
+			GridView store = readCells(in);
+			return(new MapCheckpoint(store, ratio, width, height, scans, comms, position, heading, lineList));
+		} finally {
+			in.close();
+		}
+	}
+
+	/*
+	 * Method to write cell blocks, leaving out blocks with no observed cells.
+	 * Parameters:
+	 * out_p - Stream to write to.
+	 * Returns:
+	 * None
+	 */
+	private void writeCells(DataOutputStream out_p) throws IOException {
+		int minX = cells.getMinX(), minY = cells.getMinY();
+		int width = cells.getWidth(), height = cells.getHeight();
+		out_p.writeInt(minX);
+		out_p.writeInt(minY);
+		out_p.writeInt(width);
+		out_p.writeInt(height);
+		double[] block = new double[BLOCK_SIZE * BLOCK_SIZE];
+		for (int by = minY; by < minY + height; by += BLOCK_SIZE) {
+			for (int bx = minX; bx < minX + width; bx += BLOCK_SIZE) {
+				//Copy block, cells past the extent read as the prior.
+				boolean observed = false;
+				for (int y = 0; y < BLOCK_SIZE; y++) {
+					for (int x = 0; x < BLOCK_SIZE; x++) {
+						boolean inside = ((bx + x) < (minX + width)) && ((by + y) < (minY + height));
+						double value = inside ? cells.get(bx + x, by + y) : 0;
+						block[(y << BLOCK_SHIFT) + x] = value;
+						observed |= (value != 0);
+					}
+				}
+				out_p.writeByte(observed ? 1 : 0);
+				if (observed) {
+					for (double value : block) {
+						out_p.writeDouble(value);
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * Method to read cell blocks into a new store.
+	 * Parameters:
+	 * in_p - Stream to read from.
+	 * Returns:
+	 * GridView holding the observed cells.
+	 */
+	private static GridView readCells(DataInputStream in_p) throws IOException {
+		int minX = in_p.readInt(), minY = in_p.readInt();
+		int width = in_p.readInt(), height = in_p.readInt();
+		if ((width < 0) || (height < 0)) {
+			throw new IOException("MapCheckpoint - Error: Cell extent is corrupt.");
+		}
+		ChunkedGridStore store = new ChunkedGridStore();
+		for (int by = minY; by < minY + height; by += BLOCK_SIZE) {
+			for (int bx = minX; bx < minX + width; bx += BLOCK_SIZE) {
+				if (in_p.readByte() == 0) {
+					continue;
+				}
+				for (int y = 0; y < BLOCK_SIZE; y++) {
+					for (int x = 0; x < BLOCK_SIZE; x++) {
+						double value = in_p.readDouble();
+						if (value != 0) {
+							store.set(bx + x, by + y, value);
+						}
+					}
+				}
+			}
+		}
+		return(store);
+	}
+
+	public GridView getCells() {
+		return(cells);
+	}
+
+	public double getRatio() {
+		return(mapRatio);
+	}
+
+	public int getMapWidth() {
+		return(mapWidth);
+	}
+
+	public int getMapHeight() {
+		return(mapHeight);
+	}
+
+	public int getScanCount() {
+		return(scanCount);
+	}
+
+	public int getCommandCount() {
+		return(commandCount);
+	}
+
+	public Point2D.Double getBotPosition() {
+		return(new Point2D.Double(botPosition.getX(), botPosition.getY()));
+	}
+
+	public double getBotOrientation() {
+		return(botOrientation);
+	}
+
+	public ArrayList<Line2D.Double> getLines() {
+		return(new ArrayList<Line2D.Double>(lines));
+	}
+}
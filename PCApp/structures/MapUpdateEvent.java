@@ -0,0 +1,55 @@
+/*
+ * MapUpdateEvent.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Flight recorder event for a scan integrated into an OGM by updateMap or
+ * simpleMap, so integration spikes can be lined up with link stalls and
+ * garbage collection on one timeline.
+ */
+
+package mattadshead.swansea3.dissertation.structures;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("mattadshead.swansea3.dissertation.MapUpdate")
+@Label("Map Update")
+@Category({"Dissertation", "Map"})
+@Description("Scan integrated into the occupancy grid map")
+class MapUpdateEvent extends Event {
+
+	@Label("Method")
+	@Description("updateMap or simpleMap")
+	String method;
+
+	@Label("Sample Rate")
+	@Description("Degrees between readings, negative for a reverse sweep")
+	int sampleRate;
+
+	@Label("Readings")
+	int readings;
+
+	@Label("Cell Updates")
+	@Description("Cell updates evaluated, or cells set by simpleMap")
+	long cellUpdates;
+
+	@Label("Parallel")
+	@Description("Whether tiles were integrated on a fork join pool")
+	boolean parallel;
+
+	@Label("X")
+	@Description("Map position of the scan, in mm")
+	double x;
+
+	@Label("Y")
+	@Description("Map position of the scan, in mm")
+	double y;
+
+	@Label("Heading")
+	@Description("Map heading of the scan, in degrees")
+	double heading;
+}
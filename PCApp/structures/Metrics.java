@@ -0,0 +1,312 @@
+/*
+ * Metrics.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Registry of counters, histograms and gauges for seeing where the time goes
+ * in a mapping cycle.
+ *
+ * Classes get their metrics once, by name, and keep them in static fields.
+ * Metrics are off unless enabled, and every record first checks the one
+ * enabled flag, so code left instrumented costs a field read per record.
+ * Time a stage by taking Metrics.start() before it and passing that to the
+ * histogram's stop method after it. A stage started while metrics are off
+ * is not recorded.
+ *
+ * Names are dot separated, starting with the area measured:
+ * nxt.move, nxt.scan, nxt.moveScan - Controller commands to the NXT, ns.
+ * link.roundTrip - Pipelined request sent to reply read, ns.
+ * link.pending - Pipelined requests waiting for replies.
+ * link.bytesIn, link.bytesOut - Bytes over the transport, counted only on
+ * connections made while metrics are enabled.
+ * map.updateMap, map.simpleMap - Scan integration, ns.
+ * map.cellUpdates - Cell updates evaluated per integrated scan.
+ * map.paint - Drawing the map, ns.
+ * session.load, session.save - Loading and saving sessions, ns.
+ * session.journalSync - Writing and syncing one journal batch, ns.
+ *
+ * The metrics can be written to a CSV file or read over JMX once
+ * registerMBean has been called.
+ */
+
+package mattadshead.swansea3.dissertation.structures;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public class Metrics {
+
+	//Symbolic constants for MBean name and percentiles reported for histograms.
+	public static final String	MBEAN_NAME = "mattadshead.swansea3.dissertation:type=Metrics";
+	private static final int[]	PERCENTILES = {50, 90, 99};
+
+	private static volatile boolean enabled = false;
+	//Metrics by name, so reports list them in name order.
+	private static ConcurrentSkipListMap<String, Object> metrics = new ConcurrentSkipListMap<String, Object>();
+
+	/*
+	 * Count of events or amounts, such as bytes sent.
+	 */
+	public static class Counter {
+		private String unit;
+		private LongAdder value = new LongAdder();
+
+		private Counter(String unit_p) {
+			unit = unit_p;
+		}
+
+		//Adds to the count, if metrics are enabled.
+		public void add(long amount_p) {
+			if (enabled) {
+				value.add(amount_p);
+			}
+		}
+
+		public long getValue() {
+			return(value.sum());
+		}
+
+		public String getUnit() {
+			return(unit);
+		}
+	}
+
+	/*
+	 * Value read when the metrics are reported, such as a queue length.
+	 */
+	public static interface Gauge {
+		public double getValue();
+	}
+
+	private Metrics() {
+	}
+
+	public static boolean isEnabled() {
+		return(enabled);
+	}
+
+	/*
+	 * Mutator method for recording metrics.
+	 * Parameters:
+	 * enabled_p - Whether metrics are recorded.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public static boolean setEnabled(boolean enabled_p) {
+		enabled = enabled_p;
+		return true;
+	}
+
+	/*
+	 * Method to get the start time of a stage to time.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Long representing current time in ns, or 0 if metrics are disabled.
+	 */
+	public static long start() {
+		return(enabled ? System.nanoTime() : 0);
+	}
+
+	/*
+	 * Method to get a histogram, created on first use.
+	 * Parameters:
+	 * name_p - Metric name.
+	 * unit_p - Unit of values.
+	 * Returns:
+	 * Histogram with the name.
+	 */
+	public static Histogram histogram(String name_p, String unit_p) {
+		Object metric = metrics.get(name_p);
+		if (metric == null) {
+			Histogram histogram = new Histogram(name_p, unit_p);
+			metric = metrics.putIfAbsent(name_p, histogram);
+			if (metric == null) {
+				return(histogram);
+			}
+		}
+		return((Histogram)metric);
+	}
+
+	/*
+	 * Method to get a counter, created on first use.
+	 * Parameters:
+	 * name_p - Metric name.
+	 * unit_p - Unit of the count.
+	 * Returns:
+	 * Counter with the name.
+	 */
+	public static Counter counter(String name_p, String unit_p) {
+		Object metric = metrics.get(name_p);
+		if (metric == null) {
+			Counter counter = new Counter(unit_p);
+			metric = metrics.putIfAbsent(name_p, counter);
+			if (metric == null) {
+				return(counter);
+			}
+		}
+		return((Counter)metric);
+	}
+
+	/*
+	 * Method to set the gauge reported under a name, replacing any earlier
+	 * one, such as the gauge of a closed connection.
+	 * Parameters:
+	 * name_p - Metric name.
+	 * gauge_p - Gauge to read.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public static boolean gauge(String name_p, Gauge gauge_p) {
+		metrics.put(name_p, gauge_p);
+		return true;
+	}
+
+	/*
+	 * Method to get current metric values. A counter or gauge gives one
+	 * value under its name, a histogram gives its count, mean, max and
+	 * percentiles as name.count, name.mean, name.max, name.p50 and so on.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * SortedMap of values by name.
+	 */
+	public static SortedMap<String, Double> getValues() {
+		TreeMap<String, Double> values = new TreeMap<String, Double>();
+		for (Map.Entry<String, Object> e : metrics.entrySet()) {
+			Object metric = e.getValue();
+			if (metric instanceof Histogram) {
+				Histogram h = (Histogram)metric;
+				values.put(e.getKey() + ".count", (double)h.getCount());
+				values.put(e.getKey() + ".mean", h.getMean());
+				values.put(e.getKey() + ".max", (double)h.getMax());
+				for (int p : PERCENTILES) {
+					values.put(e.getKey() + ".p" + p, (double)h.getPercentile(p));
+				}
+			} else if (metric instanceof Counter) {
+				values.put(e.getKey(), (double)((Counter)metric).getValue());
+			} else {
+				values.put(e.getKey(), ((Gauge)metric).getValue());
+			}
+		}
+		return(values);
+	}
+
+	/*
+	 * Method to clear all counters and histograms.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public static boolean reset() {
+		for (Object metric : metrics.values()) {
+			if (metric instanceof Histogram) {
+				((Histogram)metric).reset();
+			} else if (metric instanceof Counter) {
+				((Counter)metric).value.reset();
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Method to write the metrics to a CSV file, one metric per line. The
+	 * file is moved into place once written, so readers never see part of it.
+	 * Parameters:
+	 * filepath_p - Path of file to write.
+	 * Returns:
+	 * None
+	 */
+	public static void write(String filepath_p) throws IOException {
+		File file = new File(filepath_p);
+		File temp = new File(filepath_p + ".tmp");
+		PrintWriter out = new PrintWriter(new FileWriter(temp));
+		try {
+			out.println("name,type,unit,count,mean,p50,p90,p99,max,value");
+			for (Map.Entry<String, Object> e : metrics.entrySet()) {
+				Object metric = e.getValue();
+				if (metric instanceof Histogram) {
+					Histogram h = (Histogram)metric;
+					out.println(e.getKey() + ",histogram," + h.getUnit() + "," + h.getCount() + ","
+							+ String.format("%.1f", h.getMean()) + "," + h.getPercentile(50) + ","
+							+ h.getPercentile(90) + "," + h.getPercentile(99) + "," + h.getMax() + ",");
+				} else if (metric instanceof Counter) {
+					Counter c = (Counter)metric;
+					out.println(e.getKey() + ",counter," + c.getUnit() + ",,,,,,," + c.getValue());
+				} else {
+					out.println(e.getKey() + ",gauge,,,,,,,," + ((Gauge)metric).getValue());
+				}
+			}
+		} finally {
+			out.close();
+		}
+		if (out.checkError()) {
+			throw new IOException("Metrics > write - Error: Writing to file failed.");
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/*
+	 * Method to register the metrics with the platform MBean server as
+	 * MBEAN_NAME, if not already registered.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public static synchronized boolean registerMBean() {
+		try {
+			ObjectName name = new ObjectName(MBEAN_NAME);
+			if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), name);
+			}
+			return true;
+		} catch (JMException e) {
+			System.out.println("Metrics > registerMBean - Error: " + e.getMessage());
+			return false;
+		}
+	}
+
+	//Management view of the registry.
+	private static class Bean implements MetricsMXBean {
+		public boolean isEnabled() {
+			return(Metrics.isEnabled());
+		}
+
+		public void setEnabled(boolean enabled_p) {
+			Metrics.setEnabled(enabled_p);
+		}
+
+		public Map<String, Double> getValues() {
+			return(Metrics.getValues());
+		}
+
+		public void reset() {
+			Metrics.reset();
+		}
+
+		public boolean writeReport(String filepath_p) {
+			try {
+				write(filepath_p);
+				return true;
+			} catch (IOException e) {
+				System.out.println("Metrics > writeReport - Error: Writing to file failed.");
+				return false;
+			}
+		}
+	}
+}
@@ -0,0 +1,34 @@
+/*
+ * MetricsMXBean.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Management interface of Metrics, registered with the platform MBean
+ * server by Metrics.registerMBean so JConsole or VisualVM can read the
+ * metrics of a running application and turn them on or off.
+ */
+
+package mattadshead.swansea3.dissertation.structures;
+
+import java.util.Map;
+
+public interface MetricsMXBean {
+
+	public boolean isEnabled();
+
+	public void setEnabled(boolean enabled_p);
+
+	/*
+	 * Accessor method for current metric values, as given by
+	 * Metrics.getValues.
+	 */
+	public Map<String, Double> getValues();
+
+	public void reset();
+
+	/*
+	 * Method to write the metrics report to a file on the application's
+	 * machine, as Metrics.write does.
+	 */
+	public boolean writeReport(String filepath_p);
+}
@@ -4,11 +4,22 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
-import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.swing.Timer;
 
 import lejos.robotics.navigation.Pose;
 
@@ -16,6 +27,11 @@ public class OGM extends Visualisation {
 	//Constants.
 	private final double	MATRIX_INIT = 0;
 	private final String 	VIS_TYPE = "Occupancy Grid Map";
+	//Time taken to integrate and draw, and cell updates evaluated per integrated scan.
+	private static final Histogram	UPDATE_TIME = Metrics.histogram("map.updateMap", Histogram.NANOSECONDS),
+									SIMPLE_TIME = Metrics.histogram("map.simpleMap", Histogram.NANOSECONDS),
+									PAINT_TIME = Metrics.histogram("map.paint", Histogram.NANOSECONDS),
+									CELL_UPDATES = Metrics.histogram("map.cellUpdates", Histogram.CELLS);
 	
 	/*
 	 * d1, d2, and d3 constants used in determining weight of updates.
@@ -26,9 +42,9 @@ public class OGM extends Visualisation {
 	 * (d3-d1) represents the length in mm of the range over which the weight
 	 * decreases linearly from +s() to the prior value.
 	 */
-	private final double	D1 = 5,
-							D2 = 35,
-							D3 = 37;
+	private double	D1 = 5,
+					D2 = 35,
+					D3 = 37;
 	
 	/*
 	 * CONE_FACTOR constant used in the sensor distribution equation.
@@ -40,15 +56,88 @@ public class OGM extends Visualisation {
 	 */
 	private double CONE_FACTOR = 2;
 	
+	//Integration mode constants for updateMap.
+	public final int	INTEGRATE_FULL = 0,
+						INTEGRATE_RAY = 1;
+	
+	/*
+	 * INTENSITY_CUTOFF constant used by ray traced integration.
+	 * Only cells whose cone term exp(-(CONE_FACTOR * theta)^2) is at least this
+	 * value are visited, which at coneFactor = 2 is a cone of +/- 1.86 degrees.
+	 * The inverse sensor model of a skipped cell is within 0.4 * INTENSITY_CUTOFF
+	 * of the prior, so each reading changes its log odds by less than
+	 * 1.6 * INTENSITY_CUTOFF. This is the tolerance between the two modes.
+	 */
+	private final double	INTENSITY_CUTOFF = 1e-6;
+	
+	//Selected integration mode for updateMap.
+	private int integrationMode = INTEGRATE_FULL;
+	
+	//Inverse sensor model lookup tables, rebuilt when sensor constants change.
+	private SensorKernel kernel;
+	//Use lookup tables instead of evaluating the inverse sensor model.
+	private boolean useKernel = false;
+	
+	/*
+	 * TILE_SIZE constant used by parallel integration.
+	 * The map is split into tiles of at most TILE_SIZE x TILE_SIZE cells and
+	 * each tile is integrated by one worker, so no cell is written by two
+	 * threads. Every tile applies readings in scan order, so each cell is
+	 * summed in the same order as the sequential path and the result is
+	 * bit-identical.
+	 */
+	private final int		TILE_SIZE = 32;
+	
+	/*
+	 * MIN_PARALLEL_UPDATES constant used by parallel integration.
+	 * Scans expected to evaluate fewer cell updates than this are integrated
+	 * on the calling thread, as forking the tiles would cost more than it
+	 * saves. Small ray traced scans fall below it.
+	 */
+	private final long		MIN_PARALLEL_UPDATES = 1 << 17;
+	
+	//Pool for parallel integration, null for sequential integration.
+	private ForkJoinPool integrationPool;
+	
+	//Minimum time in ms between repaints of changed cells, about 30 frames per second.
+	private final int		FRAME_INTERVAL = 33;
+	
+	//Cells changed since they were last repainted.
+	private DirtyRegion dirtyRegion = new DirtyRegion();
+	//Cells written since the last snapshot was published.
+	private DirtyRegion changedCells = new DirtyRegion();
+	//Last published copy of the grid, read by other threads without locks.
+	private AtomicReference<GridSnapshot> snapshot = new AtomicReference<GridSnapshot>();
+	//Scans integrated into the grid, and into the last published snapshot, guarded by the map.
+	private int integratedScans = 0, snapshotScans = 0;
+	//Timer repainting changed cells on the event thread.
+	private Timer frameTimer;
+	//Backing image of the grid, one pixel per cell, with coarser levels for zooming out.
+	private GridRaster raster;
+	
+	//Symbolic constants for view zoom limits and zoom per wheel step.
+	private final double	MIN_ZOOM = 1.0/4096,
+							MAX_ZOOM = 64,
+							ZOOM_STEP = 1.25;
+	//View zoom, 1 draws cells at the cell size.
+	private double zoom = 1;
+	//View pan in pixels from the centred map.
+	private int panX = 0, panY = 0;
+	
 	//Measurement and move history, in case needed.
 	private ArrayList<DataScan> scanList;
 	private ArrayList<MoveCommand> commandList;
+	//Number of move commands made, kept with or without history.
+	private int commandCount = 0;
+	//Whether scans, move commands and path lines are added to the history.
+	private boolean keepHistory = true;
 	
 	//List of lines for rendering robot path.
 	private ArrayList<Line2D.Double> lineList = new ArrayList<Line2D.Double>();
 	
-	//Map state matrix.
-	private double[][] matrix;
+	//Map state, log odds value for each cell. Only the integrating thread
+	//uses it, everything else reads the published snapshot.
+	private GridStore grid;
 	
 	//Origin point and current bot position.
 	private Point2D.Double 	originPoint,
@@ -75,22 +164,75 @@ public class OGM extends Visualisation {
 	 * None
 	 */
 	public OGM(int cellSize_p, double ratio_p, int height_p, int width_p) {
+		this(cellSize_p, ratio_p, new DoubleGridStore(width_p, height_p));
+	}
+	
+	/*
+	 * Class constructor for a given bounded grid store.
+	 * Parameters:
+	 * cellSize_p - Drawn width and height of cells in pixels.
+	 * ratio_p - Height and width of real world area represented by a cell.
+	 * grid_p - Store for cell values, its size sets the map size.
+	 * Returns:
+	 * None
+	 */
+	public OGM(int cellSize_p, double ratio_p, GridStore grid_p) {
+		this(cellSize_p, ratio_p, grid_p.getHeight(), grid_p.getWidth(), grid_p);
+	}
+	
+	/*
+	 * Class constructor for a given grid store.
+	 * For a bounded store the map size is the store size. For an unbounded
+	 * store the height and width only place the origin and the initial view,
+	 * and the map grows wherever readings land, including negative cells.
+	 * Parameters:
+	 * cellSize_p - Drawn width and height of cells in pixels.
+	 * ratio_p - Height and width of real world area represented by a cell.
+	 * height_p - Height of the map in cells.
+	 * width_p - Width of the map in cells.
+	 * grid_p - Store for cell values.
+	 * Returns:
+	 * None
+	 */
+	public OGM(int cellSize_p, double ratio_p, int height_p, int width_p, GridStore grid_p) {
 		super();
 		visType = VIS_TYPE;
 		setBackground(Color.BLACK);
 		
 		cellSize  = cellSize_p;
 		mapRatio = ratio_p;
-		mapHeight = height_p;
-		mapWidth = width_p;
-		
-		matrix = new double[mapWidth][mapHeight];
-		for (int i = 0; i < mapWidth; i++) {
-			for (int j = 0; j < mapHeight; j++) {
-				matrix[i][j] = MATRIX_INIT;
+		grid = grid_p;
+		if (grid.isBounded()) {
+			mapHeight = grid.getHeight();
+			mapWidth = grid.getWidth();
+			for (int i = 0; i < mapWidth; i++) {
+				for (int j = 0; j < mapHeight; j++) {
+					grid.set(i, j, MATRIX_INIT);
+				}
 			}
+			changedCells.markCells(0, 0, mapWidth-1, mapHeight-1);
+		} else {
+			mapHeight = height_p;
+			mapWidth = width_p;
 		}
 		
+		//Publish first snapshot.
+		snapshot.set(new GridSnapshot(grid));
+		publishSnapshot();
+		//Create backing image, tiles are drawn from the snapshot when first painted.
+		raster = new GridRaster(snapshot.get());
+		//Pan and zoom view with the mouse.
+		ViewListener viewListener = new ViewListener();
+		addMouseListener(viewListener);
+		addMouseMotionListener(viewListener);
+		addMouseWheelListener(viewListener);
+		//Create frame timer, started when the map is added to the GUI.
+		frameTimer = new Timer(FRAME_INTERVAL, new ActionListener() {
+			public void actionPerformed(ActionEvent ae) {
+				repaintDirty();
+			}
+		});
+		
 		originPoint = new Point2D.Double(((mapWidth * mapRatio)/2), ((mapHeight * mapRatio)/2));
 		botPos = originPoint;
 		botOrientation = 0;
@@ -135,10 +277,23 @@ public class OGM extends Visualisation {
 	 * Point representing measurement point.
 	 */
 	public Point2D.Double getMeasurementPoint(int range_p, double heading_p) {
+		return(getMeasurementPoint(botPos, range_p, heading_p));
+	}
+	
+	/*
+	 * Method to get measurement point given sensor position, range and heading.
+	 * Parameters:
+	 * origin_p - Real world point the reading was taken from.
+	 * range_p - Range value.
+	 * heading_p - Heading value.
+	 * Returns:
+	 * Point representing measurement point.
+	 */
+	public Point2D.Double getMeasurementPoint(Point2D.Double origin_p, int range_p, double heading_p) {
 		double x = (range_p * (Math.sin(Math.toRadians(heading_p))));
 		double y = (range_p * (Math.cos(Math.toRadians(heading_p))));
-		x += botPos.getX();
-		y += botPos.getY();
+		x += origin_p.getX();
+		y += origin_p.getY();
 		Point2D.Double coord = new Point2D.Double(x, y);
 		return coord;
 	}
@@ -235,57 +390,965 @@ public class OGM extends Visualisation {
 		double weight = inverseSensorModel(z_p, d_p, theta_p);
 		if (weight != 0) {
 			//Perform recursive update.
-			double oldVal = getOccupancy(cell_p);
+			//Read and write working grid, published once the scan is integrated.
+			double oldVal = grid.get(cell_p.x-1, cell_p.y-1);
 			double invSen = Math.log(weight/(1-weight));
 			double newVal = invSen + oldVal;
 			//Set cell value.
-			setOccupancy(cell_p, newVal);
+			grid.set(cell_p.x-1, cell_p.y-1, newVal);
 		}
 		return true;
 	}
 	
+	/*
+	 * Method to integrate a scan into the map using the selected integration mode.
+	 * Parameters:
+	 * scan_p - Scan to integrate.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
 	public boolean updateMap(DataScan scan_p) {
+		long start = Metrics.start();
+		MapUpdateEvent event = new MapUpdateEvent();
+		event.begin();
 		//Add scan to scan history.
-		scanList.add(scan_p);
-		//Get variables.
-		int[] values = scan_p.getValues();
-		int rate = scan_p.getSRate();
-		double angle = scan_p.getHeading();
+		if (keepHistory) {
+			scanList.add(scan_p);
+		}
+		//Rebuild lookup tables if sensor constants have changed.
+		if (useKernel && ((kernel == null) || !kernel.matches(D1, D2, D3, CONE_FACTOR, INTENSITY_CUTOFF))) {
+			kernel = new SensorKernel(D1, D2, D3, CONE_FACTOR, INTENSITY_CUTOFF);
+		}
+		//Calculate beam geometry once, shared by all tiles.
+		ScanBeams beams = new ScanBeams(scan_p);
+		int[] region = getIntegrationRegion(beams);
+		long updates;
+		boolean parallel = (integrationPool != null) && (getUpdateEstimate(beams, region) >= MIN_PARALLEL_UPDATES);
+		if (parallel) {
+			TileTask task = new TileTask(beams, region[0], region[1], region[2], region[3]);
+			//On one of the pool's own workers, split tiles in place for idle workers to steal.
+			if (ForkJoinTask.getPool() == integrationPool) {
+				updates = task.invoke();
+			} else {
+				updates = integrationPool.invoke(task);
+			}
+		} else {
+			updates = integrateRegion(beams, region[0], region[1], region[2], region[3]);
+		}
+		markIntegrated(beams, region);
+		synchronized (this) {
+			integratedScans++;
+		}
+		publishSnapshot();
+		CELL_UPDATES.record(updates);
+		UPDATE_TIME.stop(start);
+		commitEvent(event, "updateMap", scan_p, updates, parallel);
+		return true;
+	}
+	
+	/*
+	 * Method to commit the flight recorder event of an integrated scan, if
+	 * it is being recorded.
+	 * Parameters:
+	 * event_p - Event begun when integration started.
+	 * method_p - Name of integrating method.
+	 * scan_p - Scan integrated.
+	 * updates_p - Cell updates made.
+	 * parallel_p - Whether tiles were integrated on the integration pool.
+	 * Returns:
+	 * None
+	 */
+	private void commitEvent(MapUpdateEvent event_p, String method_p, DataScan scan_p, long updates_p,
+			boolean parallel_p) {
+		if (event_p.shouldCommit()) {
+			Point2D.Double origin = getScanOrigin(scan_p);
+			event_p.method = method_p;
+			event_p.sampleRate = scan_p.getAngleStep();
+			event_p.readings = scan_p.size();
+			event_p.cellUpdates = updates_p;
+			event_p.parallel = parallel_p;
+			event_p.x = origin.getX();
+			event_p.y = origin.getY();
+			event_p.heading = scan_p.getHeading();
+			event_p.commit();
+		}
+	}
+	
+	/*
+	 * Method to publish a snapshot of the grid including every cell written
+	 * since the last one, then mark the changed cells for repainting so the
+	 * renderer reads them from the new snapshot. Called by the writing
+	 * thread once its writes are complete.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * None
+	 */
+	private synchronized void publishSnapshot() {
+		snapshotScans = integratedScans;
+		ArrayList<Rectangle> changed = changedCells.drain();
+		if (changed.isEmpty()) {
+			return;
+		}
+		snapshot.set(snapshot.get().next(grid, changed));
+		for (Rectangle r : changed) {
+			dirtyRegion.markCells(r.x, r.y, r.x + r.width - 1, r.y + r.height - 1);
+		}
+	}
+	
+	/*
+	 * Accessor method for the last published snapshot of the grid. Snapshots
+	 * never change, so any thread can read one while scans are integrated.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * GridSnapshot of the map after the last completed update.
+	 */
+	public GridSnapshot getSnapshot() {
+		return(snapshot.get());
+	}
+	
+	/*
+	 * Method to take a checkpoint of the map, so a session can be loaded
+	 * without integrating every scan again. Must be called on the event
+	 * thread, which owns the bot state and path lines. Cells come from the
+	 * last published snapshot, so no cells are copied here.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * MapCheckpoint of the map.
+	 */
+	public MapCheckpoint createCheckpoint() {
+		GridSnapshot cells;
+		int scans;
+		//Take snapshot and its scan count together.
+		synchronized (this) {
+			cells = snapshot.get();
+			scans = snapshotScans;
+		}
+		return(new MapCheckpoint(cells, mapRatio, mapWidth, mapHeight, scans, commandCount,
+				botPos, botOrientation, lineList));
+	}
+	
+	/*
+	 * Method to check whether nothing has been added to the map since it was
+	 * made. Must be called on the event thread while no scans are being
+	 * integrated.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Boolean representing whether the map has no cells, scans, moves or path.
+	 */
+	public boolean isFresh() {
+		synchronized (this) {
+			if ((integratedScans != 0) || (snapshot.get().getVersion() != 0) || !changedCells.isEmpty()) {
+				return false;
+			}
+		}
+		return(scanList.isEmpty() && (commandCount == 0) && lineList.isEmpty());
+	}
+	
+	/*
+	 * Method to restore a checkpoint into a new map of the same shape. Must be
+	 * called on the event thread while no scans are being integrated. Scan
+	 * and command history are not restored, and should be added back with
+	 * addScan and addCommand.
+	 * Parameters:
+	 * checkpoint_p - Checkpoint to restore.
+	 * Returns:
+	 * Boolean representing operation success, false if the map shape differs
+	 * or the map is not fresh.
+	 */
+	public boolean restoreCheckpoint(MapCheckpoint checkpoint_p) {
+		if ((checkpoint_p.getRatio() != mapRatio) || (checkpoint_p.getMapWidth() != mapWidth)
+				|| (checkpoint_p.getMapHeight() != mapHeight)) {
+			System.out.println("OGM > restoreCheckpoint - Error: Checkpoint map shape does not match map.");
+			return false;
+		}
+		//Cells already in the map would be overwritten.
+		if (!isFresh()) {
+			System.out.println("OGM > restoreCheckpoint - Error: Map already has cells or history.");
+			return false;
+		}
+		GridView cells = checkpoint_p.getCells();
+		int minX = cells.getMinX(), minY = cells.getMinY();
+		int maxX = minX + cells.getWidth() - 1, maxY = minY + cells.getHeight() - 1;
+		//Bounded stores only hold cells inside their extent.
+		if (grid.isBounded()) {
+			minX = Math.max(minX, 0);
+			minY = Math.max(minY, 0);
+			maxX = Math.min(maxX, mapWidth - 1);
+			maxY = Math.min(maxY, mapHeight - 1);
+		}
+		for (int y = minY; y <= maxY; y++) {
+			for (int x = minX; x <= maxX; x++) {
+				double value = cells.get(x, y);
+				if (value != 0) {
+					grid.set(x, y, value);
+				}
+			}
+		}
+		if ((maxX >= minX) && (maxY >= minY)) {
+			changedCells.markCells(minX, minY, maxX, maxY);
+		}
+		synchronized (this) {
+			integratedScans = checkpoint_p.getScanCount();
+		}
+		publishSnapshot();
+		lineList = checkpoint_p.getLines();
+		setBotOrientation(checkpoint_p.getBotOrientation());
+		setBotPosition(checkpoint_p.getBotPosition());
+		return true;
+	}
+	
+	/*
+	 * Method to mark the cells a scan may have changed for publishing.
+	 * Ray traced scans only mark the blocks covering each cone.
+	 * Parameters:
+	 * beams_p - Beam geometry of integrated scan.
+	 * region_p - Block of cells the scan was integrated into.
+	 * Returns:
+	 * None
+	 */
+	private void markIntegrated(ScanBeams beams_p, int[] region_p) {
+		if ((integrationMode == INTEGRATE_RAY) && beams_p.narrow) {
+			for (int i = 0; i < beams_p.num; i++) {
+				Point first = getPointCell(new Point2D.Double(beams_p.minX[i], beams_p.minY[i]));
+				Point last = getPointCell(new Point2D.Double(beams_p.maxX[i], beams_p.maxY[i]));
+				int x0 = Math.max(region_p[0], first.x), y0 = Math.max(region_p[1], first.y);
+				int x1 = Math.min(region_p[2], last.x), y1 = Math.min(region_p[3], last.y);
+				if ((x0 <= x1) && (y0 <= y1)) {
+					changedCells.markCells(x0-1, y0-1, x1-1, y1-1);
+				}
+			}
+		} else {
+			changedCells.markCells(region_p[0]-1, region_p[1]-1, region_p[2]-1, region_p[3]-1);
+		}
+	}
+	
+	/*
+	 * Method to update the backing image for cells changed since the last
+	 * frame and repaint them. Called by the frame timer, so repaints are
+	 * issued at most once per FRAME_INTERVAL however often cells are written.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * None
+	 */
+	private void repaintDirty() {
+		//Drain before reading the snapshot. Cells are marked after their
+		//snapshot is published, so the snapshot read holds every drained cell.
+		ArrayList<Rectangle> dirty = dirtyRegion.drain();
+		raster.setGrid(snapshot.get());
+		for (Rectangle r : dirty) {
+			raster.update(r);
+			//Convert cell block to pixels, rows are drawn bottom up.
+			double scale = getScale();
+			int x = (int)Math.floor(getMapLeft() + (r.x*scale));
+			int y = (int)Math.floor(getMapBottom() - ((r.y+r.height)*scale));
+			repaint(x, y, (int)Math.ceil(r.width*scale) + 1, (int)Math.ceil(r.height*scale) + 1);
+		}
+	}
+	
+	@Override
+	public void addNotify() {
+		super.addNotify();
+		frameTimer.start();
+	}
+	
+	@Override
+	public void removeNotify() {
+		frameTimer.stop();
+		super.removeNotify();
+	}
+	
+	/*
+	 * Method to get the drawn width and height of cells at the current zoom.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Double representing cell size in pixels.
+	 */
+	private double getScale() {
+		return(cellSize*zoom);
+	}
+	
+	/*
+	 * Method to get the pixel column of the left edge of the map area,
+	 * which is centred in the component before panning.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Integer representing pixel column.
+	 */
+	private int getMapLeft() {
+		return((int)Math.floor((this.getWidth() - (mapWidth*getScale())) / 2) + panX);
+	}
+	
+	/*
+	 * Method to get the pixel row of the bottom edge of the map area,
+	 * which is centred in the component before panning.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Integer representing pixel row.
+	 */
+	private int getMapBottom() {
+		return((int)Math.floor((this.getHeight() + (mapHeight*getScale())) / 2) + panY);
+	}
+	
+	/*
+	 * Accessor method for view zoom.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Double representing zoom, 1 draws cells at the cell size.
+	 */
+	public double getZoom() {
+		return(zoom);
+	}
+	
+	/*
+	 * Mutator method for view zoom, keeping the cell under a pixel in place.
+	 * Parameters:
+	 * zoom_p - New zoom, limited to MIN_ZOOM to MAX_ZOOM.
+	 * x_p, y_p - Pixel to zoom about.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setZoom(double zoom_p, int x_p, int y_p) {
+		//Get cell position under pixel at old zoom.
+		double cellX = (x_p - getMapLeft()) / getScale();
+		double cellY = (getMapBottom() - y_p) / getScale();
+		zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom_p));
+		//Pan so cell position is back under pixel.
+		panX = 0;
+		panY = 0;
+		panX = (int)Math.round(x_p - (cellX * getScale())) - getMapLeft();
+		panY = (int)Math.round(y_p + (cellY * getScale())) - getMapBottom();
+		this.repaint();
+		return true;
+	}
+	
+	/*
+	 * Mutator method for view pan.
+	 * Parameters:
+	 * dx_p, dy_p - Pixels to move the map by.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean pan(int dx_p, int dy_p) {
+		panX += dx_p;
+		panY += dy_p;
+		this.repaint();
+		return true;
+	}
+	
+	/*
+	 * Method to return to the centred view at zoom 1.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean resetView() {
+		zoom = 1;
+		panX = 0;
+		panY = 0;
+		this.repaint();
+		return true;
+	}
+	
+	//Mouse listener inner class to pan by dragging and zoom with the wheel.
+	private class ViewListener extends MouseAdapter {
+		//Last pixel the mouse was dragged from.
+		private Point dragPoint;
+		
+		@Override
+		public void mousePressed(MouseEvent me) {
+			dragPoint = me.getPoint();
+		}
+		
+		@Override
+		public void mouseDragged(MouseEvent me) {
+			if (dragPoint != null) {
+				pan(me.getX() - dragPoint.x, me.getY() - dragPoint.y);
+			}
+			dragPoint = me.getPoint();
+		}
+		
+		@Override
+		public void mouseClicked(MouseEvent me) {
+			if (me.getClickCount() == 2) {
+				resetView();
+			}
+		}
+		
+		@Override
+		public void mouseWheelMoved(MouseWheelEvent mwe) {
+			//Wheel up zooms in.
+			setZoom(zoom * Math.pow(ZOOM_STEP, -mwe.getPreciseWheelRotation()), mwe.getX(), mwe.getY());
+		}
+	}
+	
+	/*
+	 * Method to get the block of cells a scan is integrated into. This is the
+	 * whole map for a bounded store. For an unbounded store it is the block
+	 * covering every reading's cone, joined with the cells already stored when
+	 * integrating every cell.
+	 * Parameters:
+	 * beams_p - Beam geometry of scan to integrate.
+	 * Returns:
+	 * Integer array of first column, first row, last column and last row.
+	 */
+	private int[] getIntegrationRegion(ScanBeams beams_p) {
+		if (grid.isBounded()) {
+			return (new int[] {1, 1, mapWidth, mapHeight});
+		}
+		//Get block covering cones.
+		double minX = beams_p.origin.getX(), maxX = beams_p.origin.getX();
+		double minY = beams_p.origin.getY(), maxY = beams_p.origin.getY();
+		for (int i = 0; i < beams_p.num; i++) {
+			minX = Math.min(minX, beams_p.minX[i]);
+			maxX = Math.max(maxX, beams_p.maxX[i]);
+			minY = Math.min(minY, beams_p.minY[i]);
+			maxY = Math.max(maxY, beams_p.maxY[i]);
+		}
+		Point first = getPointCell(new Point2D.Double(minX, minY));
+		Point last = getPointCell(new Point2D.Double(maxX, maxY));
+		int[] region = {first.x, first.y, last.x, last.y};
+		//Join stored cells when every cell is evaluated.
+		if (((integrationMode != INTEGRATE_RAY) || !beams_p.narrow) && (grid.getWidth() > 0)) {
+			region[0] = Math.min(region[0], grid.getMinX() + 1);
+			region[1] = Math.min(region[1], grid.getMinY() + 1);
+			region[2] = Math.max(region[2], grid.getMinX() + grid.getWidth());
+			region[3] = Math.max(region[3], grid.getMinY() + grid.getHeight());
+		}
+		return region;
+	}
+	
+	/*
+	 * Method to estimate the cell updates integrating a scan into a block of
+	 * cells will evaluate. Ray traced scans count the cells of each cone's
+	 * triangle, plus one cell per column for its edges, skipping cones
+	 * outside the block.
+	 * Parameters:
+	 * beams_p - Beam geometry of scan to integrate.
+	 * region_p - Block of cells to integrate into.
+	 * Returns:
+	 * Long representing estimated number of cell updates.
+	 */
+	private long getUpdateEstimate(ScanBeams beams_p, int[] region_p) {
+		if ((integrationMode != INTEGRATE_RAY) || !beams_p.narrow) {
+			return((long)Math.max(0, region_p[2] - region_p[0] + 1) * Math.max(0, region_p[3] - region_p[1] + 1)
+					* beams_p.num);
+		}
+		double updates = 0;
+		double cellArea = mapRatio * mapRatio;
+		for (int i = 0; i < beams_p.num; i++) {
+			//Skip cones outside the block.
+			int x0 = (int) Math.ceil((beams_p.minX[i] / mapRatio) + 0.5);
+			int x1 = (int) Math.floor((beams_p.maxX[i] / mapRatio) + 0.5);
+			int y0 = (int) Math.ceil((beams_p.minY[i] / mapRatio) + 0.5);
+			int y1 = (int) Math.floor((beams_p.maxY[i] / mapRatio) + 0.5);
+			if ((x1 < region_p[0]) || (x0 > region_p[2]) || (y1 < region_p[1]) || (y0 > region_p[3])) {
+				continue;
+			}
+			if (beams_p.z[i] > 0) {
+				int t = i * 3;
+				double ax = beams_p.triX[t + 1] - beams_p.triX[t], ay = beams_p.triY[t + 1] - beams_p.triY[t];
+				double bx = beams_p.triX[t + 2] - beams_p.triX[t], by = beams_p.triY[t + 2] - beams_p.triY[t];
+				updates += (Math.abs((ax * by) - (ay * bx)) / (2 * cellArea)) + (x1 - x0 + 1);
+			} else {
+				//Zero length beam covers its whole bounds.
+				updates += (double)(x1 - x0 + 1) * (y1 - y0 + 1);
+			}
+		}
+		return((long)updates);
+	}
+	
+	/*
+	 * Method to integrate a scan into a block of cells using the selected
+	 * integration mode.
+	 * Parameters:
+	 * beams_p - Beam geometry of scan to integrate.
+	 * x0_p, y0_p - First cell indices of the block.
+	 * x1_p, y1_p - Last cell indices of the block.
+	 * Returns:
+	 * Long representing number of cell updates evaluated.
+	 */
+	private long integrateRegion(ScanBeams beams_p, int x0_p, int y0_p, int x1_p, int y1_p) {
+		if ((integrationMode == INTEGRATE_RAY) && beams_p.narrow) {
+			return(integrateRayTraced(beams_p, x0_p, y0_p, x1_p, y1_p));
+		} else {
+			return(integrateFull(beams_p, x0_p, y0_p, x1_p, y1_p));
+		}
+	}
+	
+	/*
+	 * Method to get the position a scan was taken from. Scans are integrated
+	 * at their recorded position rather than the current bot position, so
+	 * the bot can move on while earlier scans are still being integrated.
+	 * Parameters:
+	 * scan_p - Scan to integrate.
+	 * Returns:
+	 * Point representing scan position, the bot position if none was recorded.
+	 */
+	private Point2D.Double getScanOrigin(DataScan scan_p) {
+		Point2D.Double origin = scan_p.getRelativePosition();
+		if (origin == null) {
+			origin = botPos;
+		}
+		return(origin);
+	}
+	
+	/*
+	 * Beam geometry for each reading of a scan. Calculated once before
+	 * integration and only read afterwards, so tiles can share it.
+	 */
+	private class ScanBeams {
+		//Scan the beams belong to.
+		private DataScan scan;
+		//Position the scan was taken from.
+		private Point2D.Double origin;
+		//Number of readings.
+		private int num;
+		//Whether the cone is narrow enough to trace, under 90 degrees.
+		private boolean narrow;
+		//Measurement point and range of each reading.
+		private Point2D.Double[] mPoint;
+		private double[] z;
+		//Max range readings update free space only.
+		private boolean[] maxRange;
+		//Range passed to the inverse sensor model and distance limit of updates.
+		private double[] modelRange, limit;
+		//Unit beam direction.
+		private double[] beamX, beamY;
+		//Cone triangle corners, three per reading, and cone bounds.
+		private double[] triX, triY;
+		private double[] minX, maxX, minY, maxY;
+		
+		public ScanBeams(DataScan scan_p) {
+			scan = scan_p;
+			int[] values = scan.getValues();
+			//Signed by sweep direction, so reverse sweeps step backwards.
+			int rate = scan.getAngleStep();
+			double heading = scan.getHeading();
+			origin = getScanOrigin(scan);
+			double bx = origin.getX();
+			double by = origin.getY();
+			double coneAngle = getConeAngle();
+			double coneRad = Math.toRadians(coneAngle);
+			narrow = (coneAngle < 90);
+			
+			num = values.length;
+			mPoint = new Point2D.Double[num];
+			z = new double[num];
+			maxRange = new boolean[num];
+			modelRange = new double[num];
+			limit = new double[num];
+			beamX = new double[num];
+			beamY = new double[num];
+			triX = new double[num * 3];
+			triY = new double[num * 3];
+			minX = new double[num];
+			maxX = new double[num];
+			minY = new double[num];
+			maxY = new double[num];
+			
+			//Iterate through scan readings.
+			for (int i = 0; i < num; i++) {
+				//Take the angle from the reading's index, so it has no
+				//rounding drift from earlier readings.
+				double angle = (heading + ((double)i * rate)) % 360;
+				if (angle < 0) {
+					angle += 360;
+				}
+				//Calculate measurement point and beam length.
+				mPoint[i] = getMeasurementPoint(origin, values[i], angle);
+				z[i] = getDistance(origin, mPoint[i]);
+				//Max range values update free space only, up to 800mm.
+				maxRange[i] = (values[i] >= 790);
+				modelRange[i] = maxRange[i] ? 800 : z[i];
+				limit[i] = maxRange[i] ? 800 : Double.MAX_VALUE;
+				double reach = maxRange[i] ? 800 : (z[i] + D3);
+				
+				//Get unit beam direction. A zero length beam takes the
+				//direction getTheta gives it, pointing along -x.
+				if (z[i] > 0) {
+					beamX[i] = (mPoint[i].getX() - bx) / z[i];
+					beamY[i] = (mPoint[i].getY() - by) / z[i];
+				} else {
+					beamX[i] = -1;
+					beamY[i] = 0;
+				}
+				
+				//Define cone triangle, edges long enough to cover the cone arc.
+				triX[i * 3] = bx;
+				triY[i * 3] = by;
+				if ((z[i] > 0) && narrow) {
+					double beam = Math.atan2(mPoint[i].getX() - bx, mPoint[i].getY() - by);
+					double edge = reach / Math.cos(coneRad);
+					triX[(i * 3) + 1] = bx + (edge * Math.sin(beam - coneRad));
+					triY[(i * 3) + 1] = by + (edge * Math.cos(beam - coneRad));
+					triX[(i * 3) + 2] = bx + (edge * Math.sin(beam + coneRad));
+					triY[(i * 3) + 2] = by + (edge * Math.cos(beam + coneRad));
+					minX[i] = Math.min(bx, Math.min(triX[(i * 3) + 1], triX[(i * 3) + 2]));
+					maxX[i] = Math.max(bx, Math.max(triX[(i * 3) + 1], triX[(i * 3) + 2]));
+					minY[i] = Math.min(by, Math.min(triY[(i * 3) + 1], triY[(i * 3) + 2]));
+					maxY[i] = Math.max(by, Math.max(triY[(i * 3) + 1], triY[(i * 3) + 2]));
+				} else {
+					//Zero length beam has no direction, so cover the whole reach around the bot.
+					minX[i] = bx - reach;
+					maxX[i] = bx + reach;
+					minY[i] = by - reach;
+					maxY[i] = by + reach;
+				}
+			}
+		}
+	}
+	
+	/*
+	 * Fork join task integrating a scan into a block of cells. Blocks larger
+	 * than TILE_SIZE are split in half along their longer side.
+	 */
+	@SuppressWarnings("serial")
+	private class TileTask extends RecursiveTask<Long> {
+		private ScanBeams beams;
+		private int x0, y0, x1, y1;
+		
+		public TileTask(ScanBeams beams_p, int x0_p, int y0_p, int x1_p, int y1_p) {
+			beams = beams_p;
+			x0 = x0_p;
+			y0 = y0_p;
+			x1 = x1_p;
+			y1 = y1_p;
+		}
+		
+		//Returns the number of cell updates evaluated in the block.
+		@Override
+		protected Long compute() {
+			int width = x1 - x0 + 1;
+			int height = y1 - y0 + 1;
+			TileTask first, second;
+			if ((width <= TILE_SIZE) && (height <= TILE_SIZE)) {
+				return(integrateRegion(beams, x0, y0, x1, y1));
+			} else if (width >= height) {
+				int mid = x0 + (width / 2);
+				first = new TileTask(beams, x0, y0, mid - 1, y1);
+				second = new TileTask(beams, mid, y0, x1, y1);
+			} else {
+				int mid = y0 + (height / 2);
+				first = new TileTask(beams, x0, y0, x1, mid - 1);
+				second = new TileTask(beams, x0, mid, x1, y1);
+			}
+			invokeAll(first, second);
+			return(first.join() + second.join());
+		}
+	}
+	
+	/*
+	 * Accessor method for parallel integration pool.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Fork join pool used for integration, null if integration is sequential.
+	 */
+	public ForkJoinPool getIntegrationPool() {
+		return(integrationPool);
+	}
+	
+	/*
+	 * Mutator method for parallel integration pool.
+	 * Parameters:
+	 * pool_p - Fork join pool to integrate on, null for sequential integration.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setIntegrationPool(ForkJoinPool pool_p) {
+		integrationPool = pool_p;
+		return true;
+	}
+	
+	/*
+	 * Method to integrate a scan by evaluating every reading for every cell
+	 * in a block of cells.
+	 * Parameters:
+	 * beams_p - Beam geometry of scan to integrate.
+	 * x0_p, y0_p - First cell indices of the block.
+	 * x1_p, y1_p - Last cell indices of the block.
+	 * Returns:
+	 * Long representing number of cell updates evaluated.
+	 */
+	private long integrateFull(ScanBeams beams_p, int x0_p, int y0_p, int x1_p, int y1_p) {
+		//Every reading is evaluated for every cell of the block.
+		long updates = (long)Math.max(0, x1_p - x0_p + 1) * Math.max(0, y1_p - y0_p + 1) * beams_p.num;
+		if (isKernelActive()) {
+			//Iterate through map cells and readings.
+			for (int x = x0_p; x <= x1_p; x++) {
+				for (int y = y0_p; y <= y1_p; y++) {
+					for (int i = 0; i < beams_p.num; i++) {
+						updateCellKernel(x, y, beams_p, i);
+					}
+				}
+			}
+			return(updates);
+		}
 		//Iterate through map cells.
-		for (int x = 1; x <= mapWidth; x++) {
-			for (int y = 1; y <= mapHeight; y++) {
+		for (int x = x0_p; x <= x1_p; x++) {
+			for (int y = y0_p; y <= y1_p; y++) {
 				//Initialise update cell.
 				Point cell = new Point(x, y);
 				//Get cell centre point.
 				Point2D.Double cellCenter = getCellCentre(cell); 
-				//Iterate through scan readings.
-				for (int val : values) {
-					//Calculate measurement point.
-					Point2D.Double mPoint = getMeasurementPoint(val, angle);
+				double d = getDistance(beams_p.origin, cellCenter);
+				//Iterate through scan readings, each with its own beam data,
+				//so a cell gets the same updates however the map is tiled.
+				for (int i = 0; i < beams_p.num; i++) {
+					Point2D.Double mPoint = beams_p.mPoint[i];
 					//Calculate inverse sensor model parameters.
-					double theta = getTheta(mPoint, cellCenter, botPos);
-					double d = getDistance(botPos, cellCenter);
-					double z = getDistance(botPos, mPoint);				
+					double theta = getTheta(mPoint, cellCenter, beams_p.origin);
 					//If value not max then update normally.
-					if (val < 790) {
-						updateCell(mPoint, cell, theta, z, d);
+					if (!beams_p.maxRange[i]) {
+						updateCell(mPoint, cell, theta, beams_p.z[i], d);
 					} else {
 						//If value max then update free space only.
 						if (d < 800) {
 							updateCell(mPoint, cell, theta, 800, d);
 						}
 					}
-					//Increment angle.
-					angle += rate;
-					if (angle >= 360) {
-						angle -= 360;
+				}
+			}
+		}
+		return(updates);
+	}
+	
+	/*
+	 * Method to integrate a scan by visiting only the cells inside each
+	 * reading's cone. The cone is the triangle from the bot spanning
+	 * +/- getConeAngle() degrees around the beam and reaching z + D3 (or
+	 * the 800mm free space limit for max range readings). Cells outside
+	 * it get the inverse sensor model prior, so are skipped. Readings are
+	 * applied in scan order, so each cell is summed in the same order as
+	 * integrateFull.
+	 * Parameters:
+	 * beams_p - Beam geometry of scan to integrate.
+	 * x0_p, y0_p - First cell indices of the block.
+	 * x1_p, y1_p - Last cell indices of the block.
+	 * Returns:
+	 * Long representing number of cell updates evaluated.
+	 */
+	private long integrateRayTraced(ScanBeams beams_p, int x0_p, int y0_p, int x1_p, int y1_p) {
+		boolean kernelActive = isKernelActive();
+		long updates = 0;
+		double[] triX = beams_p.triX;
+		double[] triY = beams_p.triY;
+		//Iterate through scan readings.
+		for (int i = 0; i < beams_p.num; i++) {
+			//Get column range covered by cone, skip cones outside the block.
+			int xStart = Math.max(x0_p, (int) Math.ceil((beams_p.minX[i] / mapRatio) + 0.5));
+			int xEnd = Math.min(x1_p, (int) Math.floor((beams_p.maxX[i] / mapRatio) + 0.5));
+			int yFirst = Math.max(y0_p, (int) Math.ceil((beams_p.minY[i] / mapRatio) + 0.5));
+			int yLast = Math.min(y1_p, (int) Math.floor((beams_p.maxY[i] / mapRatio) + 0.5));
+			if ((xStart > xEnd) || (yFirst > yLast)) {
+				continue;
+			}
+			Point2D.Double mPoint = beams_p.mPoint[i];
+			double z = beams_p.z[i];
+			boolean maxRange = beams_p.maxRange[i];
+			
+			//Iterate through cone columns.
+			for (int x = xStart; x <= xEnd; x++) {
+				//Get cone span for column centre.
+				double cx = (x * mapRatio) - (mapRatio/2);
+				double minY, maxY;
+				if (z > 0) {
+					minY = Double.MAX_VALUE;
+					maxY = -Double.MAX_VALUE;
+					for (int e = 0; e < 3; e++) {
+						double px = triX[(i * 3) + e], py = triY[(i * 3) + e];
+						double qx = triX[(i * 3) + ((e + 1) % 3)], qy = triY[(i * 3) + ((e + 1) % 3)];
+						if ((cx >= Math.min(px, qx)) && (cx <= Math.max(px, qx))) {
+							if (px == qx) {
+								minY = Math.min(minY, Math.min(py, qy));
+								maxY = Math.max(maxY, Math.max(py, qy));
+							} else {
+								double ey = py + ((cx - px) * (qy - py) / (qx - px));
+								minY = Math.min(minY, ey);
+								maxY = Math.max(maxY, ey);
+							}
+						}
+					}
+				} else {
+					minY = beams_p.minY[i];
+					maxY = beams_p.maxY[i];
+				}
+				int yStart = Math.max(yFirst, (int) Math.ceil((minY / mapRatio) + 0.5));
+				int yEnd = Math.min(yLast, (int) Math.floor((maxY / mapRatio) + 0.5));
+				updates += Math.max(0, yEnd - yStart + 1);
+				
+				//Iterate through cells in column span.
+				for (int y = yStart; y <= yEnd; y++) {
+					if (kernelActive) {
+						updateCellKernel(x, y, beams_p, i);
+						continue;
+					}
+					//Initialise update cell and get cell centre point.
+					Point cell = new Point(x, y);
+					Point2D.Double cellCenter = getCellCentre(cell);
+					//Calculate inverse sensor model parameters.
+					double theta = getTheta(mPoint, cellCenter, beams_p.origin);
+					double d = getDistance(beams_p.origin, cellCenter);
+					//If value not max then update normally.
+					if (!maxRange) {
+						updateCell(mPoint, cell, theta, z, d);
+					} else {
+						//If value max then update free space only.
+						if (d < 800) {
+							updateCell(mPoint, cell, theta, 800, d);
+						}
 					}
 				}
 			}
 		}
+		return(updates);
+	}
+	
+	/*
+	 * Method to update a cell using the kernel lookup tables.
+	 * Parameters:
+	 * x_p, y_p - Cell indices.
+	 * beams_p - Beam geometry of scan.
+	 * index_p - Index of reading.
+	 * Returns:
+	 * None
+	 */
+	private void updateCellKernel(int x_p, int y_p, ScanBeams beams_p, int index_p) {
+		//Get cell centre relative to bot.
+		double dx = ((x_p * mapRatio) - (mapRatio/2)) - beams_p.origin.getX();
+		double dy = ((y_p * mapRatio) - (mapRatio/2)) - beams_p.origin.getY();
+		double d = Math.sqrt((dx*dx) + (dy*dy));
+		if (d >= beams_p.limit[index_p]) {
+			return;
+		}
+		double beamX = beams_p.beamX[index_p];
+		double beamY = beams_p.beamY[index_p];
+		double z = beams_p.modelRange[index_p];
+		if (d == 0) {
+			//Angle to a cell under the bot is undefined, use the model directly.
+			Point cell = new Point(x_p, y_p);
+			Point2D.Double mPoint = beams_p.mPoint[index_p];
+			updateCell(mPoint, cell, getTheta(mPoint, getCellCentre(cell), beams_p.origin), z, d);
+			return;
+		}
+		//Cells behind the bot are outside the cone.
+		if (((dx * beamX) + (dy * beamY)) <= 0) {
+			return;
+		}
+		double sinTheta = Math.abs((dx * beamY) - (dy * beamX)) / d;
+		double invSen = kernel.getIncrement(z, d, sinTheta);
+		if (invSen != 0) {
+			grid.set(x_p-1, y_p-1, invSen + grid.get(x_p-1, y_p-1));
+		}
+	}
+	
+	/*
+	 * Method to check whether lookup tables are used for integration.
+	 * The tables only cover cones narrower than 90 degrees, wider cones
+	 * fall back to evaluating the inverse sensor model.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Boolean representing whether lookup tables are used.
+	 */
+	private boolean isKernelActive() {
+		return (useKernel && (kernel != null) && (CONE_FACTOR > 0) && (getConeAngle() < 90));
+	}
+	
+	/*
+	 * Accessor method for lookup table use.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Boolean representing whether lookup tables are enabled.
+	 */
+	public boolean getKernelLookup() {
+		return(useKernel);
+	}
+	
+	/*
+	 * Mutator method for lookup table use.
+	 * Parameters:
+	 * useKernel_p - Whether to use lookup tables for integration.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setKernelLookup(boolean useKernel_p) {
+		useKernel = useKernel_p;
 		return true;
 	}
 	
+	/*
+	 * Method to get the half angle of the sensor cone used by ray traced
+	 * integration, outside which the cone term is below INTENSITY_CUTOFF.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Double representing cone half angle in degrees.
+	 */
+	public double getConeAngle() {
+		if (CONE_FACTOR <= 0) {
+			return 180;
+		}
+		return (Math.sqrt(-Math.log(INTENSITY_CUTOFF)) / CONE_FACTOR);
+	}
+	
+	/*
+	 * Accessor method for integration mode.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Integer representing integration mode.
+	 */
+	public int getIntegrationMode() {
+		return(integrationMode);
+	}
+	
+	/*
+	 * Mutator method for integration mode.
+	 * Parameters:
+	 * mode_p - INTEGRATE_FULL or INTEGRATE_RAY.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setIntegrationMode(int mode_p) {
+		if ((mode_p == INTEGRATE_FULL) || (mode_p == INTEGRATE_RAY)) {
+			integrationMode = mode_p;
+			return true;
+		} else {
+			System.out.println("OGM > setIntegrationMode - Error: Unknown integration mode.");
+			return false;
+		}
+	}
+	
+	/*
+	 * Method to get where a position recorded in a session falls in this map.
+	 * Sessions record scan positions in the coordinates of the map they were
+	 * mapped in, which centres the start pose in its initial area. Positions
+	 * are taken relative to the recorded start and placed from the centre of
+	 * this map, where updateBotState puts the start pose, so a session lines
+	 * up with its moves whatever shape of map it is loaded into.
+	 * Parameters:
+	 * recorded_p - Position recorded in the session.
+	 * start_p - Recorded position of the session start pose.
+	 * Returns:
+	 * Point representing the position in this map.
+	 */
+	public Point2D.Double getSessionPosition(Point2D.Double recorded_p, Point2D.Double start_p) {
+		return(new Point2D.Double(originPoint.getX() + (recorded_p.getX() - start_p.getX()),
+				originPoint.getY() + (recorded_p.getY() - start_p.getY())));
+	}
+	
 	public void updateBotState(Pose pose_p) {
 		double x = originPoint.getX() + pose_p.getX();
 		double y = originPoint.getY() + pose_p.getY();
@@ -295,85 +1358,104 @@ public class OGM extends Visualisation {
 	}
 	
 	public boolean simpleMap(DataScan scan_p) throws IndexOutOfBoundsException {
+		long start = Metrics.start();
+		MapUpdateEvent event = new MapUpdateEvent();
+		event.begin();
+		int written = 0;
 		//Add scan to map scan history.
-		scanList.add(scan_p);
+		if (keepHistory) {
+			scanList.add(scan_p);
+		}
 		
 		//Get initial variables from scan.
 		int[] values = scan_p.getValues();
-		int rate = scan_p.getSRate();
+		int rate = scan_p.getAngleStep();
 		double angle = scan_p.getHeading();
+		Point2D.Double origin = getScanOrigin(scan_p);
 		
-		//Iterate through scan readings.
-		for (int val : values) {
-			//Discard maximum range values.
-			if (val < 790) {
-				//Calculate coordinates of measurement.
-				Point2D.Double mPoint = getMeasurementPoint(val, angle);
-				//Get grid cell of measurement.
-				Point cell = getPointCell(mPoint);
-				//Set cell to occupied.
-				double value = Math.log(1/(1-0.9));
-				setOccupancy(cell, value);
+		try {
+			//Iterate through scan readings.
+			for (int val : values) {
+				//Discard maximum range values.
+				if (val < 790) {
+					//Calculate coordinates of measurement.
+					Point2D.Double mPoint = getMeasurementPoint(origin, val, angle);
+					//Get grid cell of measurement.
+					Point cell = getPointCell(mPoint);
+					//Set cell to occupied.
+					double value = Math.log(1/(1-0.9));
+					writeCell(cell.x, cell.y, value);
+					written++;
+				}
+				//Increment angle value.
+				angle += rate;
+				if (angle >= 360) {
+					angle -= 360;
+				} else if (angle < 0) {
+					angle += 360;
+				}
 			}
-			//Increment angle value.
-			angle += rate;
-			if (angle >= 360) {
-				angle -= 360;
+		} finally {
+			//Publish cells written, once per scan.
+			synchronized (this) {
+				integratedScans++;
 			}
+			publishSnapshot();
 		}
+		SIMPLE_TIME.stop(start);
+		commitEvent(event, "simpleMap", scan_p, written, false);
 		return true;
 	}
 	
 	@Override
 	public void paintComponent(Graphics g) {
+        long start = Metrics.start();
         super.paintComponent(g);
         Graphics2D g2 = (Graphics2D) g;
         drawGrid(g2);
+        PAINT_TIME.stop(start);
     }
 	
 	public void drawGrid(Graphics2D g) {
-		//Initialise counter variables and component height and width.
-		int heightCounter = 0, widthCounter = 0;
-		int height = this.getHeight();
-		int width = this.getWidth();
-		
-		//Calculate point for the top left of the map so that map is centred.
-		int topLeftXPoint = (width - (mapWidth*cellSize)) / 2;
-		int topLeftYPoint = (height - (mapHeight*cellSize)) / 2;
+		//Get pixels of the bottom left of the map at the current pan and zoom.
+		double scale = getScale();
+		int mapLeft = getMapLeft();
+		int mapBottom = getMapBottom();
 		
-		//Set counters to bottom left corner point.
-		widthCounter = topLeftXPoint;
-		heightCounter = topLeftYPoint + ((mapHeight-1)*cellSize);
+		//Get map area joined with stored cell extent, which unbounded stores can grow past.
+		GridSnapshot cells = snapshot.get();
+		int minI = 0, minJ = 0, maxI = mapWidth, maxJ = mapHeight;
+		if (cells.getWidth() > 0) {
+			minI = Math.min(minI, cells.getMinX());
+			minJ = Math.min(minJ, cells.getMinY());
+			maxI = Math.max(maxI, cells.getMinX() + cells.getWidth());
+			maxJ = Math.max(maxJ, cells.getMinY() + cells.getHeight());
+		}
 		
-		//Iterate through cells.
-		for (int j = 0; j < mapHeight; j++) {
-			for (int i = 0; i < mapWidth; i++) {
-				//Get matrix probability value.
-				double probVal = (Math.exp(matrix[i][j]))/(1 + Math.exp(matrix[i][j]));
-				//Determine colour value.
-				int val = (int)(255 - (Math.floor(probVal * 255)));
-				//Set paint colour to greyscale colour value.
-				g.setPaint(new Color(val, val, val));
-				//Define cell rectangle and draw cell.
-				Rectangle2D.Double cell =
-						new Rectangle2D.Double(widthCounter, heightCounter, cellSize, cellSize);
-				g.fill(cell);
-				//Increment width counter.
-				widthCounter += cellSize;
-			}
-			//Reset width counter and decrement height counter.
-			widthCounter = topLeftXPoint;
-			heightCounter -= cellSize;
+		//Only draw cells inside the area being repainted, or the component if unclipped.
+		Rectangle clip = g.getClipBounds();
+		if (clip == null) {
+			clip = new Rectangle(0, 0, this.getWidth(), this.getHeight());
 		}
+		minI = Math.max(minI, (int)Math.floor((clip.x - mapLeft) / scale));
+		maxI = Math.min(maxI, (int)Math.ceil((clip.x + clip.width - mapLeft) / scale));
+		minJ = Math.max(minJ, (int)Math.floor((mapBottom - clip.y - clip.height) / scale));
+		maxJ = Math.min(maxJ, (int)Math.ceil((mapBottom - clip.y) / scale));
+		
+		//Bring backing image up to date in case the frame timer has not run yet.
+		repaintDirty();
+		//Draw backing image at the current scale.
+		raster.draw(g, new Rectangle(minI, minJ, maxI - minI, maxJ - minJ),
+				mapLeft, mapBottom, scale);
 		
 		//Set paint colour to robot icon colour.
 		g.setPaint(Color.BLUE);
-		//Define robot icon size and location.
-		int botIconSize = cellSize;
-		int botXPx = (int)Math.floor(botPos.getX()/(mapRatio/cellSize));
-		int botYPx = (int)Math.floor(botPos.getY()/(mapRatio/cellSize));
-		int botIconX = topLeftXPoint + botXPx - (botIconSize/2);
-		int botIconY = (topLeftYPoint + (mapHeight*cellSize)) - botYPx - (botIconSize/2);
+		//Define robot icon size and location, not shrinking when zoomed out.
+		int botIconSize = (int)Math.max(cellSize, scale);
+		int botXPx = (int)Math.floor(botPos.getX()/(mapRatio/scale));
+		int botYPx = (int)Math.floor(botPos.getY()/(mapRatio/scale));
+		int botIconX = mapLeft + botXPx - (botIconSize/2);
+		int botIconY = mapBottom - botYPx - (botIconSize/2);
 		//Define robot icon shape and draw icon.
 		Ellipse2D.Double botIcon =
 				new Ellipse2D.Double(botIconX, botIconY, botIconSize, botIconSize);
@@ -389,21 +1471,25 @@ public class OGM extends Visualisation {
 			double y1 = l.getY1();
 			double y2 = l.getY2();
 			//Convert real coordinates to pixel coordinates.
-			x1 = topLeftXPoint + Math.floor(x1/(mapRatio/cellSize));
-			x2 = topLeftXPoint + Math.floor(x2/(mapRatio/cellSize));
-			y1 = topLeftYPoint + (mapHeight*cellSize) - Math.floor(y1/(mapRatio/cellSize));
-			y2 = topLeftYPoint + (mapHeight*cellSize) - Math.floor(y2/(mapRatio/cellSize));
+			x1 = mapLeft + Math.floor(x1/(mapRatio/scale));
+			x2 = mapLeft + Math.floor(x2/(mapRatio/scale));
+			y1 = mapBottom - Math.floor(y1/(mapRatio/scale));
+			y2 = mapBottom - Math.floor(y2/(mapRatio/scale));
 			//Draw line.
 			g.draw(new Line2D.Double(x1, y1, x2, y2));
 		}
 	}
 	
 	public void addLine(Point2D.Double point1_p, Point2D.Double point2_p) {
-		lineList.add(new Line2D.Double(point1_p, point2_p));
+		if (keepHistory) {
+			lineList.add(new Line2D.Double(point1_p, point2_p));
+			this.repaint();
+		}
 	}
 	
 	public void removeLine(int index_p) {
 		lineList.remove(index_p);
+		this.repaint();
 	}
 	
 	public ArrayList<MoveCommand> getCommandList() {
@@ -416,6 +1502,7 @@ public class OGM extends Visualisation {
 	
 	public boolean setCommandList(ArrayList<MoveCommand> commandList_p) {
 		commandList = commandList_p;
+		commandCount = commandList_p.size();
 		return true;
 	}
 	
@@ -425,7 +1512,25 @@ public class OGM extends Visualisation {
 	}
 	
 	public boolean addCommand(MoveCommand command_p) {
-		commandList.add(command_p);
+		commandCount++;
+		if (keepHistory) {
+			commandList.add(command_p);
+		}
+		return true;
+	}
+	
+	/*
+	 * Mutator method for keeping history. Without it a long session only
+	 * holds the cells in memory, but cannot be saved from the map and draws
+	 * no path. Move commands are still counted for checkpoints.
+	 * Parameters:
+	 * keepHistory_p - Whether integrated scans, move commands and path lines
+	 * are added to the history.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setScanHistory(boolean keepHistory_p) {
+		keepHistory = keepHistory_p;
 		return true;
 	}
 	
@@ -452,15 +1557,63 @@ public class OGM extends Visualisation {
 		return true;
 	}
 	
+	/*
+	 * Method to copy cell values of the last published snapshot into a matrix
+	 * indexed [x][y]. The matrix covers the snapshot extent, which for an
+	 * unbounded store starts at cell
+	 * (getSnapshot().getMinX() + 1, getSnapshot().getMinY() + 1).
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Double matrix of log odds values.
+	 */
 	public double[][] getMatrix() {
+		GridSnapshot cells = snapshot.get();
+		int minX = cells.getMinX(), minY = cells.getMinY();
+		int width = cells.getWidth(), height = cells.getHeight();
+		double[][] matrix = new double[width][height];
+		for (int i = 0; i < width; i++) {
+			for (int j = 0; j < height; j++) {
+				matrix[i][j] = cells.get(minX + i, minY + j);
+			}
+		}
 		return matrix;
 	}
 	
+	/*
+	 * Method to copy cell values from a matrix indexed [x][y].
+	 * Parameters:
+	 * matrix_p - Double matrix of log odds values, same size as the map.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
 	public boolean setMatrix(double[][] matrix_p) {
-		matrix = matrix_p;
+		if ((matrix_p.length != mapWidth) || ((mapWidth > 0) && (matrix_p[0].length != mapHeight))) {
+			System.out.println("OGM > setMatrix - Error: Matrix size does not match map size.");
+			return false;
+		}
+		for (int i = 0; i < mapWidth; i++) {
+			for (int j = 0; j < mapHeight; j++) {
+				grid.set(i, j, matrix_p[i][j]);
+			}
+		}
+		changedCells.markCells(0, 0, mapWidth-1, mapHeight-1);
+		publishSnapshot();
 		return true;
 	}
 	
+	/*
+	 * Accessor method for the working grid store. Only safe to read from the
+	 * thread integrating scans, other threads should use getSnapshot.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * GridStore being written.
+	 */
+	public GridStore getGridStore() {
+		return(grid);
+	}
+	
 	public double getRatio() {
 		return(mapRatio);
 	}
@@ -504,28 +1657,69 @@ public class OGM extends Visualisation {
 	}
 	
 	public boolean setOccupancy(Point cell, double value) {
-		if (((cell.getX() % 1) == 0) && ((cell.getY() % 1) == 0)) {
-			int x = ((int)cell.getX()-1);
-			int y = ((int)cell.getY()-1);
-			matrix[x][y] = value;
-			this.repaint();
-			return true;
-		} else {
-			System.out.println(
-					"OGM > setOccupancy - Error: Double precision point when expecting integer.");
-			return false;
-		}	
+		return(setOccupancy(cell.x, cell.y, value));
 	}
 	
 	public double getOccupancy(Point cell) {
-		if (((cell.getX() % 1) == 0) && ((cell.getY() % 1) == 0)) {
-			int x = ((int)cell.getX()-1);
-			int y = ((int)cell.getY()-1);
-			return(matrix[x][y]);
-		} else {
-			System.out.println(
-					"OGM > setOccupancy - Error: Double precision point when expecting integer.");
-			return -1;
+		return(getOccupancy(cell.x, cell.y));
+	}
+	
+	/*
+	 * Mutator method for cell log odds value.
+	 * Parameters:
+	 * x_p - Cell column index, starting from 1.
+	 * y_p - Cell row index, starting from 1.
+	 * value_p - New log odds value.
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean setOccupancy(int x_p, int y_p, double value_p) {
+		writeCell(x_p, y_p, value_p);
+		publishSnapshot();
+		return true;
+	}
+	
+	/*
+	 * Method to write a cell log odds value without publishing it.
+	 * Parameters:
+	 * x_p - Cell column index, starting from 1.
+	 * y_p - Cell row index, starting from 1.
+	 * value_p - New log odds value.
+	 * Returns:
+	 * None
+	 */
+	private void writeCell(int x_p, int y_p, double value_p) {
+		checkCell(x_p, y_p);
+		grid.set(x_p-1, y_p-1, value_p);
+		changedCells.markCell(x_p-1, y_p-1);
+	}
+	
+	/*
+	 * Accessor method for cell log odds value in the last published snapshot.
+	 * Parameters:
+	 * x_p - Cell column index, starting from 1.
+	 * y_p - Cell row index, starting from 1.
+	 * Returns:
+	 * Double representing log odds value.
+	 */
+	public double getOccupancy(int x_p, int y_p) {
+		checkCell(x_p, y_p);
+		return(snapshot.get().get(x_p-1, y_p-1));
+	}
+	
+	/*
+	 * Method to check cell indices are inside the map. Bounded grid stores
+	 * are flat, so a bad column would otherwise land in a neighbouring row.
+	 * Unbounded stores accept any cell.
+	 * Parameters:
+	 * x_p - Cell column index, starting from 1.
+	 * y_p - Cell row index, starting from 1.
+	 * Returns:
+	 * None
+	 */
+	private void checkCell(int x_p, int y_p) throws IndexOutOfBoundsException {
+		if (grid.isBounded() && ((x_p < 1) || (x_p > mapWidth) || (y_p < 1) || (y_p > mapHeight))) {
+			throw new IndexOutOfBoundsException("Cell (" + x_p + ", " + y_p + ") outside map.");
 		}
 	}
 	
@@ -535,6 +1729,7 @@ public class OGM extends Visualisation {
 	
 	public boolean setBotPosition(Point2D.Double botPos_p) {
 		botPos = botPos_p;
+		this.repaint();
 		return true;
 	}
 	
@@ -562,5 +1757,26 @@ public class OGM extends Visualisation {
 		double[] d = {D1, D2, D3};
 		return(d);
 	}
+	
+	public boolean setDConstants(double[] d_p) {
+		if ((d_p.length == 3) && (d_p[0] > 0) && (d_p[0] < d_p[1]) && (d_p[1] < d_p[2])) {
+			D1 = d_p[0];
+			D2 = d_p[1];
+			D3 = d_p[2];
+			return true;
+		} else {
+			System.out.println("OGM > setDConstants - Error: Expecting 0 < d1 < d2 < d3.");
+			return false;
+		}
+	}
+	
+	public double getConeFactor() {
+		return(CONE_FACTOR);
+	}
+	
+	public boolean setConeFactor(double coneFactor_p) {
+		CONE_FACTOR = coneFactor_p;
+		return true;
+	}
 
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+/*
+ * OffHeapGridStore.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ * 
+ * Grid store keeping cell values as row-major floats in a direct ByteBuffer.
+ * 
+ * The buffer lives outside the Java heap, so very large maps do not add to
+ * garbage collection work. Only absolute get and put calls are used, which
+ * leave the buffer position alone, so different cells can be written from
+ * different threads.
+ */
+
+package mattadshead.swansea3.dissertation.structures;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+public class OffHeapGridStore implements GridStore {
+	
+	//Dimensions in cells.
+	private int width, height;
+	//Cell values, row-major.
+	private FloatBuffer cells;
+	
+	/*
+	 * Class constructor.
+	 * Parameters:
+	 * width_p - Number of columns.
+	 * height_p - Number of rows.
+	 * Returns:
+	 * None
+	 */
+	public OffHeapGridStore(int width_p, int height_p) {
+		//A direct buffer holds at most Integer.MAX_VALUE bytes.
+		long bytes = (long) width_p * height_p * 4;
+		if ((width_p < 0) || (height_p < 0) || (bytes > Integer.MAX_VALUE)) {
+			throw new IllegalArgumentException("OffHeapGridStore - Error: " + width_p + " x " + height_p
+					+ " cells do not fit in one buffer.");
+		}
+		width = width_p;
+		height = height_p;
+		cells = ByteBuffer.allocateDirect((int) bytes)
+				.order(ByteOrder.nativeOrder()).asFloatBuffer();
+	}
+	
+	public double get(int x_p, int y_p) {
+		return(cells.get((y_p * width) + x_p));
+	}
+	
+	public void set(int x_p, int y_p, double value_p) {
+		cells.put((y_p * width) + x_p, (float) value_p);
+	}
+	
+	public boolean isBounded() {
+		return true;
+	}
+	
+	public int getMinX() {
+		return 0;
+	}
+	
+	public int getMinY() {
+		return 0;
+	}
+	
+	public int getWidth() {
+		return(width);
+	}
+	
+	public int getHeight() {
+		return(height);
+	}
+	
+	public long getMemoryBytes() {
+		return((long) cells.capacity() * 4);
+	}
+	
+	public boolean isSinglePrecision() {
+		return true;
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * ScanSamples.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Readings of one continuous sensor sweep, at irregular angles.
+ *
+ * In a continuous scan the sensor motor turns at a constant speed and the
+ * NXT reads the sensor as fast as it can, tagging each reading with the
+ * motor tacho count and the time since the sweep started. Readings are not
+ * evenly spaced, so they are kept here with their angles, and binned into
+ * the evenly spaced array of a DataScan when needed.
+ */
+
+package mattadshead.swansea3.dissertation.structures;
+
+import java.awt.geom.Point2D;
+
+import lejos.pc.comm.NXTCommException;
+
+public class ScanSamples {
+
+	//Sensor readings in mm, angles from the start of the sweep in degrees,
+	//and times from the start of the sweep in ms.
+	private int[] ranges;
+	private double[] angles;
+	private int[] times;
+
+	/*
+	 * Class constructor.
+	 * Parameters:
+	 * ranges_p - Sensor readings.
+	 * angles_p - Angle of each reading from the start of the sweep in degrees.
+	 * times_p - Time of each reading from the start of the sweep in ms.
+	 * Returns:
+	 * None
+	 */
+	public ScanSamples(int[] ranges_p, double[] angles_p, int[] times_p) {
+		ranges = ranges_p;
+		angles = angles_p;
+		times = times_p;
+	}
+
+	/*
+	 * Method to bin the readings into an evenly spaced scan. Each element
+	 * takes the reading nearest its angle, so elements no reading fell in
+	 * repeat a neighbouring reading rather than being left empty.
+	 * Parameters:
+	 * sampleRate_p - Degrees between elements, a factor of 360.
+	 * relPos_p - Robot position at time of scan.
+	 * heading_p - Robot heading at time of scan.
+	 * Returns:
+	 * DataScan of binned readings.
+	 * Throws NXTCommException if the sweep returned no readings or the rate
+	 * is not a factor of 360.
+	 */
+	public DataScan toDataScan(int sampleRate_p, Point2D.Double relPos_p, double heading_p) throws NXTCommException {
+		if ((ranges.length == 0) || (sampleRate_p <= 0) || (360 % sampleRate_p != 0)) {
+			throw new NXTCommException("ScanSamples > toDataScan - Error: No readings or invalid sample rate.");
+		}
+		int[] values = new int[360 / sampleRate_p];
+		for (int j = 0; j < values.length; j++) {
+			double binAngle = j * sampleRate_p;
+			int nearest = 0;
+			double nearestGap = Double.MAX_VALUE;
+			for (int i = 0; i < ranges.length; i++) {
+				//Angular gap, either way round the circle.
+				double gap = Math.abs(angles[i] - binAngle) % 360;
+				gap = Math.min(gap, 360 - gap);
+				if (gap < nearestGap) {
+					nearestGap = gap;
+					nearest = i;
+				}
+			}
+			values[j] = ranges[nearest];
+		}
+		return(new DataScan(values, relPos_p, heading_p));
+	}
+
+	public int getCount() {
+		return(ranges.length);
+	}
+
+	public int getRange(int index_p) {
+		return(ranges[index_p]);
+	}
+
+	public double getAngle(int index_p) {
+		return(angles[index_p]);
+	}
+
+	public int getTime(int index_p) {
+		return(times[index_p]);
+	}
+
+	/*
+	 * Accessor method for sweep duration.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Integer representing time of the last reading in ms, 0 if there are none.
+	 */
+	public int getDuration() {
+		return((times.length == 0) ? 0 : times[times.length - 1]);
+	}
+}
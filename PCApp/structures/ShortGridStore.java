@@ -0,0 +1,108 @@
+/*
+ * ShortGridStore.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ * 
+ * Grid store keeping cell values as quantized log odds in a flat row-major
+ * short array.
+ * 
+ * Values are stored in steps of 1/SCALE and clamped to +/- LIMIT, which is
+ * a probability within 1e-13 of 0 or 1. Clamping also stops cells from
+ * becoming so certain that later readings cannot change them. Updates smaller
+ * than half a step are rounded away, so this store suits maps built from
+ * many strong readings rather than tuning the sensor model.
+ */
+
+package mattadshead.swansea3.dissertation.structures;
+
+public class ShortGridStore implements GridStore {
+	
+	//Symbolic constants for quantization step and clamp value.
+	private static final double	SCALE = 1000,
+									LIMIT = 32;
+	
+	//Dimensions in cells.
+	private int width, height;
+	//Cell values, row-major.
+	private short[] cells;
+	
+	/*
+	 * Class constructor.
+	 * Parameters:
+	 * width_p - Number of columns.
+	 * height_p - Number of rows.
+	 * Returns:
+	 * None
+	 */
+	public ShortGridStore(int width_p, int height_p) {
+		long size = (long) width_p * height_p;
+		if ((width_p < 0) || (height_p < 0) || (size > Integer.MAX_VALUE - 8)) {
+			throw new IllegalArgumentException("ShortGridStore - Error: " + width_p + " x " + height_p
+					+ " cells do not fit in one array.");
+		}
+		width = width_p;
+		height = height_p;
+		cells = new short[(int) size];
+	}
+	
+	public double get(int x_p, int y_p) {
+		return(toValue(cells[(y_p * width) + x_p]));
+	}
+	
+	public void set(int x_p, int y_p, double value_p) {
+		cells[(y_p * width) + x_p] = toShort(value_p);
+	}
+	
+	/*
+	 * Method to quantize a log odds value, also used by short chunks of
+	 * ChunkedGridStore.
+	 * Parameters:
+	 * value_p - Log odds value.
+	 * Returns:
+	 * Short representing value in steps of 1/SCALE, clamped to +/- LIMIT.
+	 */
+	static short toShort(double value_p) {
+		double clamped = Math.max(-LIMIT, Math.min(LIMIT, value_p));
+		return((short) Math.round(clamped * SCALE));
+	}
+	
+	/*
+	 * Method to get the log odds value of a quantized value.
+	 * Parameters:
+	 * value_p - Value in steps of 1/SCALE.
+	 * Returns:
+	 * Double representing log odds value.
+	 */
+	static double toValue(short value_p) {
+		return(value_p / SCALE);
+	}
+	
+	public boolean isBounded() {
+		return true;
+	}
+	
+	public int getMinX() {
+		return 0;
+	}
+	
+	public int getMinY() {
+		return 0;
+	}
+	
+	public int getWidth() {
+		return(width);
+	}
+	
+	public int getHeight() {
+		return(height);
+	}
+	
+	public long getMemoryBytes() {
+		return((long) cells.length * 2);
+	}
+	
+	//Steps of 1/SCALE up to LIMIT need fewer bits than a float has.
+	public boolean isSinglePrecision() {
+		return true;
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * BenchmarkWorld.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Synthetic session shared by the benchmarks.
+ *
+ * A WorldGenerator world about the size of the map is written to a
+ * temporary binary session file and read back, so benchmarks have both the
+ * file and its scans and commands. The same settings always give the same
+ * session, so results from different runs compare like with like.
+ */
+
+package mattadshead.swansea3.dissertation.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import mattadshead.swansea3.dissertation.pcapp.Controller;
+import mattadshead.swansea3.dissertation.pcapp.SessionJournal;
+import mattadshead.swansea3.dissertation.pcapp.SessionReader;
+import mattadshead.swansea3.dissertation.pcapp.WorldGenerator;
+import mattadshead.swansea3.dissertation.structures.ChunkedGridStore;
+import mattadshead.swansea3.dissertation.structures.DataScan;
+import mattadshead.swansea3.dissertation.structures.MoveCommand;
+import mattadshead.swansea3.dissertation.structures.OGM;
+
+class BenchmarkWorld {
+
+	//Symbolic constants for session length, drawn cell size and room layout in mm.
+	public static final int		SCANS = 200,
+								CELL_SIZE = 3;
+	public static final double	ROOM_SIZE = 2000,
+								CORRIDOR_WIDTH = 1000,
+								DOOR_WIDTH = 600;
+
+	private File file;
+	private ArrayList<DataScan> scans = new ArrayList<DataScan>();
+	private ArrayList<MoveCommand> commands = new ArrayList<MoveCommand>();
+
+	/*
+	 * Class constructor, generates the session.
+	 * Parameters:
+	 * mapSize_p - Map width and height in cells.
+	 * ratio_p - Real world size of a cell in mm.
+	 * sampleRate_p - Degrees between readings.
+	 * Returns:
+	 * None
+	 */
+	public BenchmarkWorld(int mapSize_p, double ratio_p, int sampleRate_p) throws IOException, InterruptedException {
+		//Rooms and corridors filling the map's real world area.
+		double side = mapSize_p * ratio_p;
+		int roomsX = Math.max(1, (int)(side / ROOM_SIZE));
+		int roomsY = Math.max(1, (int)((side + CORRIDOR_WIDTH) / (ROOM_SIZE + CORRIDOR_WIDTH)));
+		WorldGenerator generator = new WorldGenerator();
+		generator.setRooms(roomsX, roomsY);
+		generator.setRoomShape(ROOM_SIZE, CORRIDOR_WIDTH, DOOR_WIDTH);
+		generator.setSession(SCANS, sampleRate_p, 200, 5);
+		generator.setRatio(ratio_p);
+		generator.setSeed(1);
+
+		file = File.createTempFile("benchmark", ".ses");
+		file.deleteOnExit();
+		generator.writeSession(file.getPath());
+
+		SessionReader reader = Controller.openSessionReader(file.getPath());
+		try {
+			int type = reader.next();
+			while (type != -1) {
+				if (type == SessionJournal.SCAN_RECORD) {
+					scans.add(reader.getScan());
+				} else {
+					commands.add(reader.getCommand());
+				}
+				type = reader.next();
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/*
+	 * Method to create a map set up as Controller.drawMapGrid does, but
+	 * integrating on the calling thread only.
+	 * Parameters:
+	 * mapSize_p - Map width and height in cells.
+	 * ratio_p - Real world size of a cell in mm.
+	 * Returns:
+	 * OGM ready for scans.
+	 */
+	public static OGM createMap(int mapSize_p, double ratio_p) {
+		OGM map = new OGM(CELL_SIZE, ratio_p, mapSize_p, mapSize_p, new ChunkedGridStore(ChunkedGridStore.FLOAT_CELLS));
+		map.setIntegrationMode(map.INTEGRATE_RAY);
+		map.setKernelLookup(true);
+		return(map);
+	}
+
+	public String getPath() {
+		return(file.getPath());
+	}
+
+	public ArrayList<DataScan> getScans() {
+		return(scans);
+	}
+
+	public ArrayList<MoveCommand> getCommands() {
+		return(commands);
+	}
+
+	/*
+	 * Method to delete the session file.
+	 * Parameters:
+	 * None
+	 * Returns:
+	 * Boolean representing operation success.
+	 */
+	public boolean delete() {
+		return(file.delete());
+	}
+}
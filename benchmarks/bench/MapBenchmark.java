@@ -0,0 +1,123 @@
+/*
+ * MapBenchmark.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Benchmarks of integrating scans into the map and drawing it.
+ *
+ * Each trial generates a BenchmarkWorld session and integrates its scans in
+ * turn, one scan per operation, so the map grows over the trial as it does
+ * in a mapping session. Drawing is timed on a map holding the whole session,
+ * drawn at the drawn cell size into an offscreen image of the whole map.
+ *
+ * The threads parameter integrates on a fork join pool of that many
+ * workers, 0 integrates on the benchmark thread only. Running updateMap
+ * with -p threads=0,1,2,4,8,16 gives the scaling of parallel integration.
+ */
+
+package mattadshead.swansea3.dissertation.benchmarks;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mattadshead.swansea3.dissertation.structures.DataScan;
+import mattadshead.swansea3.dissertation.structures.OGM;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class MapBenchmark {
+
+	//Map width and height in cells.
+	@Param({"250", "1000"})
+	public int mapSize;
+	//Real world size of a cell in mm.
+	@Param({"10", "25"})
+	public double ratio;
+	//Degrees between scan readings.
+	@Param({"1", "5"})
+	public int sampleRate;
+	//Integration pool workers, 0 for none.
+	@Param({"0"})
+	public int threads;
+
+	private BenchmarkWorld world;
+	private ArrayList<DataScan> scans;
+	private int nextScan;
+	private OGM map;
+	private OGM fullMap;
+	private ForkJoinPool pool;
+	private Graphics2D graphics;
+
+	@Setup
+	public void setup() throws Exception {
+		world = new BenchmarkWorld(mapSize, ratio, sampleRate);
+		scans = world.getScans();
+		map = BenchmarkWorld.createMap(mapSize, ratio);
+		map.setScanHistory(false);
+		if (threads > 0) {
+			pool = new ForkJoinPool(threads);
+			map.setIntegrationPool(pool);
+		}
+
+		//Map of the whole session to draw.
+		fullMap = BenchmarkWorld.createMap(mapSize, ratio);
+		fullMap.setScanHistory(false);
+		for (DataScan scan : scans) {
+			fullMap.updateMap(scan);
+		}
+		int side = mapSize * BenchmarkWorld.CELL_SIZE;
+		fullMap.setSize(side, side);
+		graphics = new BufferedImage(side, side, BufferedImage.TYPE_INT_RGB).createGraphics();
+	}
+
+	@TearDown
+	public void tearDown() {
+		graphics.dispose();
+		if (pool != null) {
+			pool.shutdown();
+		}
+		world.delete();
+	}
+
+	//Next scan of the session, starting again at the end.
+	private DataScan nextScan() {
+		DataScan scan = scans.get(nextScan);
+		nextScan = (nextScan + 1) % scans.size();
+		return(scan);
+	}
+
+	@Benchmark
+	public boolean updateMap() {
+		return(map.updateMap(nextScan()));
+	}
+
+	@Benchmark
+	public boolean simpleMap() {
+		return(map.simpleMap(nextScan()));
+	}
+
+	@Benchmark
+	public void drawGrid() {
+		fullMap.drawGrid(graphics);
+	}
+}
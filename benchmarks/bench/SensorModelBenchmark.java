@@ -0,0 +1,65 @@
+/*
+ * SensorModelBenchmark.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Benchmark of the inverse sensor model, evaluated directly rather than
+ * through the lookup tables, over readings spread across the sensor's range
+ * and cells spread over the beam. Each operation evaluates every input once.
+ */
+
+package mattadshead.swansea3.dissertation.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mattadshead.swansea3.dissertation.structures.OGM;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SensorModelBenchmark {
+
+	//Symbolic constants for number of inputs and largest reading in mm.
+	private static final int	INPUTS = 4096,
+								MAX_RANGE = 800;
+
+	private OGM map;
+	private double[] z = new double[INPUTS], d = new double[INPUTS], theta = new double[INPUTS];
+
+	@Setup
+	public void setup() {
+		map = BenchmarkWorld.createMap(10, 10);
+		//Cells in front of, around and behind each reading, across the cone.
+		double cone = map.getConeAngle();
+		Random random = new Random(1);
+		for (int i = 0; i < INPUTS; i++) {
+			z[i] = random.nextDouble() * MAX_RANGE;
+			d[i] = random.nextDouble() * (z[i] + 50);
+			theta[i] = (random.nextDouble() * 2 * cone) - cone;
+		}
+	}
+
+	@Benchmark
+	public double inverseSensorModel() {
+		double sum = 0;
+		for (int i = 0; i < INPUTS; i++) {
+			sum += map.inverseSensorModel(z[i], d[i], theta[i]);
+		}
+		return(sum);
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * SessionBenchmark.java
+ * Author: Matt Adshead
+ * Date: 17 Oct 2026
+ *
+ * Benchmarks of saving and loading mapping sessions through the Controller.
+ *
+ * createSession turns a BenchmarkWorld session's scans and commands into
+ * session file lines. loadSession reads the whole binary session file into
+ * a new map, integrating every scan, so one operation is one session.
+ */
+
+package mattadshead.swansea3.dissertation.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mattadshead.swansea3.dissertation.pcapp.Controller;
+import mattadshead.swansea3.dissertation.pcapp.Model;
+import mattadshead.swansea3.dissertation.structures.OGM;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SessionBenchmark {
+
+	//Map width and height in cells.
+	@Param({"250", "1000"})
+	public int mapSize;
+	//Real world size of a cell in mm.
+	@Param({"10", "25"})
+	public double ratio;
+	//Degrees between scan readings.
+	@Param({"1", "5"})
+	public int sampleRate;
+
+	private BenchmarkWorld world;
+	private Controller controller;
+
+	@Setup
+	public void setup() throws Exception {
+		world = new BenchmarkWorld(mapSize, ratio, sampleRate);
+		//No view or NXT is needed to save and load sessions.
+		controller = new Controller(new Model(null));
+	}
+
+	@TearDown
+	public void tearDown() {
+		world.delete();
+	}
+
+	@Benchmark
+	public String[] createSession() {
+		return(controller.createSession(world.getScans(), world.getCommands()));
+	}
+
+	@Benchmark
+	public OGM loadSession() throws Exception {
+		OGM map = BenchmarkWorld.createMap(mapSize, ratio);
+		controller.loadSession(map, world.getPath());
+		return(map);
+	}
+}